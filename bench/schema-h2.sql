@@ -0,0 +1,104 @@
+-- The MySQL schema after every migration in ../migrations, in H2 syntax, for the tables the
+-- benchmarked paths touch. Run on every connection through INIT in db.properties, so it must stay
+-- idempotent. Keep it in step with new migrations.
+CREATE TABLE IF NOT EXISTS jobs (
+    id VARCHAR(255) PRIMARY KEY,
+    command TEXT NOT NULL,
+    payload MEDIUMBLOB NULL,
+    payload_bytes INT NULL,
+    queue VARCHAR(64) NOT NULL DEFAULT 'default',
+    priority INT NOT NULL DEFAULT 0,
+    deps_remaining INT NOT NULL DEFAULT 0,
+    dependents INT NOT NULL DEFAULT 0,
+    state VARCHAR(50) NOT NULL DEFAULT 'pending',
+    attempts INT NOT NULL DEFAULT 0,
+    max_retries INT NOT NULL DEFAULT 3,
+    created_at TIMESTAMP(3) DEFAULT CURRENT_TIMESTAMP(3),
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    next_retry_at TIMESTAMP NULL,
+    run_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    error_message TEXT,
+    result TEXT,
+    result_blob MEDIUMBLOB NULL,
+    result_bytes INT NULL,
+    timeout_seconds INT NULL,
+    failure_reason VARCHAR(32) NULL,
+    worker_id VARCHAR(255) NULL,
+    lease_expires_at TIMESTAMP(3) NULL
+);
+CREATE INDEX IF NOT EXISTS idx_queue_ready ON jobs (queue, state, priority DESC, run_at, created_at);
+CREATE INDEX IF NOT EXISTS idx_lease ON jobs (state, lease_expires_at);
+CREATE INDEX IF NOT EXISTS idx_worker ON jobs (worker_id);
+CREATE INDEX IF NOT EXISTS idx_terminal ON jobs (state, updated_at);
+CREATE INDEX IF NOT EXISTS idx_list ON jobs (state, created_at, id);
+CREATE INDEX IF NOT EXISTS idx_created ON jobs (created_at, id);
+CREATE INDEX IF NOT EXISTS idx_due ON jobs (state, run_at);
+
+CREATE TABLE IF NOT EXISTS jobs_archive (
+    archive_id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    id VARCHAR(255) NOT NULL,
+    command TEXT NOT NULL,
+    payload MEDIUMBLOB NULL,
+    payload_bytes INT NULL,
+    queue VARCHAR(64) NOT NULL DEFAULT 'default',
+    priority INT NOT NULL DEFAULT 0,
+    deps_remaining INT NOT NULL DEFAULT 0,
+    state VARCHAR(50) NOT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    max_retries INT NOT NULL DEFAULT 3,
+    created_at TIMESTAMP(3) NULL,
+    updated_at TIMESTAMP NULL,
+    next_retry_at TIMESTAMP NULL,
+    run_at TIMESTAMP(3) NULL,
+    error_message TEXT,
+    result TEXT,
+    result_blob MEDIUMBLOB NULL,
+    result_bytes INT NULL,
+    timeout_seconds INT NULL,
+    failure_reason VARCHAR(32) NULL,
+    worker_id VARCHAR(255) NULL,
+    archived_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+CREATE INDEX IF NOT EXISTS idx_archive_job ON jobs_archive (id);
+
+CREATE TABLE IF NOT EXISTS config (
+    config_key VARCHAR(100) PRIMARY KEY,
+    config_value VARCHAR(255) NOT NULL,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+CREATE TABLE IF NOT EXISTS config_version (
+    id INT PRIMARY KEY,
+    version BIGINT NOT NULL DEFAULT 0
+);
+MERGE INTO config_version (id, version) KEY (id) VALUES (1, 0);
+
+CREATE TABLE IF NOT EXISTS queue_signal (
+    id INT NOT NULL,
+    stripe INT NOT NULL DEFAULT 0,
+    seq BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (id, stripe)
+);
+CREATE TABLE IF NOT EXISTS queue_stats (
+    state VARCHAR(50) NOT NULL,
+    stripe INT NOT NULL,
+    count BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (state, stripe)
+);
+CREATE TABLE IF NOT EXISTS workers (
+    worker_id VARCHAR(255) PRIMARY KEY,
+    started_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    last_heartbeat TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    status VARCHAR(50) DEFAULT 'active'
+);
+CREATE TABLE IF NOT EXISTS job_deps (
+    child_id VARCHAR(255) NOT NULL,
+    parent_id VARCHAR(255) NOT NULL,
+    resolved TINYINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (child_id, parent_id)
+);
+CREATE INDEX IF NOT EXISTS idx_parent ON job_deps (parent_id, resolved);
+CREATE TABLE IF NOT EXISTS blob_refs (
+    hash CHAR(64) PRIMARY KEY,
+    refs INT NOT NULL DEFAULT 0,
+    bytes BIGINT NOT NULL
+);
@@ -0,0 +1,95 @@
+package com.queuectl.bench;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+// JDBC driver for jdbc:h2mysql:<h2 url> that opens the H2 database behind it. H2's MySQL mode
+// takes the store's queries as they are except for the FORCE INDEX hint, which it only knows as
+// USE INDEX; every SQL string is rewritten on its way in. For the JMH benchmarks only.
+public class H2MysqlDriver implements Driver {
+    private static final String PREFIX = "jdbc:h2mysql:";
+    private static final Pattern FORCE_INDEX = Pattern.compile("\\bFORCE INDEX\\b");
+
+    static {
+        try {
+            DriverManager.registerDriver(new H2MysqlDriver());
+        } catch (SQLException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @Override
+    public Connection connect(String url, Properties info) throws SQLException {
+        if (!acceptsURL(url)) {
+            return null;
+        }
+        Connection raw = DriverManager.getConnection("jdbc:h2:" + url.substring(PREFIX.length()), info);
+        return (Connection) wrap(raw, Connection.class);
+    }
+
+    @Override
+    public boolean acceptsURL(String url) {
+        return url != null && url.startsWith(PREFIX);
+    }
+
+    @Override
+    public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+        return new DriverPropertyInfo[0];
+    }
+
+    @Override
+    public int getMajorVersion() {
+        return 1;
+    }
+
+    @Override
+    public int getMinorVersion() {
+        return 0;
+    }
+
+    @Override
+    public boolean jdbcCompliant() {
+        return false;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    static String rewrite(String sql) {
+        return FORCE_INDEX.matcher(sql).replaceAll("USE INDEX");
+    }
+
+    // Rewrites the SQL argument of every call, and wraps the statements a connection creates
+    private static Object wrap(Object target, Class<?> type) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (args != null && args.length > 0 && args[0] instanceof String) {
+                args[0] = rewrite((String) args[0]);
+            }
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (type == Connection.class && method.getName().equals("createStatement")) {
+                return wrap(result, Statement.class);
+            }
+            return result;
+        };
+        return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+}
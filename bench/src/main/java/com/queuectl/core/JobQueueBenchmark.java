@@ -0,0 +1,144 @@
+package com.queuectl.core;
+
+import com.queuectl.db.DatabaseManager;
+import com.queuectl.models.Job;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// JobQueue's SQL hot paths under JMH, against the database in bench/db.properties (in-memory H2):
+//   dequeueJob         claim one job and release it again, so the backlog keeps its size
+//   dequeueBatch       the same for a batch of ten
+//   getJob             one lookup by id, row mapping included
+//   mapResultSetToJob  mapping claimed rows to Jobs from an open result set, per row, without the query
+// Threads come from -t. HotPathBenchmark in the main tree stays as the quick end-to-end check.
+// H2 reads and locks every matching row for a FOR UPDATE query before applying LIMIT, where MySQL
+// walks idx_queue_ready, so claim costs here grow with the backlog and with -t above 1 most claims
+// come back empty. Compare runs with each other, not with MySQL.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JobQueueBenchmark {
+    private static final String PREFIX = "jmh-";
+    private static final int MAPPED_ROWS = 100;
+
+    @Param({"1000", "10000"})
+    public int backlog;
+
+    private JobQueue queue;
+
+    @Setup(Level.Trial)
+    public void fill() throws SQLException {
+        clear();
+        queue = new JobQueue();
+        List<Job> chunk = new ArrayList<>();
+        for (int i = 0; i < backlog; i++) {
+            chunk.add(new Job(PREFIX + i, "true"));
+            if (chunk.size() == 500 || i == backlog - 1) {
+                queue.enqueueBatch(chunk);
+                chunk.clear();
+            }
+        }
+    }
+
+    // The pool stays open for the next trial: with -f 0 every trial shares this JVM, and a shut
+    // down DatabaseManager doesn't reopen. It goes with the JVM.
+    @TearDown(Level.Trial)
+    public void clear() throws SQLException {
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM jobs");
+            stmt.executeUpdate("DELETE FROM queue_stats");
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Worker {
+        String id;
+
+        @Setup(Level.Trial)
+        public void name() {
+            id = "jmh-worker-" + Thread.currentThread().getId();
+        }
+    }
+
+    // One scrollable result set of claim rows per thread, read again on every invocation
+    @State(Scope.Thread)
+    public static class ClaimRows {
+        private Connection conn;
+        private PreparedStatement stmt;
+        ResultSet rs;
+        Set<String> columns;
+
+        @Setup(Level.Trial)
+        public void open(JobQueueBenchmark bench) throws SQLException {
+            conn = DatabaseManager.getInstance().getConnection();
+            stmt = conn.prepareStatement("SELECT " + JobQueue.CLAIM_COLUMNS + " FROM jobs ORDER BY id LIMIT " + MAPPED_ROWS,
+                    ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+            rs = stmt.executeQuery();
+            columns = JobQueue.columnsOf(rs);
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws SQLException {
+            stmt.close();
+            conn.close();
+        }
+    }
+
+    @Benchmark
+    public Job dequeueJob(Worker worker) throws SQLException {
+        Job job = queue.dequeueJob(worker.id);
+        if (job != null) {
+            queue.releaseJobs(worker.id, List.of(job));
+        }
+        return job;
+    }
+
+    @Benchmark
+    public List<Job> dequeueBatch(Worker worker) throws SQLException {
+        List<Job> jobs = queue.dequeueBatch(worker.id, 10);
+        queue.releaseJobs(worker.id, jobs);
+        return jobs;
+    }
+
+    @Benchmark
+    public Job getJob() throws SQLException {
+        return queue.getJob(PREFIX + ThreadLocalRandom.current().nextInt(backlog));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MAPPED_ROWS)
+    public void mapResultSetToJob(ClaimRows rows, Blackhole blackhole) throws SQLException {
+        rows.rs.beforeFirst();
+        while (rows.rs.next()) {
+            blackhole.consume(queue.mapResultSetToJob(rows.rs, rows.columns));
+        }
+    }
+}
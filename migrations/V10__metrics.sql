@@ -0,0 +1,4 @@
+-- Worker processes serve Prometheus metrics on 127.0.0.1:<metrics-port>/metrics; 0 turns it off
+INSERT INTO config (config_key, config_value) VALUES
+    ('metrics-port', '9464')
+ON DUPLICATE KEY UPDATE config_key=config_key;
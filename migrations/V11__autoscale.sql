@@ -0,0 +1,11 @@
+-- Thresholds for worker start --autoscale MIN:MAX. Workers grow when the ready backlog exceeds
+-- autoscale-jobs-per-worker per worker or the mean claim wait exceeds autoscale-wait-ms, unless
+-- the load average per CPU is above autoscale-max-load-pct; they shrink below a quarter of both.
+INSERT INTO config (config_key, config_value) VALUES
+    ('autoscale-interval-ms', '5000'),
+    ('autoscale-jobs-per-worker', '10'),
+    ('autoscale-wait-ms', '1000'),
+    ('autoscale-max-load-pct', '90'),
+    ('autoscale-up-ticks', '2'),
+    ('autoscale-down-ticks', '6')
+ON DUPLICATE KEY UPDATE config_key=config_key;
@@ -0,0 +1,29 @@
+-- Job payloads and results. Each value is stored by size: as is up to blob-inline-bytes,
+-- Deflate-compressed up to blob-spill-bytes, and above that in a content-addressed file under
+-- blob.dir (db.properties) with only its hash in the row. The first byte of a cell says which.
+-- *_bytes hold the original sizes so claims and list pages never read the blob columns.
+ALTER TABLE jobs
+    ADD COLUMN payload MEDIUMBLOB NULL AFTER command,
+    ADD COLUMN payload_bytes INT NULL AFTER payload,
+    ADD COLUMN result_blob MEDIUMBLOB NULL AFTER result,
+    ADD COLUMN result_bytes INT NULL AFTER result_blob;
+
+ALTER TABLE jobs_archive
+    ADD COLUMN payload MEDIUMBLOB NULL AFTER command,
+    ADD COLUMN payload_bytes INT NULL AFTER payload,
+    ADD COLUMN result_blob MEDIUMBLOB NULL AFTER result,
+    ADD COLUMN result_bytes INT NULL AFTER result_blob;
+
+-- One row per spilled file; jobs and archived jobs holding its hash each count once.
+-- Files whose count drops to zero are deleted by the archiver.
+CREATE TABLE IF NOT EXISTS blob_refs (
+    hash CHAR(64) PRIMARY KEY,
+    refs INT NOT NULL DEFAULT 0,
+    bytes BIGINT NOT NULL,
+    INDEX idx_unreferenced (refs)
+);
+
+INSERT INTO config (config_key, config_value) VALUES
+    ('blob-inline-bytes', '1024'),
+    ('blob-spill-bytes', '65536')
+ON DUPLICATE KEY UPDATE config_key=config_key;
@@ -0,0 +1,26 @@
+-- Job dependencies. A job enqueued with parents that haven't completed waits in the 'blocked'
+-- state; deps_remaining counts those parents and is decremented as each one finishes, and the
+-- job moves to pending when it reaches zero. dependents is how many jobs name this one as a
+-- parent, so finishing a job nothing depends on never touches job_deps.
+ALTER TABLE jobs
+    ADD COLUMN deps_remaining INT NOT NULL DEFAULT 0 AFTER priority,
+    ADD COLUMN dependents INT NOT NULL DEFAULT 0 AFTER deps_remaining;
+
+ALTER TABLE jobs_archive
+    ADD COLUMN deps_remaining INT NOT NULL DEFAULT 0 AFTER priority;
+
+-- One row per edge; resolved flips once the parent has completed (or died, under the ignore
+-- policy), so each edge is counted down exactly once. idx_parent finds a finishing job's
+-- children without scanning jobs. Rows go away when the child is archived.
+CREATE TABLE IF NOT EXISTS job_deps (
+    child_id VARCHAR(255) NOT NULL,
+    parent_id VARCHAR(255) NOT NULL,
+    resolved TINYINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (child_id, parent_id),
+    INDEX idx_parent (parent_id, resolved)
+);
+
+-- What blocked jobs do when a parent goes to the DLQ: cancel, ignore or wait
+INSERT INTO config (config_key, config_value) VALUES
+    ('dependency-failure-policy', 'cancel')
+ON DUPLICATE KEY UPDATE config_key=config_key;
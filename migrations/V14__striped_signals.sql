@@ -0,0 +1,6 @@
+-- Signal rows are striped like queue_stats: every producer used to bump the one row per signal,
+-- which serialized enqueues from all processes on it. Readers sum the stripes of a signal.
+ALTER TABLE queue_signal
+    ADD COLUMN stripe INT NOT NULL DEFAULT 0 AFTER id,
+    DROP PRIMARY KEY,
+    ADD PRIMARY KEY (id, stripe);
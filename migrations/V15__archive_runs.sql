@@ -0,0 +1,13 @@
+-- One archive row per run: an id reused after its first run was archived used to overwrite that
+-- run's row. Lookups by id read the latest run through idx_archive_job.
+ALTER TABLE jobs_archive
+    DROP PRIMARY KEY,
+    ADD COLUMN archive_id BIGINT NOT NULL AUTO_INCREMENT FIRST,
+    ADD PRIMARY KEY (archive_id),
+    ADD INDEX idx_archive_job (id);
+
+-- Dead jobs stay in the hot table, where dlq list and dlq retry find them, for this many days;
+-- the terminal row limit only applies to completed jobs
+INSERT INTO config (config_key, config_value) VALUES
+    ('dlq-retention-days', '30')
+ON DUPLICATE KEY UPDATE config_key=config_key;
@@ -0,0 +1,35 @@
+-- Jobs table
+CREATE TABLE IF NOT EXISTS jobs (
+    id VARCHAR(255) PRIMARY KEY,
+    command TEXT NOT NULL,
+    state VARCHAR(50) NOT NULL DEFAULT 'pending',
+    attempts INT NOT NULL DEFAULT 0,
+    max_retries INT NOT NULL DEFAULT 3,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    next_retry_at TIMESTAMP NULL,
+    error_message TEXT,
+    INDEX idx_state (state),
+    INDEX idx_next_retry (next_retry_at)
+);
+
+-- Configuration table
+CREATE TABLE IF NOT EXISTS config (
+    config_key VARCHAR(100) PRIMARY KEY,
+    config_value VARCHAR(255) NOT NULL,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+);
+
+-- Insert default configuration
+INSERT INTO config (config_key, config_value) VALUES
+    ('max-retries', '3'),
+    ('backoff-base', '2')
+ON DUPLICATE KEY UPDATE config_key=config_key;
+
+-- Workers table to track active workers
+CREATE TABLE IF NOT EXISTS workers (
+    worker_id VARCHAR(255) PRIMARY KEY,
+    started_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    last_heartbeat TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    status VARCHAR(50) DEFAULT 'active'
+);
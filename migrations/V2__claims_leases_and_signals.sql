@@ -0,0 +1,42 @@
+-- Claim ownership, captured output, timeouts and leases
+ALTER TABLE jobs
+    MODIFY created_at TIMESTAMP(3) DEFAULT CURRENT_TIMESTAMP(3),
+    ADD COLUMN result TEXT AFTER error_message,
+    ADD COLUMN timeout_seconds INT NULL AFTER result,
+    ADD COLUMN failure_reason VARCHAR(32) NULL AFTER timeout_seconds,
+    ADD COLUMN worker_id VARCHAR(255) NULL AFTER failure_reason,
+    ADD COLUMN lease_expires_at TIMESTAMP(3) NULL AFTER worker_id,
+    ADD INDEX idx_lease (state, lease_expires_at),
+    ADD INDEX idx_worker (worker_id);
+
+INSERT INTO config (config_key, config_value) VALUES
+    ('claim-batch-size', '1'),
+    ('poll-min-ms', '50'),
+    ('poll-max-ms', '2000'),
+    ('signal-poll-ms', '100'),
+    ('config-cache-ttl-ms', '5000'),
+    ('output-buffer-bytes', '16384'),
+    ('output-log-dir', ''),
+    ('output-echo', 'true'),
+    ('output-echo-lines-per-sec', '50'),
+    ('job-timeout-seconds', '0'),
+    ('lease-seconds', '60')
+ON DUPLICATE KEY UPDATE config_key=config_key;
+
+-- Bumped by every config change so cached copies know to reload
+CREATE TABLE IF NOT EXISTS config_version (
+    id INT PRIMARY KEY,
+    version BIGINT NOT NULL DEFAULT 0
+);
+
+INSERT INTO config_version (id, version) VALUES (1, 0)
+ON DUPLICATE KEY UPDATE id=id;
+
+-- Change sequence bumped on enqueue so workers in other processes wake up promptly
+CREATE TABLE IF NOT EXISTS queue_signal (
+    id INT PRIMARY KEY,
+    seq BIGINT NOT NULL DEFAULT 0
+);
+
+INSERT INTO queue_signal (id, seq) VALUES (1, 0)
+ON DUPLICATE KEY UPDATE id=id;
@@ -0,0 +1,11 @@
+-- One "ready at" column for both new jobs and retries, so claiming is a range scan
+-- on (state, run_at) instead of an OR across two indexes followed by a sort
+ALTER TABLE jobs
+    ADD COLUMN run_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) AFTER next_retry_at;
+
+UPDATE jobs SET run_at = COALESCE(next_retry_at, created_at);
+
+ALTER TABLE jobs
+    ADD INDEX idx_ready (state, run_at, created_at),
+    DROP INDEX idx_state,
+    DROP INDEX idx_next_retry;
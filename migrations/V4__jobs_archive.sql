@@ -0,0 +1,31 @@
+-- Terminal jobs are moved here by the archiver so the hot table only holds live work
+CREATE TABLE IF NOT EXISTS jobs_archive (
+    id VARCHAR(255) PRIMARY KEY,
+    command TEXT NOT NULL,
+    state VARCHAR(50) NOT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    max_retries INT NOT NULL DEFAULT 3,
+    created_at TIMESTAMP(3) NULL,
+    updated_at TIMESTAMP NULL,
+    next_retry_at TIMESTAMP NULL,
+    run_at TIMESTAMP(3) NULL,
+    error_message TEXT,
+    result TEXT,
+    timeout_seconds INT NULL,
+    failure_reason VARCHAR(32) NULL,
+    worker_id VARCHAR(255) NULL,
+    archived_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_archived_at (archived_at)
+);
+
+-- Lets the archiver find the oldest terminal rows without scanning live ones
+ALTER TABLE jobs ADD INDEX idx_terminal (state, updated_at);
+
+INSERT INTO config (config_key, config_value) VALUES
+    ('archive-enabled', 'true'),
+    ('archive-after-hours', '24'),
+    ('archive-max-terminal-rows', '100000'),
+    ('archive-retention-days', '30'),
+    ('archive-batch-size', '1000'),
+    ('archive-interval-seconds', '300')
+ON DUPLICATE KEY UPDATE config_key=config_key;
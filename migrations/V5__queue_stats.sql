@@ -0,0 +1,18 @@
+-- Per-state job counts kept up to date by the same transactions that move jobs between states.
+-- Each state is spread over several stripes so concurrent writers rarely touch the same row.
+CREATE TABLE IF NOT EXISTS queue_stats (
+    state VARCHAR(50) NOT NULL,
+    stripe INT NOT NULL,
+    count BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (state, stripe)
+);
+
+-- Seed from the current table; the reconciler corrects any drift afterwards
+DELETE FROM queue_stats;
+
+INSERT INTO queue_stats (state, stripe, count)
+SELECT state, 0, COUNT(*) FROM jobs GROUP BY state;
+
+INSERT INTO config (config_key, config_value) VALUES
+    ('stats-reconcile-seconds', '300')
+ON DUPLICATE KEY UPDATE config_key=config_key;
@@ -0,0 +1,4 @@
+-- Keyset pagination for list and dlq list: newest first, filtered by state or not
+ALTER TABLE jobs
+    ADD INDEX idx_list (state, created_at, id),
+    ADD INDEX idx_created (created_at, id);
@@ -0,0 +1,17 @@
+-- Named queues and priorities. Claims read one queue at a time in priority order,
+-- so the ready index leads with the queue and carries priority before run_at.
+ALTER TABLE jobs
+    ADD COLUMN queue VARCHAR(64) NOT NULL DEFAULT 'default' AFTER command,
+    ADD COLUMN priority INT NOT NULL DEFAULT 0 AFTER queue;
+
+ALTER TABLE jobs
+    ADD INDEX idx_queue_ready (queue, state, priority DESC, run_at, created_at),
+    DROP INDEX idx_ready;
+
+ALTER TABLE jobs_archive
+    ADD COLUMN queue VARCHAR(64) NOT NULL DEFAULT 'default' AFTER command,
+    ADD COLUMN priority INT NOT NULL DEFAULT 0 AFTER queue;
+
+INSERT INTO config (config_key, config_value) VALUES
+    ('worker-queues', '')
+ON DUPLICATE KEY UPDATE config_key=config_key;
@@ -0,0 +1,31 @@
+-- Jobs enqueued with --at/--delay wait in the 'scheduled' state until the dispatcher promotes
+-- them, so future work never shows up in the claim index ranges for pending/failed.
+ALTER TABLE jobs ADD INDEX idx_due (state, run_at);
+
+-- Recurring jobs: each run is materialized as a scheduled job shortly before it is due
+CREATE TABLE IF NOT EXISTS job_schedules (
+    id VARCHAR(255) PRIMARY KEY,
+    cron VARCHAR(255) NOT NULL,
+    command TEXT NOT NULL,
+    queue VARCHAR(64) NOT NULL DEFAULT 'default',
+    priority INT NOT NULL DEFAULT 0,
+    max_retries INT NOT NULL DEFAULT 3,
+    timeout_seconds INT NULL,
+    next_run_at TIMESTAMP(3) NOT NULL,
+    last_run_at TIMESTAMP(3) NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_next_run (next_run_at)
+);
+
+-- Second signal row: bumped when scheduled jobs are added so dispatchers reload their window
+INSERT INTO queue_signal (id, seq) VALUES (2, 0)
+ON DUPLICATE KEY UPDATE id=id;
+
+INSERT INTO config (config_key, config_value) VALUES
+    ('scheduler-enabled', 'true'),
+    ('scheduler-tick-ms', '10'),
+    ('scheduler-window-seconds', '60'),
+    ('scheduler-load-ms', '1000'),
+    ('scheduler-max-loaded', '100000'),
+    ('scheduler-batch-size', '500')
+ON DUPLICATE KEY UPDATE config_key=config_key;
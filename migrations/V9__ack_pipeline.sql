@@ -0,0 +1,6 @@
+-- Workers hand run outcomes to a shared write-behind pipeline that writes them in batches.
+-- ack-batch-size 1 writes every outcome synchronously, as before.
+INSERT INTO config (config_key, config_value) VALUES
+    ('ack-batch-size', '100'),
+    ('ack-flush-ms', '20')
+ON DUPLICATE KEY UPDATE config_key=config_key;
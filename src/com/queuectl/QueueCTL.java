@@ -1,17 +1,44 @@
 package com.queuectl;
 
 import com.queuectl.core.*;
+import com.queuectl.daemon.ControlProtocol;
+import com.queuectl.daemon.Daemon;
+import com.queuectl.daemon.DaemonClient;
+import com.queuectl.db.SchemaMigrator;
 import com.queuectl.models.Job;
+import com.queuectl.util.JobWriter;
+import com.queuectl.util.Json;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class QueueCTL {
-    private JobQueue jobQueue;
+    private JobStore jobQueue;
     private ConfigManager configManager;
     private WorkerManager workerManager;
+    // Set while this process is the daemon serving other invocations
+    private volatile Daemon daemon;
 
     public QueueCTL() {
-        this.jobQueue = new JobQueue();
+        this.jobQueue = JobStores.get();
         this.configManager = new ConfigManager();
         this.workerManager = WorkerManager.getInstance();
     }
@@ -22,6 +49,15 @@ public class QueueCTL {
             return;
         }
 
+        // A running daemon answers most commands without this process touching the database
+        String[] forwarded = DaemonClient.forwardable(args);
+        if (forwarded != null) {
+            Integer code = DaemonClient.tryForward(ControlProtocol.socketPath(), forwarded);
+            if (code != null) {
+                System.exit(code);
+            }
+        }
+
         QueueCTL cli = new QueueCTL();
         
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
@@ -29,11 +65,22 @@ public class QueueCTL {
             cli.workerManager.stopWorkers();
         }));
 
+        int code = cli.run(args);
+        if (code != 0) {
+            System.exit(code);
+        }
+    }
+
+    // Runs one command line, from this process's arguments or from a daemon client
+    private int run(String[] args) {
         try {
-            cli.execute(args);
+            execute(args);
+            return 0;
+        } catch (ExitException e) {
+            return e.code;
         } catch (Exception e) {
             System.err.println("Error: " + e.getMessage());
-            System.exit(1);
+            return 1;
         }
     }
 
@@ -48,66 +95,405 @@ public class QueueCTL {
                 handleWorker(args);
                 break;
             case "status":
-                handleStatus();
+                handleStatus(args);
                 break;
             case "list":
                 handleList(args);
                 break;
+            case "show":
+                handleShow(args);
+                break;
+            case "workflow":
+                handleWorkflow(args);
+                break;
             case "dlq":
                 handleDLQ(args);
                 break;
             case "config":
                 handleConfig(args);
                 break;
+            case "migrate":
+                handleMigrate(args);
+                break;
+            case "archive":
+                handleArchive(args);
+                break;
+            case "schedule":
+                handleSchedule(args);
+                break;
+            case "metrics":
+                handleMetrics(args);
+                break;
+            case "daemon":
+                handleDaemon(args);
+                break;
             case "help":
                 printUsage();
                 break;
             default:
                 System.err.println("Unknown command: " + command);
                 printUsage();
-                System.exit(1);
+                throw new ExitException(1);
         }
     }
 
     private void handleEnqueue(String[] args) throws Exception {
         if (args.length < 2) {
-            System.err.println("Usage: queuectl enqueue <job-id> <command>");
-            System.exit(1);
+            System.err.println("Usage: queuectl enqueue <job-id> [--timeout SECONDS] [--queue NAME] [--priority P] " +
+                    "[--at TIME | --delay DURATION | --cron EXPR] [--payload TEXT | --payload-file FILE|-] " +
+                    "[--depends-on ID,...] <command>");
+            System.err.println("       queuectl enqueue --file <jobs.jsonl|-> [--batch-size N]");
+            throw new ExitException(1);
+        }
+
+        if (args[1].equals("--file")) {
+            handleBulkEnqueue(args);
+            return;
         }
 
         String jobId = args[1];
-        String command = args.length > 2 ? String.join(" ", java.util.Arrays.copyOfRange(args, 2, args.length)) : "";
+        int timeoutSeconds = 0;
+        String queue = Job.DEFAULT_QUEUE;
+        int priority = 0;
+        Timestamp runAt = null;
+        long delayMillis = 0;
+        CronExpression cron = null;
+        byte[] payload = null;
+        List<String> dependsOn = List.of();
+
+        // Options go between the job id and the command
+        int commandStart = 2;
+        while (commandStart + 1 < args.length && args[commandStart].startsWith("--")) {
+            switch (args[commandStart]) {
+                case "--timeout":
+                    timeoutSeconds = Integer.parseInt(args[commandStart + 1]);
+                    break;
+                case "--queue":
+                    queue = args[commandStart + 1];
+                    break;
+                case "--priority":
+                    priority = Integer.parseInt(args[commandStart + 1]);
+                    break;
+                case "--at":
+                    runAt = parseTime(args[commandStart + 1], "--at");
+                    break;
+                case "--delay":
+                    delayMillis = parseDuration(args[commandStart + 1]);
+                    break;
+                case "--cron":
+                    cron = new CronExpression(args[commandStart + 1]);
+                    break;
+                case "--payload":
+                    payload = args[commandStart + 1].getBytes(StandardCharsets.UTF_8);
+                    break;
+                case "--payload-file":
+                    String file = args[commandStart + 1];
+                    payload = file.equals("-") ? System.in.readAllBytes() : Files.readAllBytes(Paths.get(file));
+                    break;
+                case "--depends-on":
+                    dependsOn = parseIds(args[commandStart + 1]);
+                    break;
+                default:
+                    System.err.println("Unknown enqueue option: " + args[commandStart]);
+                    throw new ExitException(1);
+            }
+            commandStart += 2;
+        }
+
+        String command = args.length > commandStart ? String.join(" ", java.util.Arrays.copyOfRange(args, commandStart, args.length)) : "";
 
         if (command.isEmpty()) {
             System.err.println("Error: Command cannot be empty");
-            System.exit(1);
+            throw new ExitException(1);
         }
 
         Job job = new Job(jobId, command);
         job.setMaxRetries(configManager.getConfigInt("max-retries", 3));
+        job.setTimeoutSeconds(timeoutSeconds);
+        job.setQueue(queue);
+        job.setPriority(priority);
+        job.setPayload(payload);
+        job.setDependsOn(dependsOn);
+
+        if (!dependsOn.isEmpty() && (cron != null || runAt != null || delayMillis > 0)) {
+            System.err.println("Error: --depends-on can't be combined with --at, --delay or --cron");
+            throw new ExitException(1);
+        }
+        if (cron != null) {
+            requireMysql("enqueue --cron");
+            if (payload != null) {
+                System.err.println("Error: --cron schedules don't carry a payload");
+                throw new ExitException(1);
+            }
+            Timestamp next = new CronSchedules().add(jobId, cron, job);
+            System.out.println("Schedule '" + jobId + "' created; first run at " + next);
+            return;
+        }
+        if (runAt != null || delayMillis > 0) {
+            // Delayed jobs wait as 'scheduled' until a worker process's dispatcher promotes them
+            job.setState("scheduled");
+            job.setRunAt(runAt);
+            job.setDelayMillis(delayMillis);
+        }
         
         jobQueue.enqueue(job);
-        System.out.println("Job '" + jobId + "' enqueued successfully");
+        if (!dependsOn.isEmpty()) {
+            System.out.println("Job '" + jobId + "' enqueued; it runs once " + String.join(", ", dependsOn) + " complete");
+            return;
+        }
+        System.out.println("Job '" + jobId + "' " + (job.getState().equals("scheduled") ? "scheduled" : "enqueued") + " successfully");
+    }
+
+    private static List<String> parseIds(String value) {
+        List<String> ids = new ArrayList<>();
+        for (String id : value.split(",")) {
+            if (!id.isBlank()) {
+                ids.add(id.trim());
+            }
+        }
+        return ids;
+    }
+
+    private void handleBulkEnqueue(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Usage: queuectl enqueue --file <jobs.jsonl|-> [--batch-size N]");
+            throw new ExitException(1);
+        }
+
+        String file = args[2];
+        int batchSize = 500;
+        for (int i = 3; i < args.length; i++) {
+            if (args[i].equals("--batch-size") && i + 1 < args.length) {
+                batchSize = Math.max(1, Integer.parseInt(args[i + 1]));
+                break;
+            }
+        }
+
+        int defaultMaxRetries = configManager.getConfigInt("max-retries", 3);
+        long enqueued = 0;
+        long duplicates = 0;
+        long invalid = 0;
+        long lineNumber = 0;
+        List<Job> chunk = new ArrayList<>(batchSize);
+        long start = System.nanoTime();
+
+        // Stream the input so memory stays bounded by one chunk
+        try (BufferedReader reader = file.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    chunk.add(parseJobLine(line, defaultMaxRetries));
+                } catch (IllegalArgumentException e) {
+                    invalid++;
+                    System.err.println("Line " + lineNumber + ": skipped (" + e.getMessage() + ")");
+                    continue;
+                }
+
+                if (chunk.size() >= batchSize) {
+                    long dup = flushChunk(chunk);
+                    duplicates += dup;
+                    enqueued += chunk.size() - dup;
+                    chunk.clear();
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            long dup = flushChunk(chunk);
+            duplicates += dup;
+            enqueued += chunk.size() - dup;
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Enqueued %d job(s), %d duplicate(s), %d invalid line(s) in %.2fs (%.0f jobs/sec)\n",
+                enqueued, duplicates, invalid, seconds, seconds > 0 ? enqueued / seconds : 0.0);
+    }
+
+    private long flushChunk(List<Job> chunk) throws Exception {
+        List<String> duplicates = jobQueue.enqueueBatch(chunk);
+        for (String id : duplicates) {
+            System.err.println("Duplicate job id skipped: " + id);
+        }
+        return duplicates.size();
+    }
+
+    // A workflow is one JSON document, {"jobs": [...]} or just the array, whose jobs take the same
+    // fields as enqueue --file lines. It is checked for cycles here and enqueued as one batch, so
+    // the store takes the whole graph or none of it.
+    private void handleWorkflow(String[] args) throws Exception {
+        if (args.length < 3 || !args[1].equals("submit")) {
+            System.err.println("Usage: queuectl workflow submit <workflow.json|->");
+            throw new ExitException(1);
+        }
+        String file = args[2];
+        String text = file.equals("-")
+                ? new String(System.in.readAllBytes(), StandardCharsets.UTF_8)
+                : Files.readString(Paths.get(file), StandardCharsets.UTF_8);
+
+        int defaultMaxRetries = configManager.getConfigInt("max-retries", 3);
+        List<Job> jobs = new ArrayList<>();
+        Map<String, List<String>> parentsById = new LinkedHashMap<>();
+        try {
+            Object document = Json.parse(text);
+            Object entries = document instanceof Map ? ((Map<?, ?>) document).get("jobs") : document;
+            if (!(entries instanceof List) || ((List<?>) entries).isEmpty()) {
+                throw new IllegalArgumentException("expected a non-empty \"jobs\" array");
+            }
+            int index = 0;
+            for (Object entry : (List<?>) entries) {
+                index++;
+                if (!(entry instanceof Map)) {
+                    throw new IllegalArgumentException("job " + index + ": expected a JSON object");
+                }
+                @SuppressWarnings("unchecked")
+                Map<String, Object> fields = (Map<String, Object>) entry;
+                Job job;
+                try {
+                    job = parseJob(fields, defaultMaxRetries);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("job " + index + ": " + e.getMessage());
+                }
+                if (parentsById.put(job.getId(), job.getDependsOn()) != null) {
+                    throw new IllegalArgumentException("job " + index + ": duplicate id '" + job.getId() + "'");
+                }
+                jobs.add(job);
+            }
+            DependencyGraph.order(parentsById);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid workflow: " + e.getMessage());
+            throw new ExitException(1);
+        }
+
+        List<String> duplicates = jobQueue.enqueueBatch(jobs);
+        for (String id : duplicates) {
+            System.err.println("Duplicate job id skipped: " + id);
+        }
+        long waiting = jobs.stream().filter(job -> !job.getDependsOn().isEmpty() && !duplicates.contains(job.getId())).count();
+        System.out.println("Workflow submitted: " + (jobs.size() - duplicates.size()) + " job(s), " +
+                waiting + " waiting on dependencies");
+    }
+
+    private Job parseJobLine(String line, int defaultMaxRetries) {
+        return parseJob(Json.parseObject(line), defaultMaxRetries);
+    }
+
+    // One job from a bulk line or a workflow's "jobs" array
+    private Job parseJob(Map<String, Object> fields, int defaultMaxRetries) {
+        Object id = fields.get("id");
+        Object command = fields.get("command");
+        if (!(id instanceof String) || ((String) id).isEmpty()) {
+            throw new IllegalArgumentException("missing \"id\"");
+        }
+        if (!(command instanceof String) || ((String) command).isEmpty()) {
+            throw new IllegalArgumentException("missing \"command\"");
+        }
+
+        Job job = new Job((String) id, (String) command);
+        Object maxRetries = fields.get("max_retries");
+        job.setMaxRetries(maxRetries instanceof Number ? ((Number) maxRetries).intValue() : defaultMaxRetries);
+        Object timeout = fields.get("timeout_seconds");
+        if (timeout instanceof Number) {
+            job.setTimeoutSeconds(((Number) timeout).intValue());
+        }
+        Object queue = fields.get("queue");
+        if (queue instanceof String && !((String) queue).isEmpty()) {
+            job.setQueue((String) queue);
+        }
+        Object priority = fields.get("priority");
+        if (priority instanceof Number) {
+            job.setPriority(((Number) priority).intValue());
+        }
+        Object payload = fields.get("payload");
+        Object payloadBase64 = fields.get("payload_base64");
+        if (payload instanceof String) {
+            job.setPayload(((String) payload).getBytes(StandardCharsets.UTF_8));
+        } else if (payloadBase64 instanceof String) {
+            try {
+                job.setPayload(Base64.getDecoder().decode((String) payloadBase64));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("invalid \"payload_base64\"");
+            }
+        }
+        Object dependsOn = fields.get("depends_on");
+        if (dependsOn instanceof String) {
+            job.setDependsOn(parseIds((String) dependsOn));
+        } else if (dependsOn instanceof List) {
+            List<String> parents = new ArrayList<>();
+            for (Object parent : (List<?>) dependsOn) {
+                if (!(parent instanceof String) || ((String) parent).isEmpty()) {
+                    throw new IllegalArgumentException("invalid \"depends_on\"");
+                }
+                parents.add((String) parent);
+            }
+            job.setDependsOn(parents);
+        } else if (dependsOn != null) {
+            throw new IllegalArgumentException("invalid \"depends_on\"");
+        }
+        Object at = fields.get("at");
+        Object delay = fields.get("delay");
+        if (!job.getDependsOn().isEmpty() && (at != null || delay != null)) {
+            throw new IllegalArgumentException("\"depends_on\" can't be combined with \"at\" or \"delay\"");
+        }
+        if (at instanceof String) {
+            job.setRunAt(parseTime((String) at, "\"at\""));
+            job.setState("scheduled");
+        } else if (delay instanceof String) {
+            job.setDelayMillis(parseDuration((String) delay));
+            job.setState("scheduled");
+        }
+        return job;
     }
 
     private void handleWorker(String[] args) throws Exception {
         if (args.length < 2) {
-            System.err.println("Usage: queuectl worker [start|stop] [--count N]");
-            System.exit(1);
+            System.err.println("Usage: queuectl worker [start|stop] [--count N | --autoscale MIN:MAX] [--mode platform|virtual] " +
+                    "[--max-concurrency M] [--queues name:weight,...]");
+            System.err.println("       queuectl worker scale <N>   (daemon only)");
+            throw new ExitException(1);
         }
 
         String action = args[1].toLowerCase();
 
         switch (action) {
             case "start":
+                checkSchemaVersion();
                 int count = 1;
-                for (int i = 2; i < args.length; i++) {
-                    if (args[i].equals("--count") && i + 1 < args.length) {
-                        count = Integer.parseInt(args[i + 1]);
-                        break;
+                int maxConcurrency = 0;
+                String queues = null;
+                int[] autoscale = null;
+                WorkerManager.Mode mode = WorkerManager.Mode.PLATFORM;
+                for (int i = 2; i < args.length - 1; i++) {
+                    switch (args[i]) {
+                        case "--count":
+                            count = Integer.parseInt(args[++i]);
+                            break;
+                        case "--mode":
+                            mode = WorkerManager.Mode.valueOf(args[++i].toUpperCase());
+                            break;
+                        case "--max-concurrency":
+                            maxConcurrency = Integer.parseInt(args[++i]);
+                            break;
+                        case "--queues":
+                            queues = args[++i];
+                            break;
+                        case "--autoscale":
+                            autoscale = parseAutoscale(args[++i]);
+                            break;
                     }
                 }
-                workerManager.startWorkers(count);
+                if (autoscale != null) {
+                    workerManager.autoscale(autoscale[0], autoscale[1], mode, maxConcurrency, queues);
+                } else {
+                    workerManager.startWorkers(count, mode, maxConcurrency, queues);
+                }
+                if (daemon != null) {
+                    break;
+                }
                 
                 // Keep the main thread alive
                 System.out.println("Workers are running. Press Ctrl+C to stop.");
@@ -115,18 +501,41 @@ public class QueueCTL {
                 break;
 
             case "stop":
-                workerManager.stopWorkers();
+                // The daemon keeps its pool for the next start
+                workerManager.stopWorkers(daemon == null);
+                break;
+
+            case "scale":
+                if (args.length < 3) {
+                    System.err.println("Usage: queuectl worker scale <N>");
+                    throw new ExitException(1);
+                }
+                requireDaemon("worker scale");
+                checkSchemaVersion();
+                workerManager.scaleTo(Integer.parseInt(args[2]));
                 break;
 
             default:
                 System.err.println("Unknown worker action: " + action);
-                System.exit(1);
+                throw new ExitException(1);
         }
     }
 
-    private void handleStatus() throws Exception {
+    private void handleStatus(String[] args) throws Exception {
+        // Counters are normally kept exact by the workers; --reconcile recounts the jobs table first
+        if (args.length > 1 && args[1].equals("--reconcile")) {
+            Map<String, Integer> drift = jobQueue.reconcileJobStats();
+            if (drift == null) {
+                System.out.println("Another process is reconciling the counters");
+            } else if (!drift.isEmpty()) {
+                System.out.println("Corrected queue counter drift: " + drift);
+            }
+        }
+
         int[] stats = jobQueue.getJobStats();
-        int activeWorkers = workerManager.getActiveWorkerCount();
+        // Workers from every process, as recorded by their heartbeats
+        List<String> workerIds = jobQueue.listActiveWorkers();
+        int activeWorkers = workerIds.size();
 
         System.out.println("\n=== Queue Status ===");
         System.out.println("Pending:     " + stats[0]);
@@ -134,99 +543,225 @@ public class QueueCTL {
         System.out.println("Completed:   " + stats[2]);
         System.out.println("Failed:      " + stats[3]);
         System.out.println("Dead (DLQ):  " + stats[4]);
+        System.out.println("Scheduled:   " + stats[5]);
+        System.out.println("Blocked:     " + stats[6]);
         System.out.println("\nActive Workers: " + activeWorkers);
         
         if (activeWorkers > 0) {
-            List<String> workerIds = workerManager.getWorkerIds();
             System.out.println("Worker IDs:");
             for (String id : workerIds) {
                 System.out.println("  - " + id);
             }
         }
+
+        // Only known to the process running the workers, i.e. when status is answered by the daemon
+        Autoscaler autoscaler = workerManager.getAutoscaler();
+        if (autoscaler != null) {
+            System.out.println("\n=== Autoscaling ===");
+            System.out.println("Workers:     " + workerManager.getActiveWorkerCount() +
+                    " (min " + autoscaler.getMinWorkers() + ", max " + autoscaler.getMaxWorkers() + ")");
+            System.out.println("Last sample: " + autoscaler.getLastSignals());
+            List<String> decisions = autoscaler.getDecisions();
+            System.out.println("Decisions:" + (decisions.isEmpty() ? "   none yet" : ""));
+            for (String decision : decisions) {
+                System.out.println("  " + decision);
+            }
+        }
         System.out.println();
     }
 
     private void handleList(String[] args) throws Exception {
         String state = null;
-        
-        for (int i = 1; i < args.length; i++) {
-            if (args[i].equals("--state") && i + 1 < args.length) {
+        for (int i = 1; i < args.length - 1; i++) {
+            if (args[i].equals("--state")) {
                 state = args[i + 1];
                 break;
             }
         }
+        printJobs(args, 1, state, false);
+    }
 
-        List<Job> jobs = jobQueue.listJobs(state);
+    // Blobs are only read when asked for: --payload writes the raw payload, --result the stored output
+    private void handleShow(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: queuectl show <job-id> [--payload | --result]");
+            throw new ExitException(1);
+        }
+        String jobId = args[1];
+        String part = args.length > 2 ? args[2] : null;
+        if (part != null && !part.equals("--payload") && !part.equals("--result")) {
+            System.err.println("Unknown show option: " + part);
+            throw new ExitException(1);
+        }
 
-        if (jobs.isEmpty()) {
-            System.out.println("No jobs found" + (state != null ? " with state: " + state : ""));
+        Job job = jobQueue.getJob(jobId, part != null);
+        if (job == null) {
+            System.err.println("Job not found: " + jobId);
+            throw new ExitException(1);
+        }
+        if ("--payload".equals(part)) {
+            if (job.getPayload() != null) {
+                System.out.write(job.getPayload());
+                System.out.flush();
+            }
             return;
         }
-
-        System.out.println("\n=== Jobs" + (state != null ? " (State: " + state + ")" : "") + " ===");
-        System.out.printf("%-20s %-15s %-40s %-10s %-10s\n", "ID", "State", "Command", "Attempts", "Max Retries");
-        System.out.println("─".repeat(100));
-        
-        for (Job job : jobs) {
-            String cmd = job.getCommand();
-            if (cmd.length() > 37) {
-                cmd = cmd.substring(0, 37) + "...";
+        if ("--result".equals(part)) {
+            if (job.getResult() != null) {
+                System.out.print(job.getResult());
+                System.out.flush();
             }
-            System.out.printf("%-20s %-15s %-40s %-10d %-10d\n",
-                    job.getId(), job.getState(), cmd, job.getAttempts(), job.getMaxRetries());
+            return;
+        }
+
+        System.out.println("\n=== Job " + job.getId() + " ===");
+        System.out.println("State:           " + job.getState());
+        System.out.println("Command:         " + job.getCommand());
+        System.out.println("Queue:           " + job.getQueue() + " (priority " + job.getPriority() + ")");
+        System.out.println("Attempts:        " + job.getAttempts() + "/" + job.getMaxRetries());
+        System.out.println("Created:         " + job.getCreatedAt());
+        System.out.println("Updated:         " + job.getUpdatedAt());
+        if (job.getRunAt() != null) {
+            System.out.println("Run at:          " + job.getRunAt());
         }
+        if (job.getWorkerId() != null) {
+            System.out.println("Worker:          " + job.getWorkerId());
+        }
+        if (job.getErrorMessage() != null) {
+            System.out.println("Error:           " + job.getErrorMessage() +
+                    (job.getFailureReason() != null ? " (" + job.getFailureReason() + ")" : ""));
+        }
+        List<String> dependsOn = jobQueue.getDependencies(jobId);
+        if (!dependsOn.isEmpty()) {
+            System.out.println("Depends on:      " + String.join(", ", dependsOn) +
+                    (job.getState().equals("blocked") ? " (" + job.getDepsRemaining() + " unfinished)" : ""));
+        }
+        System.out.println("Payload:         " + (job.getPayloadBytes() >= 0 ? job.getPayloadBytes() + " bytes" : "none"));
+        System.out.println("Result:          " + (job.getResultBytes() >= 0 ? job.getResultBytes() + " bytes"
+                : job.getResult() != null ? job.getResult().length() + " chars" : "none"));
         System.out.println();
     }
 
+    // Shared by list and dlq list: --limit N, --after <cursor>, --since <time|30m|2h|7d>, --format table|jsonl|csv
+    private void printJobs(String[] args, int start, String state, boolean dlq) throws Exception {
+        int limit = 0;
+        String after = null;
+        Timestamp since = null;
+        String format = JobWriter.TABLE;
+
+        for (int i = start; i < args.length - 1; i++) {
+            switch (args[i]) {
+                case "--limit": limit = Integer.parseInt(args[++i]); break;
+                case "--after": after = args[++i]; break;
+                case "--since": since = parseSince(args[++i]); break;
+                case "--format": format = args[++i].toLowerCase(); break;
+            }
+        }
+
+        JobCursor cursor = jobQueue.listJobs(state, since, after, limit);
+        BufferedWriter out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+        JobWriter writer = new JobWriter(out, format, dlq);
+        boolean table = format.equals(JobWriter.TABLE);
+
+        if (!cursor.hasNext()) {
+            if (table) {
+                System.out.println(dlq ? "No jobs in Dead Letter Queue" :
+                        "No jobs found" + (state != null ? " with state: " + state : ""));
+            }
+            return;
+        }
+
+        if (table) {
+            out.write(dlq ? "\n=== Dead Letter Queue ===\n" :
+                    "\n=== Jobs" + (state != null ? " (State: " + state + ")" : "") + " ===\n");
+        }
+        writer.writeHeader();
+        while (cursor.hasNext()) {
+            writer.write(cursor.next());
+        }
+        if (table) {
+            out.write("\n");
+        }
+        out.flush();
+
+        // On stderr so piped jsonl/csv output stays clean
+        if (cursor.isLimitReached()) {
+            System.err.println("Next page: --after " + cursor.cursor());
+        }
+    }
+
+    // Accepts an absolute time (2024-01-31 12:00:00 or ISO-8601) or an age such as 30m, 2h or 7d
+    private static Timestamp parseSince(String value) {
+        if (isDuration(value)) {
+            return new Timestamp(System.currentTimeMillis() - parseDuration(value));
+        }
+        return parseTime(value, "--since");
+    }
+
+    private static boolean isDuration(String value) {
+        return value.matches("\\d+(ms|[smhd])");
+    }
+
+    // 500ms, 30s, 5m, 2h or 7d in milliseconds
+    private static long parseDuration(String value) {
+        if (!isDuration(value)) {
+            throw new IllegalArgumentException("Invalid duration: " + value + " (use e.g. 500ms, 30s, 5m, 2h, 7d)");
+        }
+        if (value.endsWith("ms")) {
+            return Long.parseLong(value.substring(0, value.length() - 2));
+        }
+        long amount = Long.parseLong(value.substring(0, value.length() - 1));
+        switch (value.charAt(value.length() - 1)) {
+            case 's': return amount * 1000L;
+            case 'm': return amount * 60_000L;
+            case 'h': return amount * 3_600_000L;
+            default: return amount * 86_400_000L;
+        }
+    }
+
+    private static Timestamp parseTime(String value, String option) {
+        try {
+            return Timestamp.valueOf(value);
+        } catch (IllegalArgumentException e) {
+            try {
+                return Timestamp.from(Instant.parse(value));
+            } catch (DateTimeParseException ex) {
+                throw new IllegalArgumentException("Invalid " + option + " value: " + value);
+            }
+        }
+    }
+
     private void handleDLQ(String[] args) throws Exception {
         if (args.length < 2) {
-            System.err.println("Usage: queuectl dlq [list|retry] [job-id]");
-            System.exit(1);
+            System.err.println("Usage: queuectl dlq [list [options]|retry <job-id>]");
+            throw new ExitException(1);
         }
 
         String action = args[1].toLowerCase();
 
         switch (action) {
             case "list":
-                List<Job> deadJobs = jobQueue.listJobs("dead");
-                
-                if (deadJobs.isEmpty()) {
-                    System.out.println("No jobs in Dead Letter Queue");
-                    return;
-                }
-
-                System.out.println("\n=== Dead Letter Queue ===");
-                System.out.printf("%-20s %-40s %-10s %-30s\n", "ID", "Command", "Attempts", "Error");
-                System.out.println("─".repeat(105));
-                
-                for (Job job : deadJobs) {
-                    String cmd = job.getCommand();
-                    if (cmd.length() > 37) {
-                        cmd = cmd.substring(0, 37) + "...";
-                    }
-                    String error = job.getErrorMessage();
-                    if (error != null && error.length() > 27) {
-                        error = error.substring(0, 27) + "...";
-                    }
-                    System.out.printf("%-20s %-40s %-10d %-30s\n",
-                            job.getId(), cmd, job.getAttempts(), error);
-                }
-                System.out.println();
+                printJobs(args, 2, "dead", true);
                 break;
 
             case "retry":
                 if (args.length < 3) {
                     System.err.println("Usage: queuectl dlq retry <job-id>");
-                    System.exit(1);
+                    throw new ExitException(1);
                 }
                 String jobId = args[2];
                 jobQueue.retryDeadJob(jobId);
+                Job retried = jobQueue.getJob(jobId);
+                if (retried != null && retried.getState().equals("blocked")) {
+                    System.out.println("Job '" + jobId + "' moved from DLQ; it waits for its dependencies again");
+                    break;
+                }
                 System.out.println("Job '" + jobId + "' moved from DLQ back to pending queue");
                 break;
 
             default:
                 System.err.println("Unknown DLQ action: " + action);
-                System.exit(1);
+                throw new ExitException(1);
         }
     }
 
@@ -242,7 +777,7 @@ public class QueueCTL {
             case "set":
                 if (args.length < 4) {
                     System.err.println("Usage: queuectl config set <key> <value>");
-                    System.exit(1);
+                    throw new ExitException(1);
                 }
                 String key = args[2];
                 String value = args[3];
@@ -253,7 +788,7 @@ public class QueueCTL {
             case "get":
                 if (args.length < 3) {
                     System.err.println("Usage: queuectl config get <key>");
-                    System.exit(1);
+                    throw new ExitException(1);
                 }
                 key = args[2];
                 value = configManager.getConfig(key);
@@ -270,7 +805,224 @@ public class QueueCTL {
 
             default:
                 System.err.println("Unknown config action: " + action);
-                System.exit(1);
+                throw new ExitException(1);
+        }
+    }
+
+    private void handleArchive(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: queuectl archive [run|status|purge] [--older-than-days N]");
+            throw new ExitException(1);
+        }
+
+        JobArchiver archiver = new JobArchiver();
+        String action = args[1].toLowerCase();
+
+        switch (action) {
+            case "run":
+                System.out.println(archiver.describe(archiver.runOnce()));
+                break;
+
+            case "status":
+                requireMysql("archive status");
+                archiver.printStatus();
+                break;
+
+            case "purge":
+                requireMysql("archive purge");
+                int days = configManager.getConfigInt("archive-retention-days", 30);
+                for (int i = 2; i < args.length - 1; i++) {
+                    if (args[i].equals("--older-than-days")) {
+                        days = Integer.parseInt(args[i + 1]);
+                        break;
+                    }
+                }
+                int purged = archiver.purgeArchive(days, configManager.getConfigInt("archive-batch-size", 1000));
+                System.out.println("Purged " + purged + " archived job(s) older than " + days + " day(s)");
+                break;
+
+            default:
+                System.err.println("Unknown archive action: " + action);
+                throw new ExitException(1);
+        }
+    }
+
+    private void handleSchedule(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: queuectl schedule [list|remove <schedule-id>]");
+            throw new ExitException(1);
+        }
+
+        requireMysql("schedule");
+        CronSchedules schedules = new CronSchedules();
+        String action = args[1].toLowerCase();
+
+        switch (action) {
+            case "list":
+                schedules.printSchedules();
+                break;
+
+            case "remove":
+                if (args.length < 3) {
+                    System.err.println("Usage: queuectl schedule remove <schedule-id>");
+                    throw new ExitException(1);
+                }
+                if (schedules.remove(args[2])) {
+                    System.out.println("Schedule '" + args[2] + "' removed; runs already created are unaffected");
+                } else {
+                    System.err.println("Schedule not found: " + args[2]);
+                    throw new ExitException(1);
+                }
+                break;
+
+            default:
+                System.err.println("Unknown schedule action: " + action);
+                throw new ExitException(1);
+        }
+    }
+
+    // Metrics live in the worker process; this reads its /metrics endpoint
+    private void handleMetrics(String[] args) throws Exception {
+        int port = configManager.getConfigInt("metrics-port", 9464);
+        boolean raw = false;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--port") && i + 1 < args.length) {
+                port = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--raw")) {
+                raw = true;
+            }
+        }
+
+        URL url = new URL("http://127.0.0.1:" + port + "/metrics");
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        conn.setConnectTimeout(2000);
+        conn.setReadTimeout(5000);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (raw || !line.startsWith("#")) {
+                    System.out.println(line);
+                }
+            }
+        } catch (ConnectException e) {
+            System.err.println("No worker process is serving metrics on port " + port);
+            throw new ExitException(1);
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    private void handleDaemon(String[] args) throws Exception {
+        String action = args.length > 1 ? args[1].toLowerCase() : "";
+
+        switch (action) {
+            case "start":
+                if (daemon != null) {
+                    System.err.println("The daemon is already running");
+                    throw new ExitException(1);
+                }
+                checkSchemaVersion();
+                int count = 0;
+                int[] autoscale = null;
+                for (int i = 2; i < args.length - 1; i++) {
+                    if (args[i].equals("--count")) {
+                        count = Integer.parseInt(args[++i]);
+                    } else if (args[i].equals("--autoscale")) {
+                        autoscale = parseAutoscale(args[++i]);
+                    }
+                }
+                Daemon server = new Daemon(ControlProtocol.socketPath(), this::run);
+                server.listen();
+                daemon = server;
+                if (autoscale != null) {
+                    workerManager.autoscale(autoscale[0], autoscale[1], WorkerManager.Mode.PLATFORM, 0, null);
+                } else if (count > 0) {
+                    workerManager.startWorkers(count);
+                }
+                server.serve();
+                daemon = null;
+                workerManager.stopWorkers();
+                break;
+
+            case "stop":
+                requireDaemon("daemon stop");
+                System.out.println("Daemon stopping");
+                daemon.stop();
+                break;
+
+            case "status":
+                requireDaemon("daemon status");
+                System.out.println("\n=== Daemon ===");
+                System.out.println("PID:       " + ProcessHandle.current().pid());
+                System.out.println("Socket:    " + daemon.getSocketPath());
+                System.out.println("Uptime:    " + daemon.getUptimeMillis() / 1000 + "s");
+                System.out.println("Workers:   " + workerManager.getActiveWorkerCount());
+                System.out.println("Requests:  " + daemon.getRequestCount());
+                System.out.println();
+                break;
+
+            default:
+                System.err.println("Usage: queuectl daemon [start [--count N | --autoscale MIN:MAX]|stop|status]");
+                throw new ExitException(1);
+        }
+    }
+
+    // MIN:MAX worker bounds for --autoscale
+    private static int[] parseAutoscale(String value) {
+        String[] parts = value.split(":");
+        try {
+            if (parts.length == 2) {
+                return new int[] {Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim())};
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Invalid --autoscale value: " + value + " (use MIN:MAX, e.g. 2:16)");
+    }
+
+    // Reached only when no daemon answered on the socket, or from inside the daemon itself
+    private void requireDaemon(String command) {
+        if (daemon == null) {
+            System.err.println("'" + command + "' needs a running daemon; none is listening on " + ControlProtocol.socketPath());
+            throw new ExitException(1);
+        }
+    }
+
+    private void handleMigrate(String[] args) throws Exception {
+        requireMysql("migrate");
+        SchemaMigrator migrator = new SchemaMigrator();
+
+        if (args.length > 1 && args[1].equalsIgnoreCase("status")) {
+            migrator.printStatus();
+            return;
+        }
+
+        int applied = migrator.migrate();
+        System.out.println(applied == 0 ? "Schema is up to date" : "Applied " + applied + " migration(s)");
+    }
+
+    private void checkSchemaVersion() throws Exception {
+        if (JobStores.isEmbedded()) {
+            return;
+        }
+        int pending;
+        try {
+            pending = new SchemaMigrator().pendingCount();
+        } catch (IOException e) {
+            // No migrations directory next to this install; trust the operator
+            return;
+        }
+        if (pending > 0) {
+            System.err.println("Database schema is " + pending + " migration(s) behind. Run 'queuectl migrate' first.");
+            throw new ExitException(1);
+        }
+    }
+
+    // Archiving, cron schedules and migrations are built on MySQL tables
+    private static void requireMysql(String command) {
+        if (JobStores.isEmbedded()) {
+            System.err.println("'" + command + "' is not available with store.type=embedded");
+            throw new ExitException(1);
         }
     }
 
@@ -280,24 +1032,84 @@ public class QueueCTL {
         System.out.println("  queuectl <command> [options]\n");
         System.out.println("COMMANDS:");
         System.out.println("  enqueue <job-id> <command>           Enqueue a new job");
+        System.out.println("    [--timeout SECONDS]                Kill the job if it runs longer (before the command)");
+        System.out.println("    [--queue NAME] [--priority P]      Put the job on a named queue; higher priority runs first");
+        System.out.println("    [--at TIME | --delay 30s]          Run at a time or after a delay instead of right away");
+        System.out.println("    [--cron \"*/5 * * * *\"]             Create a recurring schedule with this id instead");
+        System.out.println("    [--payload TEXT | --payload-file F] Input for the job: its stdin, or job.getPayload() in handlers");
+        System.out.println("    [--depends-on ID,...]              Wait as blocked until these jobs have completed");
+        System.out.println("  enqueue --file <jobs.jsonl|->        Bulk enqueue JSON lines from a file or stdin");
+        System.out.println("  workflow submit <workflow.json|->    Enqueue a graph of jobs ({\"jobs\": [...]}, with depends_on) at once");
         System.out.println("  worker start [--count N]             Start N worker(s) (default: 1)");
+        System.out.println("    [--mode platform|virtual]          Run workers on platform or virtual threads (Java 21+)");
+        System.out.println("    [--max-concurrency M]              Limit how many jobs run at once across all workers");
+        System.out.println("    [--queues name:weight,...]         Serve these queues with weighted fair sharing (default: all)");
+        System.out.println("    [--autoscale MIN:MAX]              Grow and shrink the workers with the backlog instead of --count");
         System.out.println("  worker stop                          Stop all workers");
-        System.out.println("  status                               Show queue status and statistics");
-        System.out.println("  list [--state <state>]               List jobs (optionally filter by state)");
-        System.out.println("  dlq list                             List jobs in Dead Letter Queue");
+        System.out.println("  worker scale <N>                     Grow or shrink the daemon's workers to N");
+        System.out.println("  daemon start [--count N | --autoscale MIN:MAX]  Run a resident process serving the commands below");
+        System.out.println("  daemon stop | status                 Stop or describe the running daemon");
+        System.out.println("  status [--reconcile]                 Show queue status and statistics");
+        System.out.println("  list [--state <state>] [options]     List jobs, newest first (optionally filter by state)");
+        System.out.println("  show <job-id> [--payload | --result] Show one job, or write its payload or stored output");
+        System.out.println("  dlq list [options]                   List jobs in Dead Letter Queue");
+        System.out.println("    options: --limit N  --after <cursor>  --since <time|30m|2h|7d>  --format table|jsonl|csv");
         System.out.println("  dlq retry <job-id>                   Retry a job from DLQ");
         System.out.println("  config [list]                        List all configuration");
         System.out.println("  config get <key>                     Get configuration value");
         System.out.println("  config set <key> <value>             Set configuration value");
+        System.out.println("  schedule list                        List recurring schedules");
+        System.out.println("  schedule remove <schedule-id>        Delete a recurring schedule");
+        System.out.println("  archive run                          Move old completed jobs, and dead jobs past DLQ retention, to the archive now");
+        System.out.println("  archive status                       Show hot table and archive sizes");
+        System.out.println("  archive purge [--older-than-days N]  Delete archived jobs past retention");
+        System.out.println("  metrics [--port N] [--raw]           Show the running workers' metrics (Prometheus text)");
+        System.out.println("  migrate [status]                     Apply (or list) database schema migrations");
         System.out.println("  help                                 Show this help message\n");
         System.out.println("EXAMPLES:");
         System.out.println("  queuectl enqueue job1 echo \"Hello World\"");
         System.out.println("  queuectl enqueue job2 sleep 5");
+        System.out.println("  queuectl enqueue job3 --timeout 30 ./long-task.sh");
+        System.out.println("  queuectl enqueue alert1 --queue critical --priority 10 ./notify.sh");
+        System.out.println("  queuectl enqueue report1 --delay 10m ./report.sh");
+        System.out.println("  queuectl enqueue nightly --cron \"0 2 * * *\" ./backup.sh");
+        System.out.println("  queuectl enqueue ping1 java:echo pong");
+        System.out.println("  queuectl enqueue import1 --payload-file rows.csv ./import.sh");
+        System.out.println("  queuectl enqueue --file jobs.jsonl");
+        System.out.println("  queuectl enqueue load1 --depends-on extract1,extract2 ./load.sh");
+        System.out.println("  queuectl workflow submit pipeline.json");
         System.out.println("  queuectl worker start --count 3");
+        System.out.println("  queuectl worker start --mode virtual --count 1000 --max-concurrency 200");
+        System.out.println("  queuectl worker start --count 4 --queues critical:5,default:1");
         System.out.println("  queuectl status");
         System.out.println("  queuectl list --state pending");
+        System.out.println("  queuectl show import1 --result");
         System.out.println("  queuectl dlq list");
         System.out.println("  queuectl config set max-retries 5");
+        System.out.println("\nSTORAGE:");
+        System.out.println("  store.type=embedded in db.properties keeps jobs in a local log file instead of MySQL");
+        System.out.println("  (store.path, store.fsync=always|interval|never); one process at a time, no schedule/migrate.");
+        System.out.println("  It has no archive: archive run drops finished jobs past the archive limits instead");
+        System.out.println("\nHANDLERS:");
+        System.out.println("  A command of the form java:<name> <args> runs a JobHandler in the worker's JVM instead of sh -c.");
+        System.out.println("  Built in: noop, echo. More are loaded with ServiceLoader from META-INF/services/com.queuectl.handlers.JobHandler");
+        System.out.println("\nDEPENDENCIES:");
+        System.out.println("  A job with depends_on runs after all of its parents complete. dependency-failure-policy says what");
+        System.out.println("  happens when a parent goes to the DLQ: cancel (its dependents follow it there), ignore, or wait");
+        System.out.println("\nDAEMON:");
+        System.out.println("  While a daemon listens on daemon.socket (db.properties, default queuectl.sock), enqueue, worker,");
+        System.out.println("  workflow, status, list, show, dlq, config, archive and schedule run inside it; otherwise they run in this process");
         System.out.println();
     }
+
+    // Ends a command with an exit code without ending the process, which may be the daemon
+    private static class ExitException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        private final int code;
+
+        ExitException(int code) {
+            super(null, null, false, false);
+            this.code = code;
+        }
+    }
 }
@@ -0,0 +1,92 @@
+package com.queuectl.bench;
+
+import com.queuectl.core.QueueStats;
+import com.queuectl.db.DatabaseManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+// Shared setup for benchmarks that run against the configured database.
+// Benchmark jobs are tagged by id prefix so they can be created and removed in bulk.
+class BenchSupport {
+    private BenchSupport() {
+    }
+
+    // Benchmarks claim whatever is claimable, so refuse to run next to real work
+    static void requireIdleQueue(String prefix) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM jobs WHERE state IN ('pending', 'failed', 'processing') AND id NOT LIKE ?";
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, prefix + "%");
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                if (rs.getLong(1) > 0) {
+                    System.err.println("Refusing to run: the jobs table contains active jobs that are not benchmark jobs");
+                    System.exit(1);
+                }
+            }
+        }
+    }
+
+    static void insertJobs(String prefix, int count, String command) throws SQLException {
+        String sql = "INSERT INTO jobs (id, command, state) VALUES (?, ?, 'pending')";
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            conn.setAutoCommit(false);
+            for (int i = 0; i < count; i++) {
+                stmt.setString(1, prefix + i);
+                stmt.setString(2, command);
+                stmt.addBatch();
+                if (i % 500 == 499) {
+                    stmt.executeBatch();
+                }
+            }
+            stmt.executeBatch();
+            conn.commit();
+        }
+    }
+
+    static long countJobs(String prefix, String state) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM jobs WHERE id LIKE ? AND state = ?";
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, prefix + "%");
+            stmt.setString(2, state);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    // As if the workers holding these jobs stopped renewing their leases long ago
+    static void expireLeases(String prefix) throws SQLException {
+        String sql = "UPDATE jobs SET lease_expires_at = TIMESTAMPADD(SECOND, -1, NOW(3)) WHERE id LIKE ? AND state = 'processing'";
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, prefix + "%");
+            stmt.executeUpdate();
+        }
+    }
+
+    static void deleteJobs(String prefix) throws SQLException {
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement stmt = conn.prepareStatement("DELETE FROM jobs WHERE id LIKE ?")) {
+            stmt.setString(1, prefix + "%");
+            stmt.executeUpdate();
+        }
+        // Benchmark rows are written directly, so bring the status counters back in line
+        new QueueStats().reconcile();
+    }
+
+    static int[] parseCounts(String value) {
+        String[] parts = value.split(",");
+        int[] counts = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            counts[i] = Integer.parseInt(parts[i].trim());
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,84 @@
+package com.queuectl.bench;
+
+import com.queuectl.core.JobQueue;
+import com.queuectl.db.DatabaseManager;
+import com.queuectl.models.Job;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Measures claims/sec for single-row and batched dequeue across worker counts.
+// Run against a dedicated database: it refuses to start if other jobs are active.
+public class ClaimBenchmark {
+    private static final String PREFIX = "bench-claim-";
+
+    public static void main(String[] args) throws Exception {
+        int jobs = 5000;
+        int batchSize = 10;
+        int[] workerCounts = {1, 2, 4, 8, 16, 32};
+
+        for (int i = 0; i < args.length - 1; i++) {
+            switch (args[i]) {
+                case "--jobs": jobs = Integer.parseInt(args[++i]); break;
+                case "--batch": batchSize = Integer.parseInt(args[++i]); break;
+                case "--workers": workerCounts = BenchSupport.parseCounts(args[++i]); break;
+            }
+        }
+
+        DatabaseManager db = DatabaseManager.getInstance();
+        BenchSupport.requireIdleQueue(PREFIX);
+
+        JobQueue jobQueue = new JobQueue();
+        System.out.printf("%-10s %-8s %-12s %-12s\n", "Mode", "Workers", "Claims", "Claims/sec");
+        try {
+            for (int workers : workerCounts) {
+                for (int batch : new int[]{1, batchSize}) {
+                    BenchSupport.deleteJobs(PREFIX);
+                    BenchSupport.insertJobs(PREFIX, jobs, "true");
+                    double rate = run(jobQueue, workers, batch, jobs);
+                    System.out.printf("%-10s %-8d %-12d %-12.1f\n",
+                            batch == 1 ? "single" : "batch-" + batch, workers, jobs, rate);
+                }
+            }
+        } finally {
+            BenchSupport.deleteJobs(PREFIX);
+            db.shutdown();
+        }
+    }
+
+    private static double run(JobQueue jobQueue, int workers, int batch, int expected) throws InterruptedException {
+        AtomicLong claimed = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+
+        for (int w = 0; w < workers; w++) {
+            String workerId = "bench-worker-" + w;
+            Thread t = new Thread(() -> {
+                try {
+                    start.await();
+                    while (claimed.get() < expected) {
+                        List<Job> jobs = jobQueue.dequeueBatch(workerId, batch);
+                        if (jobs.isEmpty()) {
+                            break;
+                        }
+                        claimed.addAndGet(jobs.size());
+                    }
+                } catch (Exception e) {
+                    System.err.println("[" + workerId + "] " + e.getMessage());
+                }
+            });
+            threads.add(t);
+            t.start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        return claimed.get() / seconds;
+    }
+}
@@ -0,0 +1,127 @@
+package com.queuectl.bench;
+
+import com.queuectl.core.JobQueue;
+import com.queuectl.core.LatencyStats;
+import com.queuectl.db.DatabaseManager;
+import com.queuectl.models.Job;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Random;
+
+// Generates a reproducible jobs table of N rows (mostly completed history, a small ready set)
+// and measures single-claim latency on it. --legacy times the pre-V3 claim query for comparison.
+public class ClaimLatencyBenchmark {
+    private static final String PREFIX = "bench-data-";
+    private static final String LEGACY_CLAIM_SQL = "SELECT * FROM jobs WHERE " +
+            "(state = 'pending' OR (state = 'failed' AND (next_retry_at IS NULL OR next_retry_at <= NOW()))) " +
+            "ORDER BY created_at ASC LIMIT 1 FOR UPDATE SKIP LOCKED";
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = {10_000, 1_000_000, 10_000_000};
+        int claims = 2000;
+        double readyFraction = 0.01;
+        boolean legacy = false;
+        long seed = 42;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--rows": sizes = BenchSupport.parseCounts(args[++i]); break;
+                case "--claims": claims = Integer.parseInt(args[++i]); break;
+                case "--ready-fraction": readyFraction = Double.parseDouble(args[++i]); break;
+                case "--seed": seed = Long.parseLong(args[++i]); break;
+                case "--legacy": legacy = true; break;
+            }
+        }
+
+        BenchSupport.requireIdleQueue(PREFIX);
+        JobQueue jobQueue = new JobQueue();
+
+        System.out.printf("%-10s %-10s %-10s %-10s %-10s\n", "Rows", "Query", "p50(ms)", "p99(ms)", "max(ms)");
+        try {
+            for (int rows : sizes) {
+                BenchSupport.deleteJobs(PREFIX);
+                generate(rows, readyFraction, seed);
+
+                LatencyStats stats = new LatencyStats("claim", claims);
+                for (int i = 0; i < claims; i++) {
+                    long start = System.nanoTime();
+                    List<Job> claimed = null;
+                    if (legacy) {
+                        legacyClaim();
+                    } else {
+                        claimed = jobQueue.dequeueBatch("bench-worker", 1);
+                    }
+                    stats.record((System.nanoTime() - start) / 1000);
+
+                    // Put it back so every iteration sees the same table
+                    if (claimed != null) {
+                        jobQueue.releaseJobs("bench-worker", claimed);
+                    }
+                }
+                System.out.printf("%-10d %-10s %-10.2f %-10.2f %-10.2f\n", rows, legacy ? "legacy" : "ready-idx",
+                        stats.percentile(50) / 1000.0, stats.percentile(99) / 1000.0, stats.percentile(100) / 1000.0);
+            }
+        } finally {
+            BenchSupport.deleteJobs(PREFIX);
+            DatabaseManager.getInstance().shutdown();
+        }
+    }
+
+    // Same seed, same table: states and timestamps are drawn from a seeded Random
+    private static void generate(int rows, double readyFraction, long seed) throws SQLException {
+        Random random = new Random(seed);
+        int chunk = 1000;
+        StringBuilder sql = new StringBuilder("INSERT INTO jobs (id, command, state, attempts, created_at, run_at) VALUES ");
+        for (int i = 0; i < chunk; i++) {
+            sql.append(i == 0 ? "(?, 'true', ?, 0, ?, ?)" : ", (?, 'true', ?, 0, ?, ?)");
+        }
+
+        long now = System.currentTimeMillis();
+        long start = System.nanoTime();
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement full = conn.prepareStatement(sql.toString());
+             PreparedStatement single = conn.prepareStatement(
+                     "INSERT INTO jobs (id, command, state, attempts, created_at, run_at) VALUES (?, 'true', ?, 0, ?, ?)")) {
+            conn.setAutoCommit(false);
+            int i = 0;
+            while (i < rows) {
+                int n = Math.min(chunk, rows - i);
+                PreparedStatement stmt = n == chunk ? full : single;
+                for (int j = 0; j < n; j++, i++) {
+                    String state = random.nextDouble() < readyFraction ? "pending" : "completed";
+                    Timestamp created = new Timestamp(now - 86_400_000L + random.nextInt(86_400_000));
+                    int base = n == chunk ? j * 4 : 0;
+                    stmt.setString(base + 1, PREFIX + i);
+                    stmt.setString(base + 2, state);
+                    stmt.setTimestamp(base + 3, created);
+                    stmt.setTimestamp(base + 4, created);
+                    if (n != chunk) {
+                        stmt.executeUpdate();
+                    }
+                }
+                if (n == chunk) {
+                    full.executeUpdate();
+                }
+                conn.commit();
+            }
+        }
+        System.err.printf("Generated %d rows in %.1fs\n", rows, (System.nanoTime() - start) / 1e9);
+    }
+
+    private static void legacyClaim() throws SQLException {
+        try (Connection conn = DatabaseManager.getInstance().getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(LEGACY_CLAIM_SQL);
+                 ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+            }
+            // Roll back instead of claiming so the table stays unchanged between iterations
+            conn.rollback();
+        }
+    }
+}
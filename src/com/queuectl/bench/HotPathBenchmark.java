@@ -0,0 +1,433 @@
+package com.queuectl.bench;
+
+import com.queuectl.core.ConfigManager;
+import com.queuectl.core.JobAck;
+import com.queuectl.core.JobQueue;
+import com.queuectl.core.JobStore;
+import com.queuectl.core.JobStores;
+import com.queuectl.core.WorkerManager;
+import com.queuectl.db.DatabaseManager;
+import com.queuectl.models.Job;
+import com.queuectl.store.EmbeddedJobStore;
+import com.queuectl.util.Json;
+
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Throughput of the queue hot paths, with warmup and measured iterations like JMH:
+//   enqueue      enqueueBatch in chunks of 500
+//   dequeue_ack  claim a batch and acknowledge it, per thread count
+//   get_job      random getJob lookups (row mapping on MySQL), per thread count
+//   config       ConfigManager.getConfigInt from the shared cache, per thread count
+//   worker       end-to-end jobs/sec of WorkerManager running `true`, per worker count
+//   handler      the same with the in-process `java:noop` handler, so the fork/exec cost shows as the gap
+// The store benchmarks use a temporary embedded store unless --store mysql is given; the worker
+// benchmark always runs against the store configured in db.properties.
+// JMH versions of the SQL paths (claim, lookup, row mapping) live in bench/, built with its own pom.
+//   --store embedded|mysql  --fsync interval  --benchmarks enqueue,dequeue_ack,get_job,config,worker,handler
+//   --threads 1,4,16  --workers 1,4,16  --jobs N  --worker-jobs N  --batch N
+//   --warmup N  --iterations N  --json FILE  (- for stdout)
+public class HotPathBenchmark {
+    private static final String PREFIX = "bench-hot-";
+    private static final int ENQUEUE_CHUNK = 500;
+    private static final int CONFIG_LOOKUPS = 2_000_000;
+
+    private final List<Result> results = new ArrayList<>();
+    private String storeType = "embedded";
+    private String fsync = "interval";
+    private List<String> benchmarks = Arrays.asList("enqueue", "dequeue_ack", "get_job", "config", "worker", "handler");
+    private int[] threads = {1, 4, 16};
+    private int[] workers = {1, 4, 16};
+    private int jobs = 20000;
+    private int workerJobs = 2000;
+    private int batch = 10;
+    private int warmup = 2;
+    private int iterations = 5;
+    private String json;
+    // Bumped for every filled round so job ids never repeat within a store
+    private int round;
+
+    public static void main(String[] args) throws Exception {
+        HotPathBenchmark bench = new HotPathBenchmark();
+        for (int i = 0; i < args.length - 1; i++) {
+            switch (args[i]) {
+                case "--store": bench.storeType = args[++i].trim(); break;
+                case "--fsync": bench.fsync = args[++i].trim(); break;
+                case "--benchmarks": bench.benchmarks = Arrays.asList(args[++i].split(",")); break;
+                case "--threads": bench.threads = BenchSupport.parseCounts(args[++i]); break;
+                case "--workers": bench.workers = BenchSupport.parseCounts(args[++i]); break;
+                case "--jobs": bench.jobs = Integer.parseInt(args[++i]); break;
+                case "--worker-jobs": bench.workerJobs = Integer.parseInt(args[++i]); break;
+                case "--batch": bench.batch = Integer.parseInt(args[++i]); break;
+                case "--warmup": bench.warmup = Integer.parseInt(args[++i]); break;
+                case "--iterations": bench.iterations = Integer.parseInt(args[++i]); break;
+                case "--json": bench.json = args[++i]; break;
+            }
+        }
+        bench.run();
+    }
+
+    private void run() throws Exception {
+        System.out.printf("%-12s %-14s %-16s %-12s %-12s\n", "Benchmark", "Params", "Ops/sec", "Min", "Max");
+        try {
+            if (benchmarks.contains("enqueue") || benchmarks.contains("dequeue_ack") || benchmarks.contains("get_job")) {
+                runStoreBenchmarks();
+            }
+            if (benchmarks.contains("config")) {
+                runConfigBenchmark();
+            }
+            if (benchmarks.contains("worker") || benchmarks.contains("handler")) {
+                runWorkerBenchmarks();
+            }
+        } finally {
+            JobStores.shutdown();
+            DatabaseManager.getInstance().shutdown();
+        }
+        if (json != null) {
+            writeJson();
+        }
+    }
+
+    private void runStoreBenchmarks() throws Exception {
+        boolean mysql = storeType.equals("mysql");
+        Path file = null;
+        JobStore store;
+        if (mysql) {
+            BenchSupport.requireIdleQueue(PREFIX);
+            store = new JobQueue();
+        } else {
+            file = Files.createTempFile("queuectl-bench", ".log");
+            store = new EmbeddedJobStore(file.toString(), fsync, 1000, 0, 1000);
+        }
+
+        try {
+            if (benchmarks.contains("enqueue")) {
+                measure("enqueue", params("chunk", ENQUEUE_CHUNK), () -> {
+                    cleanup(mysql);
+                    long begin = System.nanoTime();
+                    fill(store, jobs);
+                    return jobs / seconds(begin);
+                });
+            }
+            if (benchmarks.contains("dequeue_ack")) {
+                for (int t : threads) {
+                    measure("dequeue_ack", params("threads", t, "batch", batch), () -> {
+                        cleanup(mysql);
+                        fill(store, jobs);
+                        return dequeueAck(store, t);
+                    });
+                }
+            }
+            if (benchmarks.contains("get_job")) {
+                cleanup(mysql);
+                List<String> ids = fill(store, jobs);
+                for (int t : threads) {
+                    measure("get_job", params("threads", t), () -> concurrently(t, jobs, () -> {
+                        store.getJob(ids.get(ThreadLocalRandom.current().nextInt(ids.size())));
+                    }));
+                }
+            }
+        } finally {
+            if (file != null) {
+                ((EmbeddedJobStore) store).close();
+                Files.deleteIfExists(file);
+            } else {
+                BenchSupport.deleteJobs(PREFIX);
+            }
+        }
+    }
+
+    private void runConfigBenchmark() throws Exception {
+        ConfigManager configManager = new ConfigManager();
+        try {
+            configManager.getConfig("max-retries");
+        } catch (Exception e) {
+            System.err.println("Skipping config: the configured store is not reachable (" + e.getMessage() + ")");
+            return;
+        }
+        for (int t : threads) {
+            measure("config", params("threads", t), () -> concurrently(t, CONFIG_LOOKUPS, () -> {
+                configManager.getConfigInt("max-retries", 3);
+            }));
+        }
+    }
+
+    // Runs against the configured store, so it refuses to start next to real work
+    private void runWorkerBenchmarks() throws Exception {
+        JobStore store = JobStores.get();
+        if (JobStores.isEmbedded()) {
+            int[] stats = store.getJobStats();
+            if (stats[0] + stats[1] + stats[3] > 0) {
+                System.err.println("Skipping worker: the embedded store contains active jobs");
+                return;
+            }
+        } else {
+            BenchSupport.requireIdleQueue(PREFIX);
+        }
+
+        boolean mysql = !JobStores.isEmbedded();
+        WorkerManager workerManager = WorkerManager.getInstance();
+        try {
+            for (int n : workers) {
+                if (benchmarks.contains("worker")) {
+                    measureWorkers("worker", store, mysql, workerManager, n, "true");
+                }
+                if (benchmarks.contains("handler")) {
+                    measureWorkers("handler", store, mysql, workerManager, n, "java:noop");
+                }
+            }
+        } finally {
+            cleanup(mysql);
+        }
+    }
+
+    private void measureWorkers(String name, JobStore store, boolean mysql, WorkerManager workerManager,
+                                int n, String command) throws Exception {
+        measure(name, params("workers", n), () -> {
+            cleanup(mysql);
+            long baseline = store.getJobStats()[2];
+            fill(store, workerJobs, command);
+            long begin = System.nanoTime();
+            workerManager.startWorkers(n);
+            try {
+                while (store.getJobStats()[2] - baseline < workerJobs) {
+                    Thread.sleep(5);
+                }
+                return workerJobs / seconds(begin);
+            } finally {
+                workerManager.stopWorkers(false);
+            }
+        });
+    }
+
+    // Every thread claims a batch and acknowledges it in one write, as the ack pipeline does
+    private double dequeueAck(JobStore store, int threadCount) throws InterruptedException {
+        AtomicLong completed = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> running = new ArrayList<>();
+        for (int w = 0; w < threadCount; w++) {
+            String workerId = "bench-worker-" + w;
+            Thread t = new Thread(() -> {
+                try {
+                    start.await();
+                    while (true) {
+                        List<Job> claimed = store.dequeueBatch(workerId, batch);
+                        if (claimed.isEmpty()) {
+                            break;
+                        }
+                        List<JobAck> acks = new ArrayList<>(claimed.size());
+                        for (Job job : claimed) {
+                            acks.add(JobAck.completed(job.getId(), workerId, ""));
+                        }
+                        store.acknowledge(acks);
+                        completed.addAndGet(claimed.size());
+                    }
+                } catch (Exception e) {
+                    System.err.println("[" + workerId + "] " + e.getMessage());
+                }
+            });
+            running.add(t);
+            t.start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread t : running) {
+            t.join();
+        }
+        return completed.get() / seconds(begin);
+    }
+
+    // Splits ops calls of op across threadCount threads and returns calls per second
+    private static double concurrently(int threadCount, int ops, Op op) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> running = new ArrayList<>();
+        int perThread = Math.max(1, ops / threadCount);
+        for (int w = 0; w < threadCount; w++) {
+            Thread t = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < perThread; i++) {
+                        op.run();
+                    }
+                } catch (Exception e) {
+                    System.err.println(Thread.currentThread().getName() + ": " + e.getMessage());
+                }
+            });
+            running.add(t);
+            t.start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread t : running) {
+            t.join();
+        }
+        return (long) perThread * threadCount / seconds(begin);
+    }
+
+    private List<String> fill(JobStore store, int count) throws Exception {
+        return fill(store, count, "true");
+    }
+
+    private List<String> fill(JobStore store, int count, String command) throws Exception {
+        round++;
+        List<String> ids = new ArrayList<>(count);
+        List<Job> chunk = new ArrayList<>(ENQUEUE_CHUNK);
+        for (int i = 0; i < count; i++) {
+            String id = PREFIX + round + "-" + i;
+            ids.add(id);
+            chunk.add(new Job(id, command));
+            if (chunk.size() == ENQUEUE_CHUNK || i == count - 1) {
+                store.enqueueBatch(chunk);
+                chunk.clear();
+            }
+        }
+        return ids;
+    }
+
+    // MySQL rows are removed between iterations; embedded jobs just get fresh ids
+    private static void cleanup(boolean mysql) throws Exception {
+        if (mysql) {
+            BenchSupport.deleteJobs(PREFIX);
+        }
+    }
+
+    private void measure(String name, Map<String, Object> params, Iteration iteration) throws Exception {
+        for (int i = 0; i < warmup; i++) {
+            iteration.run();
+        }
+        double[] scores = new double[iterations];
+        for (int i = 0; i < iterations; i++) {
+            scores[i] = iteration.run();
+        }
+
+        Result result = new Result(name, params, scores);
+        results.add(result);
+        System.out.printf("%-12s %-14s %-16s %-12.1f %-12.1f\n", name, describe(params),
+                String.format("%.1f +- %.1f", result.mean(), result.stddev()), result.min(), result.max());
+    }
+
+    private void writeJson() throws Exception {
+        StringBuilder out = new StringBuilder();
+        out.append("{\n");
+        out.append("  \"timestamp\": ").append(Json.quote(Instant.now().toString())).append(",\n");
+        out.append("  \"java\": ").append(Json.quote(System.getProperty("java.version"))).append(",\n");
+        out.append("  \"os\": ").append(Json.quote(System.getProperty("os.name") + " " + System.getProperty("os.arch"))).append(",\n");
+        out.append("  \"cpus\": ").append(Runtime.getRuntime().availableProcessors()).append(",\n");
+        out.append("  \"store\": ").append(Json.quote(storeType.equals("mysql") ? "mysql" : "embedded/" + fsync)).append(",\n");
+        out.append("  \"warmup\": ").append(warmup).append(",\n");
+        out.append("  \"iterations\": ").append(iterations).append(",\n");
+        out.append("  \"results\": [");
+        for (int i = 0; i < results.size(); i++) {
+            Result result = results.get(i);
+            out.append(i == 0 ? "\n" : ",\n");
+            out.append("    {\"benchmark\": ").append(Json.quote(result.name)).append(", \"params\": {");
+            int p = 0;
+            for (Map.Entry<String, Object> entry : result.params.entrySet()) {
+                out.append(p++ == 0 ? "" : ", ").append(Json.quote(entry.getKey())).append(": ").append(entry.getValue());
+            }
+            out.append("}, \"unit\": \"ops/s\"");
+            out.append(", \"score\": ").append(round(result.mean()));
+            out.append(", \"stddev\": ").append(round(result.stddev()));
+            out.append(", \"min\": ").append(round(result.min()));
+            out.append(", \"max\": ").append(round(result.max()));
+            out.append(", \"raw\": [");
+            for (int s = 0; s < result.scores.length; s++) {
+                out.append(s == 0 ? "" : ", ").append(round(result.scores[s]));
+            }
+            out.append("]}");
+        }
+        out.append("\n  ]\n}\n");
+
+        if (json.equals("-")) {
+            System.out.print(out);
+            return;
+        }
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(json), StandardCharsets.UTF_8)) {
+            writer.write(out.toString());
+        }
+        System.out.println("Wrote " + results.size() + " result(s) to " + json);
+    }
+
+    private static Map<String, Object> params(Object... pairs) {
+        Map<String, Object> params = new LinkedHashMap<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            params.put((String) pairs[i], pairs[i + 1]);
+        }
+        return params;
+    }
+
+    private static String describe(Map<String, Object> params) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Object> entry : params.entrySet()) {
+            sb.append(sb.length() == 0 ? "" : ",").append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        return sb.toString();
+    }
+
+    private static double seconds(long beginNanos) {
+        return (System.nanoTime() - beginNanos) / 1e9;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 10) / 10.0;
+    }
+
+    private interface Iteration {
+        double run() throws Exception;
+    }
+
+    private interface Op {
+        void run() throws Exception;
+    }
+
+    private static class Result {
+        private final String name;
+        private final Map<String, Object> params;
+        private final double[] scores;
+
+        Result(String name, Map<String, Object> params, double[] scores) {
+            this.name = name;
+            this.params = params;
+            this.scores = scores;
+        }
+
+        double mean() {
+            return Arrays.stream(scores).average().orElse(0);
+        }
+
+        double stddev() {
+            if (scores.length < 2) {
+                return 0;
+            }
+            double mean = mean();
+            double sum = 0;
+            for (double score : scores) {
+                sum += (score - mean) * (score - mean);
+            }
+            return Math.sqrt(sum / (scores.length - 1));
+        }
+
+        double min() {
+            return Arrays.stream(scores).min().orElse(0);
+        }
+
+        double max() {
+            return Arrays.stream(scores).max().orElse(0);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.queuectl.bench;
+
+import com.queuectl.core.JobQueue;
+import com.queuectl.core.JobStore;
+import com.queuectl.db.DatabaseManager;
+import com.queuectl.models.Job;
+import com.queuectl.store.EmbeddedJobStore;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Compares enqueue and claim+complete throughput of the MySQL store and the embedded store
+// under each fsync policy. The embedded store writes to a temporary file that is removed afterwards.
+//   --stores mysql,embedded  --fsync always,interval,never  --jobs N  --workers N  --batch N
+//   --group-commit-ms N  (extra wait per group commit under fsync=always)
+public class StoreBenchmark {
+    private static final String PREFIX = "bench-store-";
+
+    public static void main(String[] args) throws Exception {
+        String[] stores = {"mysql", "embedded"};
+        String[] fsyncs = {"always", "interval", "never"};
+        int jobs = 20000;
+        int workers = 4;
+        int batch = 10;
+        int groupCommitMillis = 0;
+
+        for (int i = 0; i < args.length - 1; i++) {
+            switch (args[i]) {
+                case "--stores": stores = args[++i].split(","); break;
+                case "--fsync": fsyncs = args[++i].split(","); break;
+                case "--jobs": jobs = Integer.parseInt(args[++i]); break;
+                case "--workers": workers = Integer.parseInt(args[++i]); break;
+                case "--batch": batch = Integer.parseInt(args[++i]); break;
+                case "--group-commit-ms": groupCommitMillis = Integer.parseInt(args[++i]); break;
+            }
+        }
+
+        System.out.printf("%-20s %-10s %-14s %-14s\n", "Store", "Jobs", "Enqueue/sec", "Complete/sec");
+        for (String store : stores) {
+            if (store.trim().equals("mysql")) {
+                BenchSupport.requireIdleQueue(PREFIX);
+                try {
+                    report("mysql", new JobQueue(), jobs, workers, batch);
+                } finally {
+                    BenchSupport.deleteJobs(PREFIX);
+                    DatabaseManager.getInstance().shutdown();
+                }
+            } else {
+                for (String fsync : fsyncs) {
+                    Path file = Files.createTempFile("queuectl-bench", ".log");
+                    EmbeddedJobStore embedded = new EmbeddedJobStore(file.toString(), fsync, 1000, groupCommitMillis, 1000);
+                    try {
+                        report("embedded/" + fsync.trim(), embedded, jobs, workers, batch);
+                    } finally {
+                        embedded.close();
+                        Files.deleteIfExists(file);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void report(String name, JobStore store, int jobs, int workers, int batch) throws Exception {
+        double enqueueRate = enqueue(store, jobs);
+        double completeRate = drain(store, workers, batch, jobs);
+        System.out.printf("%-20s %-10d %-14.1f %-14.1f\n", name, jobs, enqueueRate, completeRate);
+    }
+
+    private static double enqueue(JobStore store, int jobs) throws Exception {
+        long begin = System.nanoTime();
+        List<Job> chunk = new ArrayList<>();
+        for (int i = 0; i < jobs; i++) {
+            chunk.add(new Job(PREFIX + i, "true"));
+            if (chunk.size() == 500 || i == jobs - 1) {
+                store.enqueueBatch(chunk);
+                chunk.clear();
+            }
+        }
+        return jobs / ((System.nanoTime() - begin) / 1e9);
+    }
+
+    // Every claimed job is marked completed one by one, as a worker would
+    private static double drain(JobStore store, int workers, int batch, int expected) throws InterruptedException {
+        AtomicLong completed = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+
+        for (int w = 0; w < workers; w++) {
+            String workerId = "bench-worker-" + w;
+            Thread t = new Thread(() -> {
+                try {
+                    start.await();
+                    while (completed.get() < expected) {
+                        List<Job> claimed = store.dequeueBatch(workerId, batch);
+                        if (claimed.isEmpty()) {
+                            break;
+                        }
+                        for (Job job : claimed) {
+                            store.markJobCompleted(job.getId(), workerId, "");
+                        }
+                        completed.addAndGet(claimed.size());
+                    }
+                } catch (Exception e) {
+                    System.err.println("[" + workerId + "] " + e.getMessage());
+                }
+            });
+            threads.add(t);
+            t.start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+        return completed.get() / ((System.nanoTime() - begin) / 1e9);
+    }
+}
@@ -0,0 +1,301 @@
+package com.queuectl.bench;
+
+import com.queuectl.core.JobAck;
+import com.queuectl.core.JobQueue;
+import com.queuectl.core.JobStore;
+import com.queuectl.db.DatabaseManager;
+import com.queuectl.models.Job;
+import com.queuectl.store.EmbeddedJobStore;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Drives the same scenarios through the MySQL store and the embedded store and checks that both
+// give the same results: claim order, retries, DLQ moves and retries, acks fenced on the claiming
+// worker, and recovery of jobs a crashed worker was holding. Each scenario records what a caller
+// can observe (ids, states, attempts, workers, errors) and the two records must match line for line.
+// Jobs go to their own queue with an id prefix, so other jobs in the database are left alone.
+//   --scenarios ordering,retries,dlq,fencing,recovery
+public class StoreConformance {
+    private static final String PREFIX = "conformance-";
+    private static final String QUEUE = "conformance";
+
+    private interface Scenario {
+        void run(Target target, List<String> trace) throws Exception;
+    }
+
+    // A store under test, and how a worker crash followed by recovery plays out on it
+    private interface Target {
+        JobStore store();
+
+        void recover() throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, Scenario> scenarios = new LinkedHashMap<>();
+        scenarios.put("ordering", StoreConformance::ordering);
+        scenarios.put("retries", StoreConformance::retries);
+        scenarios.put("dlq", StoreConformance::dlq);
+        scenarios.put("fencing", StoreConformance::fencing);
+        scenarios.put("recovery", StoreConformance::recovery);
+
+        List<String> selected = new ArrayList<>(scenarios.keySet());
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals("--scenarios")) {
+                selected = List.of(args[++i].split(","));
+            }
+        }
+
+        int failed = 0;
+        try {
+            for (String name : selected) {
+                Scenario scenario = scenarios.get(name.trim());
+                if (scenario == null) {
+                    System.err.println("Unknown scenario: " + name);
+                    System.exit(2);
+                }
+                List<String> mysql = runMysql(scenario);
+                List<String> embedded = runEmbedded(scenario);
+                String mismatch = compare(mysql, embedded);
+                System.out.printf("%-10s %-5s %s\n", name.trim(), mismatch == null ? "PASS" : "FAIL",
+                        mismatch == null ? mysql.size() + " observation(s)" : mismatch);
+                if (mismatch != null) {
+                    failed++;
+                }
+            }
+        } finally {
+            DatabaseManager.getInstance().shutdown();
+        }
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static List<String> runMysql(Scenario scenario) throws Exception {
+        JobQueue queue = new JobQueue();
+        Target target = new Target() {
+            public JobStore store() {
+                return queue;
+            }
+
+            // The worker never comes back, so its leases run out and the reaper requeues its jobs
+            public void recover() throws SQLException {
+                BenchSupport.expireLeases(PREFIX);
+                queue.reapExpiredLeases(100);
+            }
+        };
+        List<String> trace = new ArrayList<>();
+        BenchSupport.deleteJobs(PREFIX);
+        try {
+            scenario.run(target, trace);
+        } finally {
+            BenchSupport.deleteJobs(PREFIX);
+        }
+        return trace;
+    }
+
+    private static List<String> runEmbedded(Scenario scenario) throws Exception {
+        Path file = Files.createTempFile("queuectl-conformance", ".log");
+        EmbeddedJobStore embedded = new EmbeddedJobStore(file.toString(), "always", 1000, 0, 1000);
+        Target target = new Target() {
+            public JobStore store() {
+                return embedded;
+            }
+
+            // The process goes down with the worker; reopening the log requeues its jobs
+            public void recover() {
+                embedded.close();
+            }
+        };
+        List<String> trace = new ArrayList<>();
+        try {
+            scenario.run(target, trace);
+        } finally {
+            embedded.close();
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(file.resolveSibling(file.getFileName() + ".lock"));
+        }
+        return trace;
+    }
+
+    // Priority first, then the order jobs became ready
+    private static void ordering(Target target, List<String> trace) throws Exception {
+        JobStore store = target.store();
+        int[] priorities = {0, 5, 0, 5, 1, 0};
+        for (int i = 0; i < priorities.length; i++) {
+            store.enqueue(job("o" + i, priorities[i], 3));
+            // Distinct run_at values, so ties don't fall back to id order
+            Thread.sleep(5);
+        }
+        List<Job> first = store.dequeueBatch("w1", QUEUE, 2);
+        trace.add("batch " + ids(first));
+        drain(store, "w1", trace);
+        trace.add("empty " + store.dequeueBatch("w1", QUEUE, 1).isEmpty());
+    }
+
+    // Failures count attempts and come back once due, until the job is sent to the DLQ
+    private static void retries(Target target, List<String> trace) throws Exception {
+        JobStore store = target.store();
+        store.enqueue(job("r0", 0, 2));
+        for (int attempt = 0; attempt < 2; attempt++) {
+            Job claimed = claim(store, "w1", trace);
+            store.markJobFailed(claimed.getId(), "w1", "exit 1", "error", 0);
+            observe(store, "r0", trace);
+        }
+        Job claimed = claim(store, "w1", trace);
+        store.markJobDead(claimed.getId(), "w1", "exit 1", "error");
+        observe(store, "r0", trace);
+
+        // A retry that isn't due yet can't be claimed
+        store.enqueue(job("r1", 0, 2));
+        claimed = claim(store, "w1", trace);
+        store.markJobFailed(claimed.getId(), "w1", "exit 1", "error", 3600);
+        observe(store, "r1", trace);
+        trace.add("empty " + store.dequeueBatch("w1", QUEUE, 1).isEmpty());
+    }
+
+    // Dead jobs are listed in the DLQ and come back from it with a clean slate, once
+    private static void dlq(Target target, List<String> trace) throws Exception {
+        JobStore store = target.store();
+        store.enqueue(job("d0", 0, 0));
+        store.enqueue(job("d1", 0, 0));
+        for (Job claimed : store.dequeueBatch("w1", QUEUE, 2)) {
+            store.markJobDead(claimed.getId(), "w1", "boom " + claimed.getId(), "error");
+        }
+        trace.add("dlq " + dead(store));
+
+        store.retryDeadJob(PREFIX + "d1");
+        observe(store, "d1", trace);
+        trace.add("dlq " + dead(store));
+        try {
+            store.retryDeadJob(PREFIX + "d1");
+            trace.add("retried twice");
+        } catch (SQLException e) {
+            trace.add("second retry refused");
+        }
+        drain(store, "w2", trace);
+        trace.add("dlq " + dead(store));
+    }
+
+    // Only the worker holding the claim can record its outcome, one job at a time or in a batch
+    private static void fencing(Target target, List<String> trace) throws Exception {
+        JobStore store = target.store();
+        store.enqueue(job("f0", 0, 3));
+        List<Job> claimed = store.dequeueBatch("w1", QUEUE, 1);
+        String id = PREFIX + "f0";
+
+        store.markJobCompleted(id, "w2", "stolen");
+        store.markJobFailed(id, "w2", "stolen", "error", 0);
+        store.markJobDead(id, "w2", "stolen", "error");
+        store.acknowledge(List.of(JobAck.completed(id, "w2", "stolen")));
+        observe(store, "f0", trace);
+
+        trace.add("released " + store.releaseJobs("w1", claimed));
+        observe(store, "f0", trace);
+        claim(store, "w2", trace);
+        // w1's late outcome arrives after w2 took the job over
+        store.acknowledge(List.of(JobAck.dead(id, "w1", "late", "error")));
+        store.markJobCompleted(id, "w1", "late");
+        observe(store, "f0", trace);
+
+        store.acknowledge(List.of(JobAck.completed(id, "w2", "ok")));
+        observe(store, "f0", trace);
+        // Acknowledging the same batch again changes nothing
+        store.acknowledge(List.of(JobAck.failed(id, "w2", "again", "error", 0)));
+        observe(store, "f0", trace);
+    }
+
+    // Jobs a crashed worker held are claimable again, without spending an attempt
+    private static void recovery(Target target, List<String> trace) throws Exception {
+        JobStore store = target.store();
+        store.enqueue(job("v0", 1, 3));
+        Thread.sleep(5);
+        store.enqueue(job("v1", 0, 3));
+        trace.add("batch " + ids(store.dequeueBatch("w1", QUEUE, 2)));
+        target.recover();
+        store = target.store();
+        observe(store, "v0", trace);
+        observe(store, "v1", trace);
+        drain(store, "w2", trace);
+    }
+
+    private static Job job(String name, int priority, int maxRetries) {
+        Job job = new Job(PREFIX + name, "true");
+        job.setQueue(QUEUE);
+        job.setPriority(priority);
+        job.setMaxRetries(maxRetries);
+        return job;
+    }
+
+    private static Job claim(JobStore store, String workerId, List<String> trace) throws SQLException {
+        List<Job> claimed = store.dequeueBatch(workerId, QUEUE, 1);
+        if (claimed.isEmpty()) {
+            throw new IllegalStateException(workerId + " found nothing to claim");
+        }
+        Job job = claimed.get(0);
+        trace.add(workerId + " claimed " + shortId(job.getId()) + " attempts=" + job.getAttempts());
+        return job;
+    }
+
+    // Claims and completes one job at a time until the queue is empty
+    private static void drain(JobStore store, String workerId, List<String> trace) throws SQLException {
+        List<Job> claimed;
+        while (!(claimed = store.dequeueBatch(workerId, QUEUE, 1)).isEmpty()) {
+            Job job = claimed.get(0);
+            trace.add(workerId + " claimed " + shortId(job.getId()) + " attempts=" + job.getAttempts());
+            store.markJobCompleted(job.getId(), workerId, "ok");
+            observe(store, shortId(job.getId()), trace);
+        }
+    }
+
+    private static void observe(JobStore store, String name, List<String> trace) throws SQLException {
+        Job job = store.getJob(PREFIX + name);
+        if (job == null) {
+            trace.add(name + " missing");
+            return;
+        }
+        trace.add(name + " state=" + job.getState() + " attempts=" + job.getAttempts() +
+                " worker=" + job.getWorkerId() + " error=" + job.getErrorMessage() +
+                " reason=" + job.getFailureReason());
+    }
+
+    private static List<String> dead(JobStore store) throws SQLException {
+        List<String> ids = new ArrayList<>();
+        for (Job job : store.fetchPage("dead", null, null, null, 1000)) {
+            if (job.getId().startsWith(PREFIX)) {
+                ids.add(shortId(job.getId()));
+            }
+        }
+        ids.sort(null);
+        return ids;
+    }
+
+    private static List<String> ids(List<Job> jobs) {
+        List<String> ids = new ArrayList<>();
+        for (Job job : jobs) {
+            ids.add(shortId(job.getId()));
+        }
+        return ids;
+    }
+
+    private static String shortId(String id) {
+        return id.substring(PREFIX.length());
+    }
+
+    // The first line where the two stores disagree, or null if they agree throughout
+    private static String compare(List<String> mysql, List<String> embedded) {
+        for (int i = 0; i < Math.max(mysql.size(), embedded.size()); i++) {
+            String expected = i < mysql.size() ? mysql.get(i) : "(end)";
+            String actual = i < embedded.size() ? embedded.get(i) : "(end)";
+            if (!expected.equals(actual)) {
+                return "step " + (i + 1) + ": mysql [" + expected + "] embedded [" + actual + "]";
+            }
+        }
+        return null;
+    }
+}
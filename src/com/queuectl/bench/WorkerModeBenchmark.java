@@ -0,0 +1,50 @@
+package com.queuectl.bench;
+
+import com.queuectl.core.WorkerManager;
+import com.queuectl.db.DatabaseManager;
+
+// Compares platform and virtual thread workers running N concurrent `sleep` jobs with N workers.
+// Needs db.pool.max sized for the worker count and Java 21+ for the virtual runs.
+public class WorkerModeBenchmark {
+    private static final String PREFIX = "bench-mode-";
+
+    public static void main(String[] args) throws Exception {
+        int[] concurrency = {10, 100, 1000};
+        String command = "sleep 1";
+
+        for (int i = 0; i < args.length - 1; i++) {
+            switch (args[i]) {
+                case "--concurrency": concurrency = BenchSupport.parseCounts(args[++i]); break;
+                case "--command": command = args[++i]; break;
+            }
+        }
+
+        BenchSupport.requireIdleQueue(PREFIX);
+        WorkerManager workerManager = WorkerManager.getInstance();
+
+        System.out.printf("%-10s %-8s %-12s %-12s\n", "Mode", "Jobs", "Seconds", "Jobs/sec");
+        try {
+            for (int n : concurrency) {
+                for (WorkerManager.Mode mode : WorkerManager.Mode.values()) {
+                    BenchSupport.deleteJobs(PREFIX);
+                    BenchSupport.insertJobs(PREFIX, n, command);
+
+                    long begin = System.nanoTime();
+                    workerManager.startWorkers(n, mode, 0);
+                    while (BenchSupport.countJobs(PREFIX, "completed") < n) {
+                        Thread.sleep(50);
+                    }
+                    double seconds = (System.nanoTime() - begin) / 1e9;
+                    workerManager.stopWorkers(false);
+
+                    System.out.printf("%-10s %-8d %-12.2f %-12.1f\n",
+                            mode.name().toLowerCase(), n, seconds, n / seconds);
+                }
+            }
+        } finally {
+            workerManager.stopWorkers(false);
+            BenchSupport.deleteJobs(PREFIX);
+            DatabaseManager.getInstance().shutdown();
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.queuectl.core;
+
+import com.queuectl.metrics.Histogram;
+import com.queuectl.metrics.Metrics;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// Write-behind acknowledgements shared by every worker of a WorkerManager. Outcomes are queued
+// and written in batches of up to ack-batch-size, at least every ack-flush-ms. A batch that fails
+// to write stays at the head of the queue and is retried; until it is written the jobs stay
+// 'processing' under their worker's renewed lease, so nobody else re-runs them.
+// A batch that keeps failing is written one ack at a time, so one ack the store rejects can't
+// hold up everything queued behind it. An ack that still fails on its own while the store answers
+// reads is stripped: its state change is written without the result or error text, with the reason
+// in error_message, so a finished job is never run again because its outcome couldn't be stored.
+// Only during an outage, when the store answers nothing, are acks held and retried as they are.
+public class AckPipeline {
+    private static final long MAX_RETRY_DELAY_MILLIS = 5000;
+    private static final int SPLIT_AFTER_FAILURES = 3;
+    private static final int STRIP_AFTER_FAILURES = 3;
+    private static final int MAX_NOTE_LENGTH = 1000;
+    private static final Histogram ACK_LATENCY = Metrics.histogram("queuectl_ack_seconds",
+            "Time from a job run finishing to its outcome being written to the store");
+    private static final LongAdder STRIPPED = Metrics.counter("queuectl_acks_stripped_total",
+            "Job acknowledgements written without their result or error text after failing to write whole");
+
+    private final JobStore jobQueue;
+    private final int batchSize;
+    private final long flushMillis;
+    private final Deque<JobAck> pending = new ArrayDeque<>();
+    // Guarded by writeLock: failed writes of the head batch in a row, and failed single writes per ack
+    private int batchFailures;
+    private final Map<JobAck, Integer> ackFailures = new IdentityHashMap<>();
+    private Thread flusher;
+    private volatile boolean running;
+    // Held while a batch is being written so stop() and the flusher never write the same acks
+    private final Object writeLock = new Object();
+
+    public AckPipeline(JobStore jobQueue, int batchSize, long flushMillis) {
+        this.jobQueue = jobQueue;
+        this.batchSize = Math.max(1, batchSize);
+        this.flushMillis = Math.max(1, flushMillis);
+    }
+
+    public synchronized void start() {
+        if (flusher != null) {
+            return;
+        }
+        running = true;
+        flusher = new Thread(this::flushLoop, "ack-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    // Returns false once the pipeline is stopped; the caller then writes the ack itself
+    public synchronized boolean submit(JobAck ack) {
+        if (!running) {
+            return false;
+        }
+        pending.add(ack);
+        if (pending.size() >= batchSize) {
+            notifyAll();
+        }
+        return true;
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    // Stops the flusher and writes everything still queued, retrying up to attempts times per batch.
+    // Returns the number of acks that could not be written.
+    public int stop(int attempts) {
+        Thread thread;
+        synchronized (this) {
+            running = false;
+            notifyAll();
+            thread = flusher;
+            flusher = null;
+        }
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        int failures = 0;
+        while (getPendingCount() > 0) {
+            if (writeBatch()) {
+                failures = 0;
+            } else if (++failures >= attempts) {
+                break;
+            } else {
+                sleepQuietly(Math.min(MAX_RETRY_DELAY_MILLIS, 100L << failures));
+            }
+        }
+        int lost = getPendingCount();
+        if (lost > 0) {
+            System.err.println("Could not write " + lost + " job acknowledgement(s); " +
+                    "those jobs will run again once their leases expire");
+        }
+        return lost;
+    }
+
+    private void flushLoop() {
+        int failures = 0;
+        while (true) {
+            synchronized (this) {
+                long deadline = System.currentTimeMillis() + flushMillis;
+                long remaining;
+                while (running && pending.size() < batchSize && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                    try {
+                        wait(remaining);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (!running) {
+                    return;
+                }
+            }
+            if (writeBatch()) {
+                failures = 0;
+            } else {
+                // Back off so a database outage doesn't turn into a retry storm; stop() cuts it short
+                failures++;
+                synchronized (this) {
+                    try {
+                        if (running) {
+                            wait(Math.min(MAX_RETRY_DELAY_MILLIS, flushMillis << Math.min(failures, 10)));
+                        }
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    // Writes one batch from the head of the queue; what isn't written goes back in front
+    private boolean writeBatch() {
+        synchronized (writeLock) {
+            List<JobAck> batch = new ArrayList<>();
+            synchronized (this) {
+                while (!pending.isEmpty() && batch.size() < batchSize) {
+                    batch.add(pending.poll());
+                }
+            }
+            if (batch.isEmpty()) {
+                return true;
+            }
+            if (batchFailures >= SPLIT_AFTER_FAILURES) {
+                return writeSingly(batch);
+            }
+            try {
+                jobQueue.acknowledge(batch);
+                recordWritten(batch);
+                batchFailures = 0;
+                return true;
+            } catch (Exception e) {
+                System.err.println("Error writing " + batch.size() + " job acknowledgement(s), will retry: " + e.getMessage());
+                batchFailures++;
+                pushBack(batch);
+                return false;
+            }
+        }
+    }
+
+    // Finds the acks that can't be written by writing each one alone. Failures only count towards
+    // stripping while the store answers a read; during an outage every ack would fail the same way.
+    // A stripped ack is written straight away; if that fails too it stays queued like any other.
+    private boolean writeSingly(List<JobAck> batch) {
+        List<JobAck> unwritten = new ArrayList<>();
+        Boolean reachable = null;
+        for (int i = 0; i < batch.size(); i++) {
+            JobAck ack = batch.get(i);
+            try {
+                jobQueue.acknowledge(List.of(ack));
+                recordWritten(List.of(ack));
+                ackFailures.remove(ack);
+            } catch (Exception e) {
+                if (reachable == null) {
+                    reachable = storeAnswers();
+                }
+                if (reachable && !ack.isStripped() && ackFailures.merge(ack, 1, Integer::sum) >= STRIP_AFTER_FAILURES) {
+                    batch.set(i--, strip(ack, e));
+                } else {
+                    unwritten.add(ack);
+                }
+            }
+        }
+        pushBack(unwritten);
+        if (unwritten.isEmpty()) {
+            // Back to batches once the acks that were failing are gone
+            batchFailures = 0;
+            return true;
+        }
+        System.err.println("Error writing " + unwritten.size() + " job acknowledgement(s) one at a time, will retry");
+        return false;
+    }
+
+    // Keeps the state change and drops the part the store rejected
+    private JobAck strip(JobAck ack, Exception e) {
+        ackFailures.remove(ack);
+        STRIPPED.increment();
+        String dropped = ack.getState().equals("completed") ? "result" : "error message";
+        String note = "Job " + ack.getState() + " but its " + dropped + " could not be stored after " +
+                STRIP_AFTER_FAILURES + " attempts: " + e.getMessage();
+        if (note.length() > MAX_NOTE_LENGTH) {
+            note = note.substring(0, MAX_NOTE_LENGTH);
+        }
+        System.err.println("Writing the " + ack.getState() + " acknowledgement of job " + ack.getJobId() +
+                " without its " + dropped + " after " + STRIP_AFTER_FAILURES + " failed writes: " + e.getMessage());
+        return ack.stripped(note);
+    }
+
+    private boolean storeAnswers() {
+        try {
+            jobQueue.readSignalSequence();
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private synchronized void pushBack(List<JobAck> acks) {
+        for (int i = acks.size() - 1; i >= 0; i--) {
+            pending.addFirst(acks.get(i));
+        }
+    }
+
+    static void recordWritten(List<JobAck> acks) {
+        long now = System.nanoTime();
+        for (JobAck ack : acks) {
+            ACK_LATENCY.record((now - ack.getCreatedAtNanos()) / 1000);
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
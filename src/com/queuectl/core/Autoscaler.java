@@ -0,0 +1,181 @@
+package com.queuectl.core;
+
+import com.queuectl.metrics.Histogram;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.sql.Timestamp;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Grows and shrinks this process's workers between min and max. Every autoscale-interval-ms it
+// looks at its share of the ready backlog, the mean time jobs waited to be claimed since the last
+// look, and the load average per CPU. The backlog counted is that of the queues this process
+// serves, split across every active worker in the fleet in proportion to this process's workers,
+// so N processes autoscaling against one backlog don't each provision for all of it. A direction
+// has to win autoscale-up-ticks (or -down-ticks) looks in a row before anything changes, and
+// between the grow and shrink thresholds it holds still, so a bursty queue doesn't make the
+// worker count flap.
+public class Autoscaler {
+    private static final int HISTORY = 10;
+
+    private final WorkerManager workerManager;
+    private final JobStore jobQueue;
+    private final ConfigManager configManager;
+    private final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    private final int minWorkers;
+    private final int maxWorkers;
+    private final Deque<String> decisions = new ArrayDeque<>();
+    private ScheduledExecutorService scheduler;
+
+    private long lastWaitCount;
+    private long lastWaitSum;
+    private int upTicks;
+    private int downTicks;
+    private volatile String lastSignals = "no samples yet";
+
+    public Autoscaler(WorkerManager workerManager, JobStore jobQueue, int minWorkers, int maxWorkers) {
+        if (minWorkers < 1 || maxWorkers < minWorkers) {
+            throw new IllegalArgumentException("Autoscale bounds must satisfy 1 <= min <= max, got " + minWorkers + ":" + maxWorkers);
+        }
+        this.workerManager = workerManager;
+        this.jobQueue = jobQueue;
+        this.configManager = new ConfigManager();
+        this.minWorkers = minWorkers;
+        this.maxWorkers = maxWorkers;
+    }
+
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        Histogram wait = Worker.getQueueWait();
+        lastWaitCount = wait.getCount();
+        lastWaitSum = wait.getSum();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "autoscaler");
+            t.setDaemon(true);
+            return t;
+        });
+        long intervalMillis = Math.max(500, configManager.getConfigInt("autoscale-interval-ms", 5000));
+        scheduler.scheduleWithFixedDelay(this::tick, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    public int getMinWorkers() {
+        return minWorkers;
+    }
+
+    public int getMaxWorkers() {
+        return maxWorkers;
+    }
+
+    public String getLastSignals() {
+        return lastSignals;
+    }
+
+    // Most recent first
+    public synchronized List<String> getDecisions() {
+        return new ArrayList<>(decisions);
+    }
+
+    private void tick() {
+        try {
+            int current = workerManager.getActiveWorkerCount();
+            if (current == 0) {
+                return;
+            }
+            int target = decide(current);
+            if (target != current) {
+                workerManager.applyAutoscale(this, target);
+            }
+        } catch (Exception e) {
+            System.err.println("Autoscaler error: " + e.getMessage());
+        }
+    }
+
+    private synchronized int decide(int current) throws Exception {
+        int jobsPerWorker = Math.max(1, configManager.getConfigInt("autoscale-jobs-per-worker", 10));
+        long waitLimitMillis = configManager.getConfigInt("autoscale-wait-ms", 1000);
+        double maxLoad = configManager.getConfigInt("autoscale-max-load-pct", 90) / 100.0;
+
+        List<String> queues = workerManager.getSubscribedQueues();
+        // Heartbeats lag a little behind starts, so never count fewer workers than run here
+        int fleet = Math.max(current, jobQueue.listActiveWorkers().size());
+        // Beyond this the share asks for more than max workers anyway
+        long cap = (long) (maxWorkers + 1) * jobsPerWorker * fleet;
+        long ready = queues.isEmpty() ? jobQueue.getJobStats()[0] : jobQueue.countPending(queues, cap);
+        long share = ready * current / fleet;
+
+        // Mean claim wait of the jobs claimed since the last tick
+        Histogram wait = Worker.getQueueWait();
+        long count = wait.getCount();
+        long sum = wait.getSum();
+        long claimed = count - lastWaitCount;
+        long meanWaitMillis = claimed > 0 ? (sum - lastWaitSum) / claimed / 1000 : 0;
+        lastWaitCount = count;
+        lastWaitSum = sum;
+
+        // Negative where the platform has no load average; CPU then never blocks growth
+        double load = os.getSystemLoadAverage() / os.getAvailableProcessors();
+        boolean cpuBusy = load >= maxLoad;
+
+        lastSignals = String.format("ready=%d share=%d wait=%dms load/cpu=%.2f workers=%d/%d", ready, share, meanWaitMillis,
+                load, current, fleet);
+
+        boolean behind = share > (long) current * jobsPerWorker || meanWaitMillis > waitLimitMillis;
+        boolean idle = share <= (long) current * jobsPerWorker / 4 && meanWaitMillis <= waitLimitMillis / 4;
+
+        if (behind && !cpuBusy && current < maxWorkers) {
+            downTicks = 0;
+            if (++upTicks < configManager.getConfigInt("autoscale-up-ticks", 2)) {
+                return current;
+            }
+            upTicks = 0;
+            // Jump straight to what the backlog needs rather than one worker per tick
+            int wanted = (int) Math.min(maxWorkers, Math.max(current + 1, (share + jobsPerWorker - 1) / jobsPerWorker));
+            record(current, wanted, behind(share, meanWaitMillis, current, jobsPerWorker, waitLimitMillis));
+            return wanted;
+        }
+        if ((idle || cpuBusy) && current > minWorkers) {
+            upTicks = 0;
+            if (++downTicks < configManager.getConfigInt("autoscale-down-ticks", 6)) {
+                return current;
+            }
+            downTicks = 0;
+            // Shrink one at a time; growing back is cheap, a wrong shrink costs latency
+            record(current, current - 1, cpuBusy ? String.format("load/cpu %.2f", load) : "queue idle");
+            return current - 1;
+        }
+        upTicks = 0;
+        downTicks = 0;
+        return current;
+    }
+
+    private static String behind(long share, long meanWaitMillis, int current, int jobsPerWorker, long waitLimitMillis) {
+        if (share > (long) current * jobsPerWorker) {
+            return share + " ready jobs for this process";
+        }
+        return "claim wait " + meanWaitMillis + "ms > " + waitLimitMillis + "ms";
+    }
+
+    private void record(int from, int to, String reason) {
+        String decision = new Timestamp(System.currentTimeMillis()) + "  " + from + " -> " + to + "  (" + reason + ")";
+        decisions.addFirst(decision);
+        if (decisions.size() > HISTORY) {
+            decisions.removeLast();
+        }
+        System.out.println("Autoscaling workers " + from + " -> " + to + ": " + reason);
+    }
+}
@@ -0,0 +1,130 @@
+package com.queuectl.core;
+
+import com.queuectl.db.DatabaseManager;
+import com.queuectl.store.BlobStore;
+
+import java.io.IOException;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Reference counts for spilled blob files, in blob_refs. Every jobs or jobs_archive row holding a
+// hash counts once. Counts change inside the caller's transaction. A file is written and deleted
+// only while its blob_refs row is locked, so a delete can't remove a file that a new job just
+// started to use.
+class BlobRefs {
+    private BlobRefs() {
+    }
+
+    // Counts the spilled cells and makes sure their files exist
+    static void retain(Connection conn, BlobStore blobs, Collection<BlobStore.Cell> cells) throws SQLException {
+        // Rows are always locked in hash order so two transactions can't deadlock on each other
+        Map<String, List<BlobStore.Cell>> byRef = new TreeMap<>();
+        for (BlobStore.Cell cell : cells) {
+            if (cell != null && cell.getRef() != null) {
+                byRef.computeIfAbsent(cell.getRef(), k -> new ArrayList<>()).add(cell);
+            }
+        }
+        if (byRef.isEmpty()) {
+            return;
+        }
+
+        StringBuilder sql = new StringBuilder("INSERT INTO blob_refs (hash, refs, bytes) VALUES ");
+        for (int i = 0; i < byRef.size(); i++) {
+            sql.append(i == 0 ? "(?, ?, ?)" : ", (?, ?, ?)");
+        }
+        sql.append(" ON DUPLICATE KEY UPDATE refs = refs + VALUES(refs)");
+        try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            int index = 1;
+            for (Map.Entry<String, List<BlobStore.Cell>> entry : byRef.entrySet()) {
+                stmt.setString(index++, entry.getKey());
+                stmt.setInt(index++, entry.getValue().size());
+                stmt.setLong(index++, entry.getValue().get(0).getSize());
+            }
+            stmt.executeUpdate();
+        }
+
+        for (List<BlobStore.Cell> same : byRef.values()) {
+            try {
+                blobs.write(same.get(0));
+            } catch (IOException e) {
+                throw new SQLException("Blob store write failed: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    // Drops one reference per cell that points at a file; inline cells are ignored.
+    // Files are left for sweep(), which runs outside the transactions that drop references.
+    static void release(Connection conn, Collection<byte[]> cells) throws SQLException {
+        Map<String, Integer> byRef = new TreeMap<>();
+        for (byte[] cell : cells) {
+            String ref = BlobStore.refOf(cell);
+            if (ref != null) {
+                byRef.merge(ref, 1, Integer::sum);
+            }
+        }
+        if (byRef.isEmpty()) {
+            return;
+        }
+
+        try (PreparedStatement stmt = conn.prepareStatement("UPDATE blob_refs SET refs = refs - ? WHERE hash = ?")) {
+            for (Map.Entry<String, Integer> entry : byRef.entrySet()) {
+                stmt.setInt(1, entry.getValue());
+                stmt.setString(2, entry.getKey());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    // Deletes up to batchSize unreferenced files and their rows, one short transaction each.
+    // If a commit fails after the file is gone the row stays at zero; the next job to use the
+    // value writes the file again.
+    static int sweep(BlobStore blobs, int batchSize) throws SQLException {
+        DatabaseManager dbManager = DatabaseManager.getInstance();
+        List<String> candidates = new ArrayList<>();
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT hash FROM blob_refs WHERE refs <= 0 LIMIT ?")) {
+            stmt.setInt(1, batchSize);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    candidates.add(rs.getString("hash"));
+                }
+            }
+        }
+
+        int deleted = 0;
+        for (String hash : candidates) {
+            try (Connection conn = dbManager.getConnection()) {
+                conn.setAutoCommit(false);
+                try {
+                    boolean unreferenced;
+                    try (PreparedStatement stmt = conn.prepareStatement("SELECT refs FROM blob_refs WHERE hash = ? FOR UPDATE")) {
+                        stmt.setString(1, hash);
+                        try (ResultSet rs = stmt.executeQuery()) {
+                            unreferenced = rs.next() && rs.getInt("refs") <= 0;
+                        }
+                    }
+                    if (unreferenced) {
+                        blobs.delete(hash);
+                        try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM blob_refs WHERE hash = ?")) {
+                            stmt.setString(1, hash);
+                            stmt.executeUpdate();
+                        }
+                        deleted++;
+                    }
+                    conn.commit();
+                } catch (SQLException | IOException e) {
+                    conn.rollback();
+                    System.err.println("Error deleting blob " + hash + ": " + e.getMessage());
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            }
+        }
+        return deleted;
+    }
+}
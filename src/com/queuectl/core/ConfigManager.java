@@ -1,10 +1,22 @@
 package com.queuectl.core;
 
 import com.queuectl.db.DatabaseManager;
+import com.queuectl.store.EmbeddedJobStore;
 
 import java.sql.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class ConfigManager {
+    private static final long DEFAULT_TTL_MILLIS = 5000;
+
+    // Shared by every ConfigManager in this JVM so workers don't each hold a copy
+    private static volatile Snapshot snapshot;
+    private static final ReentrantLock refreshLock = new ReentrantLock();
+
     private DatabaseManager dbManager;
 
     public ConfigManager() {
@@ -12,52 +24,81 @@ public class ConfigManager {
     }
 
     public String getConfig(String key) throws SQLException {
-        String sql = "SELECT config_value FROM config WHERE config_key = ?";
-        
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, key);
-            ResultSet rs = stmt.executeQuery();
-            
-            if (rs.next()) {
-                String value = rs.getString("config_value");
-                rs.close();
-                return value;
-            }
-            rs.close();
-            return null;
-        }
+        return current().values.get(key);
     }
 
     public int getConfigInt(String key, int defaultValue) {
         try {
-            String value = getConfig(key);
-            return value != null ? Integer.parseInt(value) : defaultValue;
-        } catch (SQLException | NumberFormatException e) {
+            Integer value = current().ints.get(key);
+            return value != null ? value : defaultValue;
+        } catch (SQLException e) {
             return defaultValue;
         }
     }
 
+    public String getConfigString(String key, String defaultValue) {
+        try {
+            String value = current().values.get(key);
+            return value != null ? value : defaultValue;
+        } catch (SQLException e) {
+            return defaultValue;
+        }
+    }
+
+    public boolean getConfigBoolean(String key, boolean defaultValue) {
+        String value = getConfigString(key, null);
+        return value != null ? Boolean.parseBoolean(value.trim()) : defaultValue;
+    }
+
     public void setConfig(String key, String value) throws SQLException {
+        EmbeddedJobStore store = JobStores.embedded();
+        if (store != null) {
+            store.setConfig(key, value);
+            invalidate();
+            return;
+        }
+
         String sql = "INSERT INTO config (config_key, config_value) VALUES (?, ?) " +
                     "ON DUPLICATE KEY UPDATE config_value = ?";
-        
+
         try (Connection conn = dbManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, key);
             stmt.setString(2, value);
             stmt.setString(3, value);
             stmt.executeUpdate();
+
+            // Running workers in other processes notice the bump on their next TTL check
+            try (Statement bump = conn.createStatement()) {
+                bump.executeUpdate("UPDATE config_version SET version = version + 1 WHERE id = 1");
+            } catch (SQLException e) {
+                // Older schema without config_version: caches fall back to reloading on every TTL
+            }
         }
+        invalidate();
+    }
+
+    public static void invalidate() {
+        snapshot = null;
     }
 
     public void listConfig() throws SQLException {
+        EmbeddedJobStore store = JobStores.embedded();
+        if (store != null) {
+            System.out.println("\n=== Configuration ===");
+            for (Map.Entry<String, String> entry : new TreeMap<>(store.configValues()).entrySet()) {
+                System.out.printf("%s = %s\n", entry.getKey(), entry.getValue());
+            }
+            System.out.println();
+            return;
+        }
+
         String sql = "SELECT config_key, config_value FROM config ORDER BY config_key";
-        
+
         try (Connection conn = dbManager.getConnection();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
-            
+
             System.out.println("\n=== Configuration ===");
             while (rs.next()) {
                 System.out.printf("%s = %s\n", rs.getString("config_key"), rs.getString("config_value"));
@@ -65,4 +106,111 @@ public class ConfigManager {
             System.out.println();
         }
     }
+
+    private Snapshot current() throws SQLException {
+        Snapshot current = snapshot;
+        if (current != null && !current.isStale()) {
+            return current;
+        }
+
+        // One thread refreshes; the others keep using the stale snapshot meanwhile
+        if (current != null && !refreshLock.tryLock()) {
+            return current;
+        }
+        if (current == null) {
+            refreshLock.lock();
+        }
+        try {
+            current = snapshot;
+            if (current != null && !current.isStale()) {
+                return current;
+            }
+            snapshot = refresh(current);
+            return snapshot;
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    private Snapshot refresh(Snapshot previous) throws SQLException {
+        EmbeddedJobStore store = JobStores.embedded();
+        if (store != null) {
+            long version = store.configVersion();
+            return previous != null && version == previous.version ? previous.renewed() : snapshotOf(store.configValues(), version);
+        }
+
+        try (Connection conn = dbManager.getConnection()) {
+            long version = readVersion(conn);
+            if (previous != null && version >= 0 && version == previous.version) {
+                return previous.renewed();
+            }
+            return load(conn, version);
+        } catch (SQLException e) {
+            if (previous == null) {
+                throw e;
+            }
+            System.err.println("Config refresh failed, keeping cached values: " + e.getMessage());
+            return previous.renewed();
+        }
+    }
+
+    private long readVersion(Connection conn) {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT version FROM config_version WHERE id = 1")) {
+            return rs.next() ? rs.getLong("version") : -1;
+        } catch (SQLException e) {
+            return -1;
+        }
+    }
+
+    private Snapshot load(Connection conn, long version) throws SQLException {
+        Map<String, String> values = new HashMap<>();
+        String sql = "SELECT config_key, config_value FROM config";
+
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                values.put(rs.getString("config_key"), rs.getString("config_value"));
+            }
+        }
+        return snapshotOf(values, version);
+    }
+
+    private static Snapshot snapshotOf(Map<String, String> values, long version) {
+        Map<String, Integer> ints = new HashMap<>();
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            try {
+                ints.put(entry.getKey(), Integer.parseInt(entry.getValue().trim()));
+            } catch (NumberFormatException e) {
+                // Not numeric; only available as a string
+            }
+        }
+
+        Integer ttl = ints.get("config-cache-ttl-ms");
+        return new Snapshot(values, ints, version, ttl != null ? ttl : DEFAULT_TTL_MILLIS);
+    }
+
+    private static class Snapshot {
+        private final Map<String, String> values;
+        private final Map<String, Integer> ints;
+        private final long version;
+        private final long ttlMillis;
+        private final long loadedAt;
+
+        Snapshot(Map<String, String> values, Map<String, Integer> ints, long version, long ttlMillis) {
+            this.values = values;
+            this.ints = ints;
+            this.version = version;
+            this.ttlMillis = ttlMillis;
+            this.loadedAt = System.nanoTime();
+        }
+
+        boolean isStale() {
+            return System.nanoTime() - loadedAt > TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        }
+
+        Snapshot renewed() {
+            return new Snapshot(values, ints, version, ttlMillis);
+        }
+    }
 }
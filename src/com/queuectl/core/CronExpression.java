@@ -0,0 +1,137 @@
+package com.queuectl.core;
+
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.BitSet;
+
+// Standard five-field cron: minute hour day-of-month month day-of-week.
+// Fields accept *, lists (1,5), ranges (1-5), steps (*/15, 0-30/5); day-of-week 0 and 7 are Sunday.
+// As in cron, when both day fields are restricted a day matches if either one does.
+public class CronExpression {
+    private final String expression;
+    private final BitSet minutes;
+    private final BitSet hours;
+    private final BitSet daysOfMonth;
+    private final BitSet months;
+    private final BitSet daysOfWeek;
+    private final boolean anyDayOfMonth;
+    private final boolean anyDayOfWeek;
+
+    public CronExpression(String expression) {
+        String[] fields = expression.trim().split("\\s+");
+        if (fields.length != 5) {
+            throw new IllegalArgumentException("Cron expression needs 5 fields: " + expression);
+        }
+        this.expression = expression.trim();
+        this.minutes = parseField(fields[0], 0, 59);
+        this.hours = parseField(fields[1], 0, 23);
+        this.daysOfMonth = parseField(fields[2], 1, 31);
+        this.months = parseField(fields[3], 1, 12);
+        this.daysOfWeek = parseField(fields[4], 0, 7);
+        if (daysOfWeek.get(7)) {
+            daysOfWeek.set(0);
+        }
+        this.anyDayOfMonth = fields[2].equals("*");
+        this.anyDayOfWeek = fields[4].equals("*");
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    // First matching minute strictly after the given time
+    public ZonedDateTime next(ZonedDateTime after) {
+        ZonedDateTime t = after.truncatedTo(ChronoUnit.MINUTES).plusMinutes(1);
+        // Every field combination recurs within a few years; anything longer means the expression can't match
+        ZonedDateTime limit = t.plusYears(5);
+        // Set when a DST gap swallowed a matching hour; like cron, such runs happen just after the gap
+        boolean afterGap = false;
+        while (t.isBefore(limit)) {
+            if (!months.get(t.getMonthValue())) {
+                t = t.withDayOfMonth(1).truncatedTo(ChronoUnit.DAYS).plusMonths(1);
+                afterGap = false;
+                continue;
+            }
+            if (!dayMatches(t)) {
+                t = t.truncatedTo(ChronoUnit.DAYS).plusDays(1);
+                afterGap = false;
+                continue;
+            }
+            if (!hours.get(t.getHour()) && !afterGap) {
+                int skipped = (t.getHour() + 1) % 24;
+                t = t.truncatedTo(ChronoUnit.HOURS).plusHours(1);
+                afterGap = t.getHour() != skipped && hours.get(skipped);
+                continue;
+            }
+            if (!minutes.get(t.getMinute())) {
+                ZonedDateTime next = t.plusMinutes(1);
+                if (next.getHour() != t.getHour()) {
+                    afterGap = false;
+                }
+                t = next;
+                continue;
+            }
+            return t;
+        }
+        throw new IllegalArgumentException("Cron expression never matches: " + expression);
+    }
+
+    private boolean dayMatches(ZonedDateTime t) {
+        boolean dom = daysOfMonth.get(t.getDayOfMonth());
+        boolean dow = daysOfWeek.get(t.getDayOfWeek().getValue() % 7);
+        if (anyDayOfMonth || anyDayOfWeek) {
+            return dom && dow;
+        }
+        return dom || dow;
+    }
+
+    private static BitSet parseField(String field, int min, int max) {
+        BitSet bits = new BitSet(max + 1);
+        for (String part : field.split(",")) {
+            int step = 1;
+            int slash = part.indexOf('/');
+            if (slash >= 0) {
+                step = parseNumber(part.substring(slash + 1), 1, Integer.MAX_VALUE, field);
+                part = part.substring(0, slash);
+            }
+
+            int start;
+            int end;
+            if (part.equals("*")) {
+                start = min;
+                end = max;
+            } else if (part.indexOf('-') > 0) {
+                String[] range = part.split("-", 2);
+                start = parseNumber(range[0], min, max, field);
+                end = parseNumber(range[1], min, max, field);
+            } else {
+                start = parseNumber(part, min, max, field);
+                end = slash >= 0 ? max : start;
+            }
+            if (start > end) {
+                throw new IllegalArgumentException("Invalid cron range: " + field);
+            }
+            for (int i = start; i <= end; i += step) {
+                bits.set(i);
+            }
+        }
+        return bits;
+    }
+
+    private static int parseNumber(String value, int min, int max, String field) {
+        try {
+            int n = Integer.parseInt(value);
+            if (n < min || n > max) {
+                throw new IllegalArgumentException("Cron value out of range: " + field);
+            }
+            return n;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cron field: " + field);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+}
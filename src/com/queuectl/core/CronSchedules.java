@@ -0,0 +1,166 @@
+package com.queuectl.core;
+
+import com.queuectl.db.DatabaseManager;
+import com.queuectl.models.Job;
+
+import java.sql.*;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Map;
+
+// Recurring jobs. Each run is created as a 'scheduled' job shortly before it is due, with an id
+// of <schedule-id>@<due millis>, so the dispatcher handles it like any other delayed job.
+public class CronSchedules {
+    private static final int MAX_SCHEDULES_PER_ROUND = 100;
+    private static final int MAX_RUNS_PER_SCHEDULE = 100;
+
+    private DatabaseManager dbManager;
+    private JobQueue jobQueue;
+
+    public CronSchedules() {
+        this.dbManager = DatabaseManager.getInstance();
+        this.jobQueue = new JobQueue();
+    }
+
+    // The job supplies the command, queue, priority, retries and timeout for every run
+    public Timestamp add(String id, CronExpression cron, Job template) throws SQLException {
+        Timestamp next = Timestamp.from(cron.next(ZonedDateTime.now()).toInstant());
+        String sql = "INSERT INTO job_schedules (id, cron, command, queue, priority, max_retries, timeout_seconds, next_run_at) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+        
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, id);
+            stmt.setString(2, cron.getExpression());
+            stmt.setString(3, template.getCommand());
+            stmt.setString(4, template.getQueue());
+            stmt.setInt(5, template.getPriority());
+            stmt.setInt(6, template.getMaxRetries());
+            if (template.getTimeoutSeconds() > 0) {
+                stmt.setInt(7, template.getTimeoutSeconds());
+            } else {
+                stmt.setNull(7, Types.INTEGER);
+            }
+            stmt.setTimestamp(8, next);
+            stmt.executeUpdate();
+        }
+        return next;
+    }
+
+    public boolean remove(String id) throws SQLException {
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("DELETE FROM job_schedules WHERE id = ?")) {
+            stmt.setString(1, id);
+            return stmt.executeUpdate() > 0;
+        }
+    }
+
+    public void printSchedules() throws SQLException {
+        String sql = "SELECT id, cron, queue, next_run_at, last_run_at, command FROM job_schedules ORDER BY next_run_at";
+        
+        try (Connection conn = dbManager.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            System.out.println("\n=== Schedules ===");
+            System.out.printf("%-20s %-18s %-12s %-25s %-40s\n", "ID", "Cron", "Queue", "Next Run", "Command");
+            System.out.println("─".repeat(118));
+            int count = 0;
+            while (rs.next()) {
+                String cmd = rs.getString("command");
+                if (cmd.length() > 37) {
+                    cmd = cmd.substring(0, 37) + "...";
+                }
+                System.out.printf("%-20s %-18s %-12s %-25s %-40s\n", rs.getString("id"), rs.getString("cron"),
+                        rs.getString("queue"), rs.getTimestamp("next_run_at"), cmd);
+                count++;
+            }
+            System.out.println(count == 0 ? "No schedules defined\n" : "");
+        }
+    }
+
+    // Creates the runs of every schedule due within windowSeconds and advances next_run_at.
+    // Locked rows are skipped, so concurrent dispatchers never create the same run twice.
+    public int materializeDue(int windowSeconds) throws SQLException {
+        String selectSql = "SELECT id, cron, command, queue, priority, max_retries, timeout_seconds, next_run_at, " +
+                    "NOW(3) AS db_now FROM job_schedules WHERE next_run_at < TIMESTAMPADD(SECOND, ?, NOW(3)) " +
+                    "ORDER BY next_run_at LIMIT ? FOR UPDATE SKIP LOCKED";
+        // IGNORE: a run that already exists reports 0 rows, which keeps the counters right
+        String insertSql = "INSERT IGNORE INTO jobs (id, command, state, attempts, max_retries, timeout_seconds, queue, priority, run_at) " +
+                    "VALUES (?, ?, 'scheduled', 0, ?, ?, ?, ?, ?)";
+        String advanceSql = "UPDATE job_schedules SET next_run_at = ?, last_run_at = ? WHERE id = ?";
+        ZoneId zone = ZoneId.systemDefault();
+        int created = 0;
+
+        Connection conn = null;
+        try {
+            conn = dbManager.getConnection();
+            conn.setAutoCommit(false);
+
+            try (PreparedStatement select = conn.prepareStatement(selectSql);
+                 PreparedStatement insert = conn.prepareStatement(insertSql);
+                 PreparedStatement advance = conn.prepareStatement(advanceSql)) {
+                select.setInt(1, windowSeconds);
+                select.setInt(2, MAX_SCHEDULES_PER_ROUND);
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        String id = rs.getString("id");
+                        CronExpression cron = new CronExpression(rs.getString("cron"));
+                        ZonedDateTime now = rs.getTimestamp("db_now").toInstant().atZone(zone);
+                        ZonedDateTime horizon = now.plusSeconds(windowSeconds);
+                        ZonedDateTime runAt = rs.getTimestamp("next_run_at").toInstant().atZone(zone);
+                        ZonedDateTime lastRun = null;
+
+                        for (int i = 0; i < MAX_RUNS_PER_SCHEDULE && runAt.isBefore(horizon); i++) {
+                            Timestamp due = Timestamp.from(runAt.toInstant());
+                            insert.setString(1, id + "@" + due.getTime());
+                            insert.setString(2, rs.getString("command"));
+                            insert.setInt(3, rs.getInt("max_retries"));
+                            insert.setObject(4, rs.getObject("timeout_seconds"), Types.INTEGER);
+                            insert.setString(5, rs.getString("queue"));
+                            insert.setInt(6, rs.getInt("priority"));
+                            insert.setTimestamp(7, due);
+                            created += insert.executeUpdate() == 1 ? 1 : 0;
+                            lastRun = runAt;
+
+                            // After downtime, run one missed occurrence rather than replaying all of them
+                            runAt = cron.next(runAt);
+                            if (runAt.isBefore(now)) {
+                                runAt = cron.next(now);
+                            }
+                        }
+
+                        advance.setTimestamp(1, Timestamp.from(runAt.toInstant()));
+                        advance.setTimestamp(2, lastRun != null ? Timestamp.from(lastRun.toInstant()) : null);
+                        advance.setString(3, id);
+                        advance.executeUpdate();
+                    }
+                }
+            }
+
+            if (created > 0) {
+                QueueStats.apply(conn, Map.of("scheduled", created));
+                jobQueue.bumpScheduleSignal(conn);
+            }
+            conn.commit();
+            return created;
+        } catch (SQLException e) {
+            if (conn != null) {
+                try {
+                    conn.rollback();
+                } catch (SQLException ex) {
+                    // Ignore
+                }
+            }
+            throw e;
+        } finally {
+            if (conn != null) {
+                try {
+                    conn.setAutoCommit(true);
+                    conn.close();
+                } catch (SQLException e) {
+                    // Ignore
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.queuectl.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Readiness tracker for job dependencies: for each parent the blocked jobs waiting on it, and for
+// each blocked job how many of its parents haven't finished. Finishing a parent visits only its
+// own edges, so resolving a whole workflow costs O(edges) and never looks at unrelated jobs.
+// Not thread-safe; the owner guards it with its own lock.
+public class DependencyGraph {
+    public static final String POLICY_CANCEL = "cancel";
+    public static final String POLICY_IGNORE = "ignore";
+    public static final String POLICY_WAIT = "wait";
+
+    private final Map<String, Set<String>> children = new HashMap<>();
+    private final Map<String, Integer> waiting = new HashMap<>();
+
+    // What a blocked job does when one of its parents goes to the DLQ (dependency-failure-policy):
+    //   cancel  it and everything downstream of it go to the DLQ too (default)
+    //   ignore  the dead parent counts as finished
+    //   wait    it stays blocked until the parent is retried from the DLQ and completes
+    public static String failurePolicy(String configured) {
+        if (POLICY_IGNORE.equalsIgnoreCase(configured)) {
+            return POLICY_IGNORE;
+        }
+        if (POLICY_WAIT.equalsIgnoreCase(configured)) {
+            return POLICY_WAIT;
+        }
+        return POLICY_CANCEL;
+    }
+
+    // Blocks child until each of the given parents is resolved. Blocking it again replaces the count.
+    public void block(String child, Collection<String> parents) {
+        for (String parent : parents) {
+            children.computeIfAbsent(parent, p -> new LinkedHashSet<>()).add(child);
+        }
+        waiting.put(child, parents.size());
+    }
+
+    public int remaining(String child) {
+        return waiting.getOrDefault(child, 0);
+    }
+
+    // Whether any blocked job still waits on this parent
+    public boolean isWaitedOn(String parent) {
+        return children.containsKey(parent);
+    }
+
+    public void clear() {
+        children.clear();
+        waiting.clear();
+    }
+
+    // The parent finished; returns the children it was the last unresolved parent of, which are
+    // no longer tracked. Resolving a parent twice does nothing the second time.
+    public List<String> resolve(String parent) {
+        List<String> ready = new ArrayList<>();
+        Set<String> waiters = children.remove(parent);
+        if (waiters == null) {
+            return ready;
+        }
+        for (String child : waiters) {
+            // Cancelled children may still be listed under their other parents
+            Integer left = waiting.computeIfPresent(child, (c, n) -> n - 1);
+            if (left != null && left <= 0) {
+                waiting.remove(child);
+                ready.add(child);
+            }
+        }
+        return ready;
+    }
+
+    // The parent died under the cancel policy: stops tracking every blocked job downstream of it.
+    // Returns each one with the parent it was cancelled through, nearest first.
+    public Map<String, String> cancel(String parent) {
+        Map<String, String> cancelled = new LinkedHashMap<>();
+        Deque<String> frontier = new ArrayDeque<>();
+        frontier.add(parent);
+        while (!frontier.isEmpty()) {
+            String failed = frontier.poll();
+            Set<String> waiters = children.remove(failed);
+            if (waiters == null) {
+                continue;
+            }
+            for (String child : waiters) {
+                if (waiting.remove(child) != null) {
+                    cancelled.put(child, failed);
+                    frontier.add(child);
+                }
+            }
+        }
+        return cancelled;
+    }
+
+    // Orders a batch so every job comes after the parents it has in the same batch, keeping the
+    // input order otherwise. Parents outside the batch are ignored; a cycle is rejected.
+    public static List<String> order(Map<String, List<String>> parentsById) {
+        Map<String, Integer> inBatch = new HashMap<>();
+        Map<String, List<String>> dependents = new HashMap<>();
+        for (Map.Entry<String, List<String>> entry : parentsById.entrySet()) {
+            int count = 0;
+            for (String parent : new LinkedHashSet<>(entry.getValue())) {
+                if (parentsById.containsKey(parent)) {
+                    dependents.computeIfAbsent(parent, p -> new ArrayList<>()).add(entry.getKey());
+                    count++;
+                }
+            }
+            inBatch.put(entry.getKey(), count);
+        }
+
+        List<String> ordered = new ArrayList<>(parentsById.size());
+        Deque<String> ready = new ArrayDeque<>();
+        for (String id : parentsById.keySet()) {
+            if (inBatch.get(id) == 0) {
+                ready.add(id);
+            }
+        }
+        while (!ready.isEmpty()) {
+            String id = ready.poll();
+            ordered.add(id);
+            for (String child : dependents.getOrDefault(id, List.of())) {
+                if (inBatch.merge(child, -1, Integer::sum) == 0) {
+                    ready.add(child);
+                }
+            }
+        }
+        if (ordered.size() < parentsById.size()) {
+            for (String id : parentsById.keySet()) {
+                if (inBatch.get(id) > 0) {
+                    throw new IllegalArgumentException("Dependency cycle through job '" + id + "'");
+                }
+            }
+        }
+        return ordered;
+    }
+}
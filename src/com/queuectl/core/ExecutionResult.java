@@ -0,0 +1,48 @@
+package com.queuectl.core;
+
+public class ExecutionResult {
+    private final int exitCode;
+    private final String output;
+    private final boolean timedOut;
+    // Set when the job failed without an exit code, e.g. an in-process handler threw
+    private final String error;
+
+    public ExecutionResult(int exitCode, String output) {
+        this(exitCode, output, false);
+    }
+
+    public ExecutionResult(int exitCode, String output, boolean timedOut) {
+        this(exitCode, output, timedOut, null);
+    }
+
+    private ExecutionResult(int exitCode, String output, boolean timedOut, String error) {
+        this.exitCode = exitCode;
+        this.output = output;
+        this.timedOut = timedOut;
+        this.error = error;
+    }
+
+    public static ExecutionResult error(String error) {
+        return new ExecutionResult(-1, null, false, error);
+    }
+
+    public boolean isSuccess() {
+        return exitCode == 0 && !timedOut;
+    }
+
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public String getOutput() {
+        return output;
+    }
+}
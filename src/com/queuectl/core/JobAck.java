@@ -0,0 +1,61 @@
+package com.queuectl.core;
+
+// The outcome of one job run, waiting to be written back to the store
+public class JobAck {
+    private final String jobId;
+    private final String workerId;
+    private final String state;
+    private final String result;
+    private final String errorMessage;
+    private final String failureReason;
+    private final long retryDelaySeconds;
+    // When the run finished, for the ack latency histogram
+    private final long createdAtNanos;
+    // Set once the result or error text has been left out so the transition can be written
+    private final boolean stripped;
+
+    private JobAck(String jobId, String workerId, String state, String result,
+                   String errorMessage, String failureReason, long retryDelaySeconds) {
+        this(jobId, workerId, state, result, errorMessage, failureReason, retryDelaySeconds, System.nanoTime(), false);
+    }
+
+    private JobAck(String jobId, String workerId, String state, String result, String errorMessage,
+                   String failureReason, long retryDelaySeconds, long createdAtNanos, boolean stripped) {
+        this.jobId = jobId;
+        this.workerId = workerId;
+        this.state = state;
+        this.result = result;
+        this.errorMessage = errorMessage;
+        this.failureReason = failureReason;
+        this.retryDelaySeconds = retryDelaySeconds;
+        this.createdAtNanos = createdAtNanos;
+        this.stripped = stripped;
+    }
+
+    public static JobAck completed(String jobId, String workerId, String result) {
+        return new JobAck(jobId, workerId, "completed", result, null, null, 0);
+    }
+
+    public static JobAck failed(String jobId, String workerId, String errorMessage, String failureReason, long retryDelaySeconds) {
+        return new JobAck(jobId, workerId, "failed", null, errorMessage, failureReason, retryDelaySeconds);
+    }
+
+    public static JobAck dead(String jobId, String workerId, String errorMessage, String failureReason) {
+        return new JobAck(jobId, workerId, "dead", null, errorMessage, failureReason, 0);
+    }
+
+    // The same state change without the result or the original error text, which is replaced by note
+    public JobAck stripped(String note) {
+        return new JobAck(jobId, workerId, state, null, note, failureReason, retryDelaySeconds, createdAtNanos, true);
+    }
+
+    public String getJobId() { return jobId; }
+    public String getWorkerId() { return workerId; }
+    public String getState() { return state; }
+    public String getResult() { return result; }
+    public String getErrorMessage() { return errorMessage; }
+    public String getFailureReason() { return failureReason; }
+    public long getRetryDelaySeconds() { return retryDelaySeconds; }
+    public long getCreatedAtNanos() { return createdAtNanos; }
+    public boolean isStripped() { return stripped; }
+}
@@ -0,0 +1,317 @@
+package com.queuectl.core;
+
+import com.queuectl.db.DatabaseManager;
+import com.queuectl.store.BlobStore;
+import com.queuectl.store.EmbeddedJobStore;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Moves completed jobs out of the hot jobs table in bounded batches, by age and by count, and
+// purges archived jobs past their retention period. Dead jobs are the DLQ, which only reads the
+// hot table, so they are archived only after dlq-retention-days. Each run of a job gets its own
+// archive row, so an id reused after archiving keeps its history. Blob references move with the
+// rows; purged rows drop theirs, and files nothing refers to any more are deleted afterwards.
+// An archived job's own dependency edges are dropped with it. The embedded store has no archive;
+// there the same limits drop finished jobs outright.
+public class JobArchiver {
+    static final String ARCHIVE_COLUMNS = "id, command, payload, payload_bytes, state, attempts, max_retries, created_at, " +
+            "updated_at, next_retry_at, run_at, error_message, result, result_blob, result_bytes, timeout_seconds, " +
+            "failure_reason, worker_id, queue, priority, deps_remaining";
+    // Cells that may point at a blob file; inline ones come back as NULL so purges don't read them
+    private static final String REF_CELLS = "IF(ASCII(payload) = 2, payload, NULL) AS payload_ref, " +
+            "IF(ASCII(result_blob) = 2, result_blob, NULL) AS result_ref";
+
+    private DatabaseManager dbManager;
+    private ConfigManager configManager;
+    private ScheduledExecutorService scheduler;
+
+    public JobArchiver() {
+        this.dbManager = DatabaseManager.getInstance();
+        this.configManager = new ConfigManager();
+    }
+
+    public synchronized void start() {
+        if (scheduler != null || !configManager.getConfigBoolean("archive-enabled", true)) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "job-archiver");
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = Math.max(10, configManager.getConfigInt("archive-interval-seconds", 300));
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                int[] result = runOnce();
+                if (result[0] + result[1] > 0) {
+                    System.out.println(describe(result));
+                }
+            } catch (Exception e) {
+                System.err.println("Job archiver error: " + e.getMessage());
+            }
+        }, interval, interval, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    // Returns {archived, purged}
+    public int[] runOnce() throws SQLException {
+        int batchSize = Math.max(1, configManager.getConfigInt("archive-batch-size", 1000));
+        int afterHours = configManager.getConfigInt("archive-after-hours", 24);
+        int maxTerminalRows = configManager.getConfigInt("archive-max-terminal-rows", 100000);
+        int retentionDays = configManager.getConfigInt("archive-retention-days", 30);
+        int dlqDays = configManager.getConfigInt("dlq-retention-days", 30);
+
+        EmbeddedJobStore embedded = JobStores.embedded();
+        if (embedded != null) {
+            return new int[]{embedded.dropFinishedJobs(afterHours, maxTerminalRows, dlqDays, batchSize), 0};
+        }
+
+        int archived = archiveOlderThan("completed", afterHours, batchSize);
+        if (dlqDays > 0) {
+            archived += archiveOlderThan("dead", dlqDays * 24, batchSize);
+        }
+
+        // Count policy: keep at most maxTerminalRows completed jobs in the hot table. The queue_stats
+        // counters hold the count already; a COUNT(*) here would scan the index every pass.
+        if (maxTerminalRows > 0) {
+            long excess = (long) JobStores.get().getJobStats()[2] - maxTerminalRows;
+            while (excess > 0) {
+                int moved = archiveBatch("completed", null, (int) Math.min(batchSize, excess));
+                if (moved == 0) {
+                    break;
+                }
+                archived += moved;
+                excess -= moved;
+            }
+        }
+
+        int purged = retentionDays > 0 ? purgeArchive(retentionDays, batchSize) : 0;
+        sweepBlobs(batchSize);
+        return new int[]{archived, purged};
+    }
+
+    // What runOnce did, for the log and the CLI
+    public String describe(int[] result) {
+        if (JobStores.isEmbedded()) {
+            return "Dropped " + result[0] + " finished job(s)";
+        }
+        return "Archived " + result[0] + " job(s), purged " + result[1] + " archived job(s)";
+    }
+
+    public int archiveOlderThan(String state, int hours, int batchSize) throws SQLException {
+        int total = 0;
+        int moved;
+        do {
+            moved = archiveBatch(state, hours, batchSize);
+            total += moved;
+        } while (moved == batchSize);
+        return total;
+    }
+
+    // Moves up to batchSize of the oldest jobs in a terminal state (older than the given hours, if any)
+    // in one transaction
+    private int archiveBatch(String state, Integer olderThanHours, int batchSize) throws SQLException {
+        Connection conn = null;
+        try {
+            conn = dbManager.getConnection();
+            conn.setAutoCommit(false);
+
+            List<String> ids = new ArrayList<>();
+            // Under the wait policy a dead job with dependents may still be retried, so it stays here
+            boolean keepDeadParents = state.equals("dead") && DependencyGraph.POLICY_WAIT.equals(DependencyGraph.failurePolicy(
+                    configManager.getConfigString("dependency-failure-policy", DependencyGraph.POLICY_CANCEL)));
+            String selectSql = "SELECT id FROM jobs FORCE INDEX (idx_terminal) WHERE state = ?" +
+                    (olderThanHours != null ? " AND updated_at < TIMESTAMPADD(HOUR, ?, NOW())" : "") +
+                    (keepDeadParents ? " AND dependents = 0" : "") +
+                    " ORDER BY updated_at LIMIT ? FOR UPDATE SKIP LOCKED";
+            try (PreparedStatement stmt = conn.prepareStatement(selectSql)) {
+                int index = 1;
+                stmt.setString(index++, state);
+                if (olderThanHours != null) {
+                    stmt.setInt(index++, -olderThanHours);
+                }
+                stmt.setInt(index, batchSize);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        ids.add(rs.getString("id"));
+                    }
+                }
+            }
+
+            if (!ids.isEmpty()) {
+                String in = placeholders(ids.size());
+                String copySql = "INSERT INTO jobs_archive (" + ARCHIVE_COLUMNS + ") " +
+                        "SELECT " + ARCHIVE_COLUMNS + " FROM jobs WHERE id IN (" + in + ")";
+                try (PreparedStatement stmt = conn.prepareStatement(copySql)) {
+                    bindIds(stmt, ids);
+                    stmt.executeUpdate();
+                }
+                try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM jobs WHERE id IN (" + in + ")")) {
+                    bindIds(stmt, ids);
+                    stmt.executeUpdate();
+                }
+                try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM job_deps WHERE child_id IN (" + in + ")")) {
+                    bindIds(stmt, ids);
+                    stmt.executeUpdate();
+                }
+                QueueStats.apply(conn, Map.of(state, -ids.size()));
+            }
+
+            conn.commit();
+            return ids.size();
+        } catch (SQLException e) {
+            if (conn != null) {
+                try {
+                    conn.rollback();
+                } catch (SQLException ex) {
+                    // Ignore
+                }
+            }
+            throw e;
+        } finally {
+            if (conn != null) {
+                try {
+                    conn.setAutoCommit(true);
+                    conn.close();
+                } catch (SQLException e) {
+                    // Ignore
+                }
+            }
+        }
+    }
+
+    public int purgeArchive(int olderThanDays, int batchSize) throws SQLException {
+        int total = 0;
+        int purged;
+        do {
+            purged = purgeBatch(olderThanDays, batchSize);
+            total += purged;
+        } while (purged == batchSize);
+        return total;
+    }
+
+    // Deletes up to batchSize expired archive rows and drops their blob references in one transaction
+    private int purgeBatch(int olderThanDays, int batchSize) throws SQLException {
+        String selectSql = "SELECT archive_id, " + REF_CELLS + " FROM jobs_archive " +
+                "WHERE archived_at < TIMESTAMPADD(DAY, ?, NOW()) ORDER BY archived_at LIMIT ? FOR UPDATE";
+        Connection conn = null;
+        try {
+            conn = dbManager.getConnection();
+            conn.setAutoCommit(false);
+
+            List<Long> ids = new ArrayList<>();
+            List<byte[]> cells = new ArrayList<>();
+            try (PreparedStatement stmt = conn.prepareStatement(selectSql)) {
+                stmt.setInt(1, -olderThanDays);
+                stmt.setInt(2, batchSize);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        ids.add(rs.getLong("archive_id"));
+                        cells.add(rs.getBytes("payload_ref"));
+                        cells.add(rs.getBytes("result_ref"));
+                    }
+                }
+            }
+
+            if (!ids.isEmpty()) {
+                try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM jobs_archive WHERE archive_id IN (" +
+                        placeholders(ids.size()) + ")")) {
+                    for (int i = 0; i < ids.size(); i++) {
+                        stmt.setLong(i + 1, ids.get(i));
+                    }
+                    stmt.executeUpdate();
+                }
+                BlobRefs.release(conn, cells);
+            }
+
+            conn.commit();
+            return ids.size();
+        } catch (SQLException e) {
+            if (conn != null) {
+                try {
+                    conn.rollback();
+                } catch (SQLException ex) {
+                    // Ignore
+                }
+            }
+            throw e;
+        } finally {
+            if (conn != null) {
+                try {
+                    conn.setAutoCommit(true);
+                    conn.close();
+                } catch (SQLException e) {
+                    // Ignore
+                }
+            }
+        }
+    }
+
+    // Deletes blob files no job or archived job refers to any more
+    public int sweepBlobs(int batchSize) throws SQLException {
+        int total = 0;
+        int deleted;
+        do {
+            deleted = BlobRefs.sweep(BlobStore.get(), batchSize);
+            total += deleted;
+        } while (deleted == batchSize);
+        return total;
+    }
+
+    public long countTerminalJobs() throws SQLException {
+        return count("SELECT COUNT(*) FROM jobs WHERE state IN ('completed', 'dead')");
+    }
+
+    public long countArchivedJobs() throws SQLException {
+        return count("SELECT COUNT(*) FROM jobs_archive");
+    }
+
+    public void printStatus() throws SQLException {
+        System.out.println("\n=== Archive Status ===");
+        System.out.println("Hot table rows:        " + count("SELECT COUNT(*) FROM jobs"));
+        System.out.println("Terminal rows in hot:  " + countTerminalJobs());
+        System.out.println("Archived rows:         " + countArchivedJobs());
+        System.out.println("Blob files:            " + count("SELECT COUNT(*) FROM blob_refs") +
+                " (" + count("SELECT COALESCE(SUM(bytes), 0) FROM blob_refs") + " bytes)");
+        System.out.println("\nPolicy: archive after " + configManager.getConfigInt("archive-after-hours", 24) + "h" +
+                ", keep at most " + configManager.getConfigInt("archive-max-terminal-rows", 100000) + " completed rows hot" +
+                ", keep dead jobs in the DLQ " + configManager.getConfigInt("dlq-retention-days", 30) + " day(s)" +
+                ", retain archive " + configManager.getConfigInt("archive-retention-days", 30) + " day(s)");
+        System.out.println();
+    }
+
+    private long count(String sql) throws SQLException {
+        try (Connection conn = dbManager.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private static void bindIds(PreparedStatement stmt, List<String> ids) throws SQLException {
+        for (int i = 0; i < ids.size(); i++) {
+            stmt.setString(i + 1, ids.get(i));
+        }
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder sb = new StringBuilder(count * 3);
+        for (int i = 0; i < count; i++) {
+            sb.append(i == 0 ? "?" : ", ?");
+        }
+        return sb.toString();
+    }
+}
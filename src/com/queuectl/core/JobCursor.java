@@ -0,0 +1,96 @@
+package com.queuectl.core;
+
+import com.queuectl.models.Job;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+// Walks jobs newest first in keyset pages: one page is in memory at a time and no query is
+// left open between pages. cursor() is the position after the last job returned.
+public class JobCursor implements Iterator<Job> {
+    private static final int PAGE_SIZE = 500;
+
+    private final JobStore jobQueue;
+    private final String state;
+    private final Timestamp since;
+    private final int limit;
+    private Timestamp afterCreatedAt;
+    private String afterId;
+    private final Deque<Job> page;
+    private boolean exhausted;
+    private int returned;
+
+    JobCursor(JobStore jobQueue, String state, Timestamp since, String after, int limit) {
+        this.jobQueue = jobQueue;
+        this.state = state;
+        this.since = since;
+        this.limit = limit;
+        this.page = new ArrayDeque<>();
+        if (after != null) {
+            int sep = after.indexOf(':');
+            if (sep <= 0) {
+                throw new IllegalArgumentException("Invalid cursor: " + after);
+            }
+            try {
+                this.afterCreatedAt = new Timestamp(Long.parseLong(after.substring(0, sep)));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + after);
+            }
+            this.afterId = after.substring(sep + 1);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (limit > 0 && returned >= limit) {
+            return false;
+        }
+        if (page.isEmpty() && !exhausted) {
+            fill();
+        }
+        return !page.isEmpty();
+    }
+
+    @Override
+    public Job next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Job job = page.poll();
+        returned++;
+        afterCreatedAt = job.getCreatedAt();
+        afterId = job.getId();
+        return job;
+    }
+
+    public String cursor() {
+        return afterId == null ? null : afterCreatedAt.getTime() + ":" + afterId;
+    }
+
+    public int getReturned() {
+        return returned;
+    }
+
+    public boolean isLimitReached() {
+        return limit > 0 && returned >= limit;
+    }
+
+    private void fill() {
+        int size = limit > 0 ? Math.min(PAGE_SIZE, limit - returned) : PAGE_SIZE;
+        List<Job> jobs;
+        try {
+            jobs = jobQueue.fetchPage(state, since, afterCreatedAt, afterId, size);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to list jobs: " + e.getMessage(), e);
+        }
+        if (jobs.size() < size) {
+            exhausted = true;
+        }
+        page.addAll(jobs);
+    }
+}
@@ -0,0 +1,276 @@
+package com.queuectl.core;
+
+import com.queuectl.models.Job;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+// Dependency edges in job_deps for the MySQL store. Workers in several processes finish parents
+// concurrently, so each blocked job's count of unfinished parents lives in its row
+// (deps_remaining) rather than in one process's memory; every finish batch builds its decrements
+// in memory from the finished parents' edges and applies them with one statement. Work is
+// proportional to those edges, and jobs nobody depends on (dependents = 0) skip it entirely.
+// Everything runs in the caller's transaction. Parents are always locked before their children,
+// by enqueues and finishes alike, so the two can't deadlock.
+class JobDependencies {
+    private JobDependencies() {
+    }
+
+    static class Edge {
+        final String child;
+        final String parent;
+        final boolean resolved;
+
+        Edge(String child, String parent, boolean resolved) {
+            this.child = child;
+            this.parent = parent;
+            this.resolved = resolved;
+        }
+    }
+
+    // Checks and locks the parents named by a batch about to be inserted, and sets each dependent
+    // job's state (blocked, or pending when every parent already completed) and deps_remaining.
+    // Jobs with dependencies are never scheduled. Returns the edges to link() once the rows exist.
+    static List<Edge> prepare(Connection conn, Collection<Job> jobs, String policy) throws SQLException {
+        List<Edge> edges = new ArrayList<>();
+        if (jobs.stream().allMatch(job -> job.getDependsOn().isEmpty())) {
+            return edges;
+        }
+        Map<String, List<String>> parentsById = new LinkedHashMap<>();
+        for (Job job : jobs) {
+            parentsById.put(job.getId(), job.getDependsOn());
+        }
+        Set<String> external = new TreeSet<>();
+        for (Job job : jobs) {
+            for (String parent : job.getDependsOn()) {
+                if (!parentsById.containsKey(parent)) {
+                    external.add(parent);
+                }
+            }
+        }
+        try {
+            DependencyGraph.order(parentsById);
+        } catch (IllegalArgumentException e) {
+            throw new SQLException(e.getMessage());
+        }
+
+        Map<String, String> states = new HashMap<>();
+        Set<String> archived = new HashSet<>();
+        if (!external.isEmpty()) {
+            selectStates(conn, "SELECT id, state FROM jobs WHERE id IN (" + JobQueue.placeholders(external.size()) +
+                    ") FOR UPDATE", external, states);
+            Set<String> missing = new TreeSet<>(external);
+            missing.removeAll(states.keySet());
+            if (!missing.isEmpty()) {
+                // Finished parents may have been archived already; the latest run of each counts
+                selectStates(conn, "SELECT id, state FROM jobs_archive WHERE id IN (" +
+                        JobQueue.placeholders(missing.size()) + ") ORDER BY archive_id", missing, states);
+                archived.addAll(missing);
+            }
+        }
+
+        boolean ignored = policy.equals(DependencyGraph.POLICY_IGNORE);
+        for (Job job : jobs) {
+            if (job.getDependsOn().isEmpty()) {
+                continue;
+            }
+            int remaining = 0;
+            for (String parent : new LinkedHashSet<>(job.getDependsOn())) {
+                boolean resolved;
+                if (parentsById.containsKey(parent)) {
+                    resolved = false;
+                } else {
+                    String state = states.get(parent);
+                    if (state == null) {
+                        throw new SQLException("Job '" + job.getId() + "' depends on unknown job '" + parent + "'");
+                    }
+                    // Under wait a dead parent can still be retried, unless it was archived
+                    if (state.equals("dead") && !ignored && (policy.equals(DependencyGraph.POLICY_CANCEL) || archived.contains(parent))) {
+                        throw new SQLException("Job '" + job.getId() + "' depends on dead job '" + parent + "'");
+                    }
+                    resolved = state.equals("completed") || (state.equals("dead") && ignored);
+                }
+                edges.add(new Edge(job.getId(), parent, resolved));
+                if (!resolved) {
+                    remaining++;
+                }
+            }
+            job.setDepsRemaining(remaining);
+            job.setState(remaining > 0 ? "blocked" : "pending");
+            job.setRunAt(null);
+            job.setDelayMillis(0);
+        }
+        return edges;
+    }
+
+    // Inserts the edges and counts them on the parents still in the hot table
+    static void link(Connection conn, List<Edge> edges) throws SQLException {
+        if (edges.isEmpty()) {
+            return;
+        }
+        StringBuilder sql = new StringBuilder("INSERT INTO job_deps (child_id, parent_id, resolved) VALUES ");
+        for (int i = 0; i < edges.size(); i++) {
+            sql.append(i == 0 ? "(?, ?, ?)" : ", (?, ?, ?)");
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            int index = 1;
+            for (Edge edge : edges) {
+                stmt.setString(index++, edge.child);
+                stmt.setString(index++, edge.parent);
+                stmt.setInt(index++, edge.resolved ? 1 : 0);
+            }
+            stmt.executeUpdate();
+        }
+
+        Map<String, Integer> counts = new TreeMap<>();
+        for (Edge edge : edges) {
+            counts.merge(edge.parent, 1, Integer::sum);
+        }
+        addByCase(conn, "dependents", counts);
+    }
+
+    // Counts down the children of parents that just finished, in the transaction that finished
+    // them, and moves children with nothing left to wait for to pending in one statement.
+    // Returns how many were released.
+    static int settle(Connection conn, Collection<String> completed, Collection<String> dead, String policy) throws SQLException {
+        List<String> satisfied = new ArrayList<>(completed);
+        if (policy.equals(DependencyGraph.POLICY_IGNORE)) {
+            satisfied.addAll(dead);
+        }
+        int released = 0;
+        if (!satisfied.isEmpty()) {
+            released = release(conn, satisfied);
+        }
+        if (policy.equals(DependencyGraph.POLICY_CANCEL) && !dead.isEmpty()) {
+            cancel(conn, dead);
+        }
+        return released;
+    }
+
+    private static int release(Connection conn, List<String> parents) throws SQLException {
+        String in = JobQueue.placeholders(parents.size());
+        Map<String, Integer> decrements = new TreeMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT child_id FROM job_deps " +
+                "WHERE parent_id IN (" + in + ") AND resolved = 0 FOR UPDATE")) {
+            JobQueue.bindIds(stmt, 1, parents);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    decrements.merge(rs.getString("child_id"), -1, Integer::sum);
+                }
+            }
+        }
+        if (decrements.isEmpty()) {
+            return 0;
+        }
+        try (PreparedStatement stmt = conn.prepareStatement("UPDATE job_deps SET resolved = 1 " +
+                "WHERE parent_id IN (" + in + ") AND resolved = 0")) {
+            JobQueue.bindIds(stmt, 1, parents);
+            stmt.executeUpdate();
+        }
+        addByCase(conn, "deps_remaining", decrements);
+
+        // Waiting time counts from the release, not from the enqueue
+        int released;
+        try (PreparedStatement stmt = conn.prepareStatement("UPDATE jobs SET state = 'pending', run_at = NOW(3), " +
+                "updated_at = NOW() WHERE state = 'blocked' AND deps_remaining <= 0 AND id IN (" +
+                JobQueue.placeholders(decrements.size()) + ")")) {
+            JobQueue.bindIds(stmt, 1, decrements.keySet());
+            released = stmt.executeUpdate();
+        }
+        QueueStats.move(conn, "blocked", "pending", released);
+        return released;
+    }
+
+    // Sends every blocked job downstream of the dead parents to the DLQ, one level per round trip.
+    // Their edges stay unresolved, so retrying one from the DLQ blocks it again until its parents complete.
+    private static void cancel(Connection conn, Collection<String> dead) throws SQLException {
+        List<String> frontier = new ArrayList<>(dead);
+        while (!frontier.isEmpty()) {
+            Map<String, String> failedBy = new TreeMap<>();
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT parent_id, child_id FROM job_deps " +
+                    "WHERE parent_id IN (" + JobQueue.placeholders(frontier.size()) + ") AND resolved = 0")) {
+                JobQueue.bindIds(stmt, 1, frontier);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        failedBy.putIfAbsent(rs.getString("child_id"), rs.getString("parent_id"));
+                    }
+                }
+            }
+            if (failedBy.isEmpty()) {
+                return;
+            }
+
+            Map<String, Integer> blocked = new LinkedHashMap<>();
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT id, dependents FROM jobs WHERE state = 'blocked' " +
+                    "AND id IN (" + JobQueue.placeholders(failedBy.size()) + ") FOR UPDATE")) {
+                JobQueue.bindIds(stmt, 1, failedBy.keySet());
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        blocked.put(rs.getString("id"), rs.getInt("dependents"));
+                    }
+                }
+            }
+            if (blocked.isEmpty()) {
+                return;
+            }
+
+            int cancelled;
+            try (PreparedStatement stmt = conn.prepareStatement("UPDATE jobs SET state = 'dead', failure_reason = ?, " +
+                    "error_message = " + JobQueue.caseOf(blocked.size()) + ", updated_at = NOW() " +
+                    "WHERE state = 'blocked' AND id IN (" + JobQueue.placeholders(blocked.size()) + ")")) {
+                int index = 1;
+                stmt.setString(index++, Job.FAILURE_DEPENDENCY);
+                for (String id : blocked.keySet()) {
+                    stmt.setString(index++, id);
+                    stmt.setString(index++, "Dependency '" + failedBy.get(id) + "' failed");
+                }
+                JobQueue.bindIds(stmt, index, blocked.keySet());
+                cancelled = stmt.executeUpdate();
+            }
+            QueueStats.move(conn, "blocked", "dead", cancelled);
+
+            frontier = new ArrayList<>();
+            for (Map.Entry<String, Integer> entry : blocked.entrySet()) {
+                if (entry.getValue() > 0) {
+                    frontier.add(entry.getKey());
+                }
+            }
+        }
+    }
+
+    // UPDATE jobs SET column = column + CASE id ... END for the given per-job amounts
+    private static void addByCase(Connection conn, String column, Map<String, Integer> amounts) throws SQLException {
+        String sql = "UPDATE jobs SET " + column + " = " + column + " + " + JobQueue.caseOf(amounts.size()) +
+                " WHERE id IN (" + JobQueue.placeholders(amounts.size()) + ")";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            int index = 1;
+            for (Map.Entry<String, Integer> entry : amounts.entrySet()) {
+                stmt.setString(index++, entry.getKey());
+                stmt.setInt(index++, entry.getValue());
+            }
+            JobQueue.bindIds(stmt, index, amounts.keySet());
+            stmt.executeUpdate();
+        }
+    }
+
+    private static void selectStates(Connection conn, String sql, Collection<String> ids, Map<String, String> states) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            JobQueue.bindIds(stmt, 1, ids);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    states.put(rs.getString("id"), rs.getString("state"));
+                }
+            }
+        }
+    }
+}
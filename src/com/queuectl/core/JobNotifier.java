@@ -0,0 +1,120 @@
+package com.queuectl.core;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Wakes idle workers when new work becomes claimable. Enqueues and retry timers in this
+// JVM signal directly; enqueues from other processes are picked up by watching the
+// striped queue_signal sequence rows.
+public class JobNotifier {
+    private static JobNotifier instance;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition workAvailable = lock.newCondition();
+    private volatile long sequence;
+
+    private final ScheduledExecutorService timers;
+    private Thread watcher;
+    private volatile boolean watching;
+
+    private JobNotifier() {
+        this.timers = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "job-notifier-timer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public static synchronized JobNotifier getInstance() {
+        if (instance == null) {
+            instance = new JobNotifier();
+        }
+        return instance;
+    }
+
+    public long sequence() {
+        return sequence;
+    }
+
+    // Wakes up to jobCount waiting workers
+    public void signal(int jobCount) {
+        lock.lock();
+        try {
+            sequence++;
+            if (jobCount >= 1024) {
+                workAvailable.signalAll();
+            } else {
+                for (int i = 0; i < jobCount; i++) {
+                    workAvailable.signal();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void signalAfter(long delayMillis) {
+        timers.schedule(() -> signal(1), Math.max(0, delayMillis), TimeUnit.MILLISECONDS);
+    }
+
+    // Returns true if a signal arrived after seenSequence was read, false on timeout
+    public boolean await(long seenSequence, long timeoutMillis) throws InterruptedException {
+        long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        lock.lock();
+        try {
+            while (sequence == seenSequence) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = workAvailable.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public synchronized void startWatching(JobStore jobQueue, long intervalMillis) {
+        if (watching) {
+            return;
+        }
+        watching = true;
+        watcher = new Thread(() -> watch(jobQueue, intervalMillis), "job-notifier-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    public synchronized void stopWatching() {
+        watching = false;
+        if (watcher != null) {
+            watcher.interrupt();
+            watcher = null;
+        }
+    }
+
+    private void watch(JobStore jobQueue, long intervalMillis) {
+        long lastSeen = -1;
+        while (watching) {
+            try {
+                long current = jobQueue.readSignalSequence();
+                if (lastSeen >= 0 && current != lastSeen) {
+                    signal((int) Math.min(Math.max(current - lastSeen, 1), 1024));
+                }
+                lastSeen = current;
+                Thread.sleep(intervalMillis);
+            } catch (InterruptedException e) {
+                break;
+            } catch (Exception e) {
+                System.err.println("Job signal watcher error: " + e.getMessage());
+                try {
+                    Thread.sleep(Math.max(intervalMillis, 1000));
+                } catch (InterruptedException ex) {
+                    break;
+                }
+            }
+        }
+    }
+}
@@ -1,69 +1,323 @@
 package com.queuectl.core;
 
 import com.queuectl.db.DatabaseManager;
+import com.queuectl.metrics.Histogram;
+import com.queuectl.metrics.Metrics;
 import com.queuectl.models.Job;
+import com.queuectl.store.BlobStore;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+// MySQL implementation of JobStore
+public class JobQueue implements JobStore {
+    // Columns a worker needs to run a job; captured output and errors stay on disk, and the
+    // payload is read separately for just the jobs that have one
+    static final String CLAIM_COLUMNS = "id, command, payload_bytes, state, attempts, max_retries, created_at, " +
+            "run_at, timeout_seconds, queue, priority";
+    private static final String RUN_AT_VALUE = "COALESCE(?, TIMESTAMPADD(MICROSECOND, ?, NOW(3)))";
+    // Columns shown by list and dlq list; command output is left out
+    private static final String LIST_COLUMNS = "id, command, payload_bytes, state, attempts, max_retries, created_at, updated_at, " +
+            "error_message, failure_reason, queue, priority, result_bytes";
+    // Every column jobs and jobs_archive share, except the blobs
+    private static final String JOB_COLUMNS = "id, command, payload_bytes, state, attempts, max_retries, created_at, " +
+            "updated_at, next_retry_at, run_at, error_message, result_bytes, timeout_seconds, failure_reason, " +
+            "worker_id, queue, priority, deps_remaining";
+    private static final String BLOB_COLUMNS = "payload, result, result_blob";
+    // queue_signal ids: claimable jobs were added, and scheduled jobs were added
+    private static final int READY_SIGNAL = 1;
+    private static final int SCHEDULE_SIGNAL = 2;
+    private static final int SIGNAL_STRIPES = 16;
+    // Lease fence for outcomes: the row must still be held by the worker reporting it
+    private static final String OWNED = "state = 'processing' AND worker_id = ?";
+
+    // Wall time of each database operation, connection borrow and round trips included
+    private static final String SQL_HELP = "Time spent in JobQueue database operations";
+    private static final Histogram SQL_ENQUEUE = Metrics.histogram("queuectl_sql_seconds", SQL_HELP, "op", "enqueue");
+    private static final Histogram SQL_ENQUEUE_BATCH = Metrics.histogram("queuectl_sql_seconds", SQL_HELP, "op", "enqueue_batch");
+    private static final Histogram SQL_CLAIM = Metrics.histogram("queuectl_sql_seconds", SQL_HELP, "op", "claim");
+    private static final Histogram SQL_RELEASE = Metrics.histogram("queuectl_sql_seconds", SQL_HELP, "op", "release");
+    private static final Histogram SQL_ACK = Metrics.histogram("queuectl_sql_seconds", SQL_HELP, "op", "ack");
+    private static final Histogram SQL_TRANSITION = Metrics.histogram("queuectl_sql_seconds", SQL_HELP, "op", "transition");
+    private static final Histogram SQL_GET_JOB = Metrics.histogram("queuectl_sql_seconds", SQL_HELP, "op", "get_job");
+    private static final Histogram SQL_PAGE = Metrics.histogram("queuectl_sql_seconds", SQL_HELP, "op", "list_page");
+    private static final Histogram SQL_RENEW = Metrics.histogram("queuectl_sql_seconds", SQL_HELP, "op", "renew_leases");
+    private static final Histogram SQL_REAP = Metrics.histogram("queuectl_sql_seconds", SQL_HELP, "op", "reap");
+    private static final Histogram SQL_PROMOTE = Metrics.histogram("queuectl_sql_seconds", SQL_HELP, "op", "promote");
+    private static final Histogram SQL_SIGNAL = Metrics.histogram("queuectl_sql_seconds", SQL_HELP, "op", "signal_read");
 
-public class JobQueue {
     private DatabaseManager dbManager;
+    private JobNotifier notifier;
+    private ConfigManager configManager;
+    private QueueStats queueStats;
+    private BlobStore blobs;
 
     public JobQueue() {
         this.dbManager = DatabaseManager.getInstance();
+        this.notifier = JobNotifier.getInstance();
+        this.configManager = new ConfigManager();
+        this.queueStats = new QueueStats();
+        this.blobs = BlobStore.get();
     }
 
+    @Override
     public void enqueue(Job job) throws SQLException {
-        String sql = "INSERT INTO jobs (id, command, state, attempts, max_retries) VALUES (?, ?, ?, ?, ?)";
+        String sql = "INSERT INTO jobs (id, command, payload, payload_bytes, state, attempts, max_retries, timeout_seconds, " +
+                    "queue, priority, deps_remaining, run_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, " + RUN_AT_VALUE + ")";
+        BlobStore.Cell payload = blobs.encode(job.getPayload());
+        String policy = dependencyPolicy();
         
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
-            stmt.setString(1, job.getId());
-            stmt.setString(2, job.getCommand());
-            stmt.setString(3, job.getState());
-            stmt.setInt(4, job.getAttempts());
-            stmt.setInt(5, job.getMaxRetries());
-            
+        boolean ready = inTransaction(SQL_ENQUEUE, conn -> {
+            List<JobDependencies.Edge> edges = JobDependencies.prepare(conn, Collections.singletonList(job), policy);
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setString(1, job.getId());
+                stmt.setString(2, job.getCommand());
+                setCell(stmt, 3, payload);
+                stmt.setString(5, job.getState());
+                stmt.setInt(6, job.getAttempts());
+                stmt.setInt(7, job.getMaxRetries());
+                setTimeout(stmt, 8, job);
+                stmt.setString(9, job.getQueue());
+                stmt.setInt(10, job.getPriority());
+                stmt.setInt(11, job.getDepsRemaining());
+                setRunAt(stmt, 12, job);
+                stmt.executeUpdate();
+            }
+            JobDependencies.link(conn, edges);
+            BlobRefs.retain(conn, blobs, Collections.singletonList(payload));
+            QueueStats.apply(conn, Map.of(job.getState(), 1));
+            if (job.getState().equals("scheduled")) {
+                bumpScheduleSignal(conn);
+            } else if (job.getState().equals("pending")) {
+                bumpSignal(conn, 1);
+                return true;
+            }
+            return false;
+        });
+        if (ready) {
+            notifier.signal(1);
+        }
+    }
+
+    // Inserts one chunk of jobs in a single transaction and returns the ids that already existed
+    @Override
+    public List<String> enqueueBatch(List<Job> jobs) throws SQLException {
+        List<String> duplicates = new ArrayList<>();
+        Map<String, Job> unique = new LinkedHashMap<>();
+        for (Job job : jobs) {
+            if (unique.putIfAbsent(job.getId(), job) != null) {
+                duplicates.add(job.getId());
+            }
+        }
+        if (unique.isEmpty()) {
+            return duplicates;
+        }
+        Map<String, BlobStore.Cell> payloads = new HashMap<>();
+        for (Job job : unique.values()) {
+            if (job.getPayload() != null) {
+                payloads.put(job.getId(), blobs.encode(job.getPayload()));
+            }
+        }
+
+        String policy = dependencyPolicy();
+        int ready = 0;
+        long start = System.nanoTime();
+        Connection conn = null;
+        try {
+            conn = dbManager.getConnection();
+            conn.setAutoCommit(false);
+
+            // A concurrent insert can still win the race after our check; re-check once on conflict
+            for (int attempt = 0; ; attempt++) {
+                List<String> existing = findExistingIds(conn, unique.keySet());
+                for (String id : existing) {
+                    unique.remove(id);
+                    duplicates.add(id);
+                }
+                if (unique.isEmpty()) {
+                    conn.commit();
+                    return duplicates;
+                }
+                try {
+                    List<JobDependencies.Edge> edges = JobDependencies.prepare(conn, unique.values(), policy);
+                    insertRows(conn, new ArrayList<>(unique.values()), payloads);
+                    JobDependencies.link(conn, edges);
+                    List<BlobStore.Cell> inserted = new ArrayList<>();
+                    for (String id : unique.keySet()) {
+                        inserted.add(payloads.get(id));
+                    }
+                    BlobRefs.retain(conn, blobs, inserted);
+                    Map<String, Integer> deltas = new HashMap<>();
+                    for (Job job : unique.values()) {
+                        QueueStats.add(deltas, job.getState(), 1);
+                    }
+                    QueueStats.apply(conn, deltas);
+                    ready = deltas.getOrDefault("pending", 0);
+                    if (ready > 0) {
+                        bumpSignal(conn, ready);
+                    }
+                    if (deltas.containsKey("scheduled")) {
+                        bumpScheduleSignal(conn);
+                    }
+                    conn.commit();
+                    break;
+                } catch (SQLIntegrityConstraintViolationException e) {
+                    conn.rollback();
+                    if (attempt > 0) {
+                        throw e;
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            if (conn != null) {
+                try {
+                    conn.rollback();
+                } catch (SQLException ex) {
+                    // Ignore
+                }
+            }
+            throw e;
+        } finally {
+            if (conn != null) {
+                try {
+                    conn.setAutoCommit(true);
+                    conn.close();
+                } catch (SQLException e) {
+                    // Ignore
+                }
+            }
+            SQL_ENQUEUE_BATCH.recordSince(start);
+        }
+
+        if (ready > 0) {
+            notifier.signal(ready);
+        }
+        return duplicates;
+    }
+
+    private List<String> findExistingIds(Connection conn, Collection<String> ids) throws SQLException {
+        List<String> existing = new ArrayList<>();
+        String sql = "SELECT id FROM jobs WHERE id IN (" + placeholders(ids.size()) + ")";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            int index = 1;
+            for (String id : ids) {
+                stmt.setString(index++, id);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    existing.add(rs.getString("id"));
+                }
+            }
+        }
+        return existing;
+    }
+
+    private void insertRows(Connection conn, List<Job> jobs, Map<String, BlobStore.Cell> payloads) throws SQLException {
+        StringBuilder sql = new StringBuilder("INSERT INTO jobs (id, command, payload, payload_bytes, state, attempts, " +
+                "max_retries, timeout_seconds, queue, priority, deps_remaining, run_at) VALUES ");
+        for (int i = 0; i < jobs.size(); i++) {
+            sql.append(i == 0 ? "(" : ", (").append("?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ").append(RUN_AT_VALUE).append(")");
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            int index = 1;
+            for (Job job : jobs) {
+                stmt.setString(index++, job.getId());
+                stmt.setString(index++, job.getCommand());
+                setCell(stmt, index, payloads.get(job.getId()));
+                index += 2;
+                stmt.setString(index++, job.getState());
+                stmt.setInt(index++, job.getAttempts());
+                stmt.setInt(index++, job.getMaxRetries());
+                setTimeout(stmt, index++, job);
+                stmt.setString(index++, job.getQueue());
+                stmt.setInt(index++, job.getPriority());
+                stmt.setInt(index++, job.getDepsRemaining());
+                setRunAt(stmt, index, job);
+                index += 2;
+            }
             stmt.executeUpdate();
         }
     }
 
-    public Job dequeueJob(String workerId) throws SQLException {
+    // Claims up to limit ready jobs from one queue, highest priority first, then oldest run_at
+    @Override
+    public List<Job> dequeueBatch(String workerId, String queue, int limit) throws SQLException {
+        List<Job> jobs = new ArrayList<>();
+        if (limit <= 0) {
+            return jobs;
+        }
+
+        long start = System.nanoTime();
         Connection conn = null;
         try {
             conn = dbManager.getConnection();
             conn.setAutoCommit(false);
             
-            // Find next pending job or failed job ready for retry
-            String sql = "SELECT * FROM jobs WHERE " +
-                        "(state = 'pending' OR (state = 'failed' AND (next_retry_at IS NULL OR next_retry_at <= NOW()))) " +
-                        "ORDER BY created_at ASC LIMIT 1 FOR UPDATE";
-            
-            PreparedStatement selectStmt = conn.prepareStatement(sql);
-            ResultSet rs = selectStmt.executeQuery();
+            // Each state is probed one priority level at a time, so run_at bounds every range scan
+            List<ReadyJob> ready = new ArrayList<>();
+            selectReady(conn, queue, "pending", limit, ready);
+            selectReady(conn, queue, "failed", limit, ready);
+            ready.sort(Comparator.comparingInt((ReadyJob r) -> -r.priority)
+                    .thenComparing(r -> r.runAt).thenComparing(r -> r.createdAt));
+            if (ready.size() > limit) {
+                ready = ready.subList(0, limit);
+            }
+
+            if (!ready.isEmpty()) {
+                Map<String, Job> byId = fetchJobs(conn, ready);
+                long claimedAt = System.nanoTime();
+                for (ReadyJob r : ready) {
+                    Job job = byId.get(r.id);
+                    if (job != null) {
+                        job.setQueueWaitMicros(r.queueWaitMicros);
+                        job.setClaimedAtNanos(claimedAt);
+                        jobs.add(job);
+                    }
+                }
+            }
             
-            if (rs.next()) {
-                Job job = mapResultSetToJob(rs);
-                
-                // Update job to processing state
-                String updateSql = "UPDATE jobs SET state = 'processing', updated_at = NOW() WHERE id = ?";
-                PreparedStatement updateStmt = conn.prepareStatement(updateSql);
-                updateStmt.setString(1, job.getId());
-                updateStmt.executeUpdate();
-                updateStmt.close();
-                
-                conn.commit();
-                rs.close();
-                selectStmt.close();
-                return job;
+            if (!jobs.isEmpty()) {
+                // Update all claimed jobs to processing state in one statement
+                String updateSql = "UPDATE jobs SET state = 'processing', worker_id = ?, " +
+                                  "lease_expires_at = TIMESTAMPADD(SECOND, ?, NOW(3)), updated_at = NOW() " +
+                                  "WHERE id IN (" + placeholders(jobs.size()) + ")";
+                try (PreparedStatement updateStmt = conn.prepareStatement(updateSql)) {
+                    updateStmt.setString(1, workerId);
+                    updateStmt.setInt(2, leaseSeconds());
+                    for (int i = 0; i < jobs.size(); i++) {
+                        updateStmt.setString(i + 3, jobs.get(i).getId());
+                    }
+                    updateStmt.executeUpdate();
+                }
+
+                Map<String, Integer> deltas = new HashMap<>();
+                for (Job job : jobs) {
+                    QueueStats.add(deltas, job.getState(), -1);
+                }
+                QueueStats.add(deltas, "processing", jobs.size());
+                QueueStats.apply(conn, deltas);
             }
             
             conn.commit();
-            rs.close();
-            selectStmt.close();
-            return null;
+
+            for (Job job : jobs) {
+                job.setState("processing");
+                job.setWorkerId(workerId);
+            }
+            return jobs;
         } catch (SQLException e) {
             if (conn != null) {
                 try {
@@ -82,125 +336,854 @@ public class JobQueue {
                     // Ignore
                 }
             }
+            SQL_CLAIM.recordSince(start);
         }
     }
 
-    public void markJobCompleted(String jobId) throws SQLException {
-        String sql = "UPDATE jobs SET state = 'completed', updated_at = NOW() WHERE id = ?";
+    private static class ReadyJob {
+        private final String id;
+        private final int priority;
+        private final Timestamp runAt;
+        private final Timestamp createdAt;
+        private final long queueWaitMicros;
+
+        ReadyJob(String id, int priority, Timestamp runAt, Timestamp createdAt, long queueWaitMicros) {
+            this.id = id;
+            this.priority = priority;
+            this.runAt = runAt;
+            this.createdAt = createdAt;
+            this.queueWaitMicros = queueWaitMicros;
+        }
+    }
+
+    // Walks the priority levels present in (queue, state) from the highest down, claiming due rows
+    // from each until limit is reached. Binding priority by equality leaves run_at as the first
+    // range column of idx_queue_ready, so a level whose rows are all backoff retries that aren't
+    // due yet costs one index dive and no row locks. Finding the next level is an index dive too.
+    private void selectReady(Connection conn, String queue, String state, int limit, List<ReadyJob> ready) throws SQLException {
+        int wanted = limit;
+        Integer below = null;
+        while (wanted > 0) {
+            Integer priority = nextPriority(conn, queue, state, below);
+            if (priority == null) {
+                return;
+            }
+            wanted -= selectReady(conn, queue, state, priority, wanted, ready);
+            below = priority;
+        }
+    }
+
+    // Highest priority in (queue, state) below the given one; a plain read, so nothing is locked
+    private Integer nextPriority(Connection conn, String queue, String state, Integer below) throws SQLException {
+        String sql = "SELECT MAX(priority) AS priority FROM jobs FORCE INDEX (idx_queue_ready) WHERE queue = ? AND state = ?" +
+                    (below != null ? " AND priority < ?" : "");
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, queue);
+            stmt.setString(2, state);
+            if (below != null) {
+                stmt.setInt(3, below);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                int priority = rs.getInt("priority");
+                return rs.wasNull() ? null : priority;
+            }
+        }
+    }
+
+    private int selectReady(Connection conn, String queue, String state, int priority, int limit, List<ReadyJob> ready) throws SQLException {
+        // Waiting time counts from run_at, so delayed jobs aren't charged for their delay
+        String sql = "SELECT id, priority, run_at, created_at, TIMESTAMPDIFF(MICROSECOND, run_at, NOW(3)) AS queue_wait_us " +
+                    "FROM jobs FORCE INDEX (idx_queue_ready) WHERE queue = ? AND state = ? AND priority = ? AND run_at <= NOW(3) " +
+                    "ORDER BY run_at, created_at LIMIT ? FOR UPDATE SKIP LOCKED";
         
+        int found = 0;
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, queue);
+            stmt.setString(2, state);
+            stmt.setInt(3, priority);
+            stmt.setInt(4, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ready.add(new ReadyJob(rs.getString("id"), rs.getInt("priority"), rs.getTimestamp("run_at"),
+                            rs.getTimestamp("created_at"), rs.getLong("queue_wait_us")));
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    private Map<String, Job> fetchJobs(Connection conn, List<ReadyJob> ready) throws SQLException {
+        Map<String, Job> jobs = new HashMap<>();
+        String sql = "SELECT " + CLAIM_COLUMNS + " FROM jobs WHERE id IN (" + placeholders(ready.size()) + ")";
+        
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < ready.size(); i++) {
+                stmt.setString(i + 1, ready.get(i).id);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                Set<String> columns = columnsOf(rs);
+                while (rs.next()) {
+                    Job job = mapResultSetToJob(rs, columns);
+                    jobs.put(job.getId(), job);
+                }
+            }
+        }
+        return jobs;
+    }
+
+    @Override
+    public int releaseJobs(String workerId, List<Job> jobs) throws SQLException {
+        if (jobs.isEmpty()) {
+            return 0;
+        }
+
+        // Hand claimed-but-unstarted jobs back to the queue
+        String sql = "UPDATE jobs SET state = 'pending', worker_id = NULL, lease_expires_at = NULL, updated_at = NOW() " +
+                    "WHERE worker_id = ? AND state = 'processing' AND id IN (" + placeholders(jobs.size()) + ")";
+        
+        return inTransaction(SQL_RELEASE, conn -> {
+            int released;
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setString(1, workerId);
+                for (int i = 0; i < jobs.size(); i++) {
+                    stmt.setString(i + 2, jobs.get(i).getId());
+                }
+                released = stmt.executeUpdate();
+            }
+            QueueStats.move(conn, "processing", "pending", released);
+            return released;
+        });
+    }
+
+    @Override
+    public void markJobCompleted(String jobId, String workerId, String result) throws SQLException {
+        String sql = "UPDATE jobs SET state = 'completed', result_blob = ?, result_bytes = ?, lease_expires_at = NULL, " +
+                    "updated_at = NOW() WHERE id = ? AND " + OWNED;
+        BlobStore.Cell cell = blobs.encode(utf8(result));
+        
+        transition(jobId, "completed", sql, false, Collections.singletonList(cell), stmt -> {
+            setCell(stmt, 1, cell);
+            stmt.setString(3, jobId);
+            stmt.setString(4, workerId);
+        });
+    }
+
+    @Override
+    public void markJobFailed(String jobId, String workerId, String errorMessage, String failureReason, long nextRetryDelay) throws SQLException {
+        String sql = "UPDATE jobs SET state = 'failed', error_message = ?, failure_reason = ?, lease_expires_at = NULL, " +
+                    "attempts = attempts + 1, next_retry_at = TIMESTAMPADD(SECOND, ?, NOW()), " +
+                    "run_at = next_retry_at, updated_at = NOW() WHERE id = ? AND " + OWNED;
+        
+        int updated = transition(jobId, "failed", sql, false, List.of(), stmt -> {
+            stmt.setString(1, errorMessage);
+            stmt.setString(2, failureReason);
+            stmt.setLong(3, nextRetryDelay);
+            stmt.setString(4, jobId);
+            stmt.setString(5, workerId);
+        });
+        if (updated > 0) {
+            // Wake a worker in this process when the retry comes due
+            notifier.signalAfter(nextRetryDelay * 1000);
+        }
+    }
+
+    @Override
+    public void markJobDead(String jobId, String workerId, String errorMessage, String failureReason) throws SQLException {
+        String sql = "UPDATE jobs SET state = 'dead', error_message = ?, failure_reason = ?, lease_expires_at = NULL, " +
+                    "attempts = attempts + 1, updated_at = NOW() WHERE id = ? AND " + OWNED;
+        
+        transition(jobId, "dead", sql, false, List.of(), stmt -> {
+            stmt.setString(1, errorMessage);
+            stmt.setString(2, failureReason);
+            stmt.setString(3, jobId);
+            stmt.setString(4, workerId);
+        });
+    }
+
+    // Writes a batch of outcomes in one transaction: one CASE update per target state instead of
+    // one transaction per job. Rows no longer processing under the acking worker are skipped,
+    // which makes replaying a batch after an ambiguous failure safe.
+    @Override
+    public void acknowledge(List<JobAck> acks) throws SQLException {
+        if (acks.isEmpty()) {
+            return;
+        }
+        Map<String, JobAck> byId = new LinkedHashMap<>();
+        Map<String, BlobStore.Cell> results = new HashMap<>();
+        for (JobAck ack : acks) {
+            byId.put(ack.getJobId(), ack);
+            if (ack.getState().equals("completed") && ack.getResult() != null) {
+                results.put(ack.getJobId(), blobs.encode(utf8(ack.getResult())));
+            }
+        }
+
+        String policy = dependencyPolicy();
+        int[] released = new int[1];
+
+        List<JobAck> failed = inTransaction(SQL_ACK, conn -> {
+            Map<String, List<JobAck>> byState = new TreeMap<>();
+            // Finished jobs other jobs wait on, by outcome
+            Map<String, List<String>> parents = new HashMap<>();
+            String lockSql = "SELECT id, worker_id, dependents FROM jobs WHERE state = 'processing' AND id IN (" +
+                    placeholders(byId.size()) + ") FOR UPDATE";
+            try (PreparedStatement stmt = conn.prepareStatement(lockSql)) {
+                bindIds(stmt, 1, byId.keySet());
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        JobAck ack = byId.get(rs.getString("id"));
+                        if (ack.getWorkerId().equals(rs.getString("worker_id"))) {
+                            byState.computeIfAbsent(ack.getState(), k -> new ArrayList<>()).add(ack);
+                            if (rs.getInt("dependents") > 0) {
+                                parents.computeIfAbsent(ack.getState(), k -> new ArrayList<>()).add(ack.getJobId());
+                            }
+                        }
+                    }
+                }
+            }
+
+            Map<String, Integer> deltas = new HashMap<>();
+            for (Map.Entry<String, List<JobAck>> entry : byState.entrySet()) {
+                List<JobAck> group = entry.getValue();
+                int updated = acknowledgeGroup(conn, entry.getKey(), group, results);
+                QueueStats.add(deltas, "processing", -updated);
+                QueueStats.add(deltas, entry.getKey(), updated);
+            }
+            QueueStats.apply(conn, deltas);
+            if (!parents.isEmpty()) {
+                released[0] = JobDependencies.settle(conn, parents.getOrDefault("completed", List.of()),
+                        parents.getOrDefault("dead", List.of()), policy);
+                if (released[0] > 0) {
+                    bumpSignal(conn, released[0]);
+                }
+            }
+            return byState.getOrDefault("failed", List.of());
+        });
+        if (released[0] > 0) {
+            notifier.signal(released[0]);
+        }
+
+        // Wake a worker in this process when each retry comes due
+        for (JobAck ack : failed) {
+            notifier.signalAfter(ack.getRetryDelaySeconds() * 1000);
+        }
+    }
+
+    private int acknowledgeGroup(Connection conn, String state, List<JobAck> group, Map<String, BlobStore.Cell> results) throws SQLException {
+        String in = placeholders(group.size());
+        String sql;
+        switch (state) {
+            case "completed":
+                sql = "UPDATE jobs SET state = 'completed', result_blob = " + caseOf(group.size()) + ", " +
+                        "result_bytes = " + caseOf(group.size()) + ", " +
+                        "error_message = COALESCE(" + caseOf(group.size()) + ", error_message), " +
+                        "lease_expires_at = NULL, updated_at = NOW() " +
+                        "WHERE id IN (" + in + ")";
+                break;
+            case "failed":
+                sql = "UPDATE jobs SET state = 'failed', error_message = " + caseOf(group.size()) + ", " +
+                        "failure_reason = " + caseOf(group.size()) + ", lease_expires_at = NULL, attempts = attempts + 1, " +
+                        "next_retry_at = TIMESTAMPADD(SECOND, " + caseOf(group.size()) + ", NOW()), " +
+                        "run_at = next_retry_at, updated_at = NOW() WHERE id IN (" + in + ")";
+                break;
+            default:
+                sql = "UPDATE jobs SET state = 'dead', error_message = " + caseOf(group.size()) + ", " +
+                        "failure_reason = " + caseOf(group.size()) + ", lease_expires_at = NULL, " +
+                        "attempts = attempts + 1, updated_at = NOW() WHERE id IN (" + in + ")";
+        }
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            int index = 1;
+            if (state.equals("completed")) {
+                List<BlobStore.Cell> cells = new ArrayList<>();
+                for (JobAck ack : group) {
+                    BlobStore.Cell cell = results.get(ack.getJobId());
+                    cells.add(cell);
+                    stmt.setString(index++, ack.getJobId());
+                    stmt.setBytes(index++, cell != null ? cell.getBytes() : null);
+                }
+                for (JobAck ack : group) {
+                    BlobStore.Cell cell = results.get(ack.getJobId());
+                    stmt.setString(index++, ack.getJobId());
+                    if (cell != null) {
+                        stmt.setInt(index++, cell.getSize());
+                    } else {
+                        stmt.setNull(index++, Types.INTEGER);
+                    }
+                }
+                // Only set when the result itself couldn't be stored
+                for (JobAck ack : group) {
+                    stmt.setString(index++, ack.getJobId());
+                    stmt.setString(index++, ack.getErrorMessage());
+                }
+                BlobRefs.retain(conn, blobs, cells);
+            } else {
+                for (JobAck ack : group) {
+                    stmt.setString(index++, ack.getJobId());
+                    stmt.setString(index++, ack.getErrorMessage());
+                }
+                for (JobAck ack : group) {
+                    stmt.setString(index++, ack.getJobId());
+                    stmt.setString(index++, ack.getFailureReason());
+                }
+                if (state.equals("failed")) {
+                    for (JobAck ack : group) {
+                        stmt.setString(index++, ack.getJobId());
+                        stmt.setLong(index++, ack.getRetryDelaySeconds());
+                    }
+                }
+            }
+            List<String> ids = new ArrayList<>();
+            for (JobAck ack : group) {
+                ids.add(ack.getJobId());
+            }
+            bindIds(stmt, index, ids);
+            return stmt.executeUpdate();
+        }
+    }
+
+    // CASE id WHEN ? THEN ? ... END, bound as (id, value) pairs
+    static String caseOf(int count) {
+        StringBuilder sb = new StringBuilder("CASE id");
+        for (int i = 0; i < count; i++) {
+            sb.append(" WHEN ? THEN ?");
+        }
+        return sb.append(" END").toString();
+    }
+
+    static void bindIds(PreparedStatement stmt, int start, Collection<String> ids) throws SQLException {
+        int index = start;
+        for (String id : ids) {
+            stmt.setString(index++, id);
+        }
+    }
+
+    @Override
+    public Job getJob(String jobId, boolean withBlobs) throws SQLException {
+        String columns = withBlobs ? JOB_COLUMNS + ", " + BLOB_COLUMNS : JOB_COLUMNS;
+        Job job = findJob("SELECT " + columns + " FROM jobs WHERE id = ?", jobId);
+        if (job == null) {
+            // Finished jobs may have been moved out of the hot table by the archiver
+            job = findJob("SELECT " + columns + " FROM jobs_archive WHERE id = ? ORDER BY archive_id DESC LIMIT 1", jobId);
+        }
+        return job;
+    }
+
+    // Edges of archived jobs are dropped with them
+    @Override
+    public List<String> getDependencies(String jobId) throws SQLException {
+        List<String> parents = new ArrayList<>();
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT parent_id FROM job_deps WHERE child_id = ? ORDER BY parent_id")) {
+            stmt.setString(1, jobId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    parents.add(rs.getString("parent_id"));
+                }
+            }
+        }
+        return parents;
+    }
+
+    // One query for a claimed batch; only called with the jobs whose payload_bytes is set
+    @Override
+    public Map<String, byte[]> readPayloads(Collection<String> jobIds) throws SQLException {
+        Map<String, byte[]> payloads = new HashMap<>();
+        if (jobIds.isEmpty()) {
+            return payloads;
+        }
+        String sql = "SELECT id, payload FROM jobs WHERE id IN (" + placeholders(jobIds.size()) + ")";
+        
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            bindIds(stmt, 1, jobIds);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    payloads.put(rs.getString("id"), decode(rs.getBytes("payload")));
+                }
+            }
+        }
+        return payloads;
+    }
+
+    private Job findJob(String sql, String jobId) throws SQLException {
+        long start = System.nanoTime();
         try (Connection conn = dbManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, jobId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? mapResultSetToJob(rs, columnsOf(rs)) : null;
+            }
+        } finally {
+            SQL_GET_JOB.recordSince(start);
+        }
+    }
+
+    // One keyset page in (created_at, id) descending order, read through idx_list / idx_created
+    @Override
+    public List<Job> fetchPage(String state, Timestamp since, Timestamp afterCreatedAt, String afterId, int size) throws SQLException {
+        List<Job> jobs = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT " + LIST_COLUMNS + " FROM jobs WHERE 1 = 1");
+        if (state != null) {
+            sql.append(" AND state = ?");
+        }
+        if (since != null) {
+            sql.append(" AND created_at >= ?");
+        }
+        if (afterId != null) {
+            sql.append(" AND (created_at < ? OR (created_at = ? AND id < ?))");
+        }
+        sql.append(" ORDER BY created_at DESC, id DESC LIMIT ?");
+
+        long start = System.nanoTime();
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            int index = 1;
+            if (state != null) {
+                stmt.setString(index++, state);
+            }
+            if (since != null) {
+                stmt.setTimestamp(index++, since);
+            }
+            if (afterId != null) {
+                stmt.setTimestamp(index++, afterCreatedAt);
+                stmt.setTimestamp(index++, afterCreatedAt);
+                stmt.setString(index++, afterId);
+            }
+            stmt.setInt(index, size);
+            stmt.setFetchSize(size);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                Set<String> columns = columnsOf(rs);
+                while (rs.next()) {
+                    jobs.add(mapResultSetToJob(rs, columns));
+                }
+            }
+        } finally {
+            SQL_PAGE.recordSince(start);
+        }
+        return jobs;
+    }
+
+    // Served from the striped counters, so the cost doesn't grow with the jobs table
+    @Override
+    public int[] getJobStats() throws SQLException {
+        Map<String, Long> counts = queueStats.read();
+        int[] stats = new int[QueueStats.STATES.length]; // pending, processing, completed, failed, dead, scheduled, blocked
+        for (int i = 0; i < stats.length; i++) {
+            stats[i] = (int) Math.max(0, counts.getOrDefault(QueueStats.STATES[i], 0L));
+        }
+        return stats;
+    }
+
+    @Override
+    public Map<String, Integer> reconcileJobStats() throws SQLException {
+        return queueStats.reconcile();
+    }
+
+    @Override
+    public void retryDeadJob(String jobId) throws SQLException {
+        // A job still waiting on parents goes back to waiting; its edges were never resolved
+        String blockedSql = "UPDATE jobs SET state = 'blocked', attempts = 0, error_message = NULL, failure_reason = NULL, " +
+                    "next_retry_at = NULL, updated_at = NOW() WHERE id = ? AND state = 'dead' AND deps_remaining > 0";
+        if (transition(jobId, "blocked", blockedSql, false, List.of(), stmt -> stmt.setString(1, jobId)) > 0) {
+            return;
+        }
+        String sql = "UPDATE jobs SET state = 'pending', attempts = 0, error_message = NULL, failure_reason = NULL, " +
+                    "next_retry_at = NULL, run_at = NOW(3), updated_at = NOW() WHERE id = ? AND state = 'dead'";
+        
+        int updated = transition(jobId, "pending", sql, true, List.of(), stmt -> stmt.setString(1, jobId));
+        if (updated == 0) {
+            throw new SQLException("Job not found in DLQ or not in dead state");
+        }
+        notifier.signal(1);
+    }
+
+    // Records a heartbeat for every live worker in this process with one statement
+    @Override
+    public void heartbeatWorkers(List<String> workerIds) throws SQLException {
+        if (workerIds.isEmpty()) {
+            return;
+        }
+        StringBuilder sql = new StringBuilder("INSERT INTO workers (worker_id, status) VALUES ");
+        for (int i = 0; i < workerIds.size(); i++) {
+            sql.append(i == 0 ? "(?, 'active')" : ", (?, 'active')");
+        }
+        sql.append(" ON DUPLICATE KEY UPDATE last_heartbeat = NOW(), status = 'active'");
+
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < workerIds.size(); i++) {
+                stmt.setString(i + 1, workerIds.get(i));
+            }
             stmt.executeUpdate();
         }
     }
 
-    public void markJobFailed(String jobId, String errorMessage, long nextRetryDelay) throws SQLException {
-        String sql = "UPDATE jobs SET state = 'failed', error_message = ?, " +
-                    "attempts = attempts + 1, next_retry_at = TIMESTAMPADD(SECOND, ?, NOW()), " +
-                    "updated_at = NOW() WHERE id = ?";
+    @Override
+    public void markWorkersStopped(List<String> workerIds) throws SQLException {
+        if (workerIds.isEmpty()) {
+            return;
+        }
+        String sql = "UPDATE workers SET status = 'stopped' WHERE worker_id IN (" + placeholders(workerIds.size()) + ")";
         
         try (Connection conn = dbManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, errorMessage);
-            stmt.setLong(2, nextRetryDelay);
-            stmt.setString(3, jobId);
+            for (int i = 0; i < workerIds.size(); i++) {
+                stmt.setString(i + 1, workerIds.get(i));
+            }
             stmt.executeUpdate();
         }
     }
 
-    public void markJobDead(String jobId, String errorMessage) throws SQLException {
-        String sql = "UPDATE jobs SET state = 'dead', error_message = ?, " +
-                    "attempts = attempts + 1, updated_at = NOW() WHERE id = ?";
+    // Extends the lease on every job held by the given workers, including buffered ones
+    @Override
+    public int renewLeases(List<String> workerIds) throws SQLException {
+        if (workerIds.isEmpty()) {
+            return 0;
+        }
+        String sql = "UPDATE jobs SET lease_expires_at = TIMESTAMPADD(SECOND, ?, NOW(3)) " +
+                    "WHERE state = 'processing' AND worker_id IN (" + placeholders(workerIds.size()) + ")";
         
+        long start = System.nanoTime();
         try (Connection conn = dbManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, errorMessage);
-            stmt.setString(2, jobId);
-            stmt.executeUpdate();
+            stmt.setInt(1, leaseSeconds());
+            bindIds(stmt, 2, workerIds);
+            return stmt.executeUpdate();
+        } finally {
+            SQL_RENEW.recordSince(start);
         }
     }
 
-    public Job getJob(String jobId) throws SQLException {
-        String sql = "SELECT * FROM jobs WHERE id = ?";
+    // Returns jobs whose owner stopped renewing to the pending queue, batchSize rows at a time
+    @Override
+    public int reapExpiredLeases(int batchSize) throws SQLException {
+        String sql = "UPDATE jobs SET state = 'pending', worker_id = NULL, lease_expires_at = NULL, updated_at = NOW() " +
+                    "WHERE state = 'processing' AND lease_expires_at < NOW(3) ORDER BY lease_expires_at LIMIT ?";
+        int total = 0;
+        int reaped;
+        
+        do {
+            reaped = inTransaction(SQL_REAP, conn -> {
+                int n;
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    stmt.setInt(1, batchSize);
+                    n = stmt.executeUpdate();
+                }
+                if (n > 0) {
+                    QueueStats.move(conn, "processing", "pending", n);
+                    bumpSignal(conn, n);
+                }
+                return n;
+            });
+            total += reaped;
+        } while (reaped == batchSize);
+
+        if (total > 0) {
+            notifier.signal(total);
+        }
+        return total;
+    }
+
+    @Override
+    public int markSilentWorkersLost() throws SQLException {
+        String sql = "UPDATE workers SET status = 'lost' " +
+                    "WHERE status = 'active' AND last_heartbeat < TIMESTAMPADD(SECOND, ?, NOW())";
         
         try (Connection conn = dbManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, jobId);
-            ResultSet rs = stmt.executeQuery();
-            
-            if (rs.next()) {
-                Job job = mapResultSetToJob(rs);
-                rs.close();
-                return job;
+            stmt.setInt(1, -leaseSeconds());
+            return stmt.executeUpdate();
+        }
+    }
+
+    @Override
+    public List<String> listActiveWorkers() throws SQLException {
+        List<String> ids = new ArrayList<>();
+        String sql = "SELECT worker_id FROM workers " +
+                    "WHERE status = 'active' AND last_heartbeat >= TIMESTAMPADD(SECOND, ?, NOW()) ORDER BY worker_id";
+        
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, -leaseSeconds());
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getString("worker_id"));
+                }
             }
-            rs.close();
-            return null;
         }
+        return ids;
     }
 
-    public List<Job> listJobs(String state) throws SQLException {
-        List<Job> jobs = new ArrayList<>();
-        String sql = state == null ? "SELECT * FROM jobs ORDER BY created_at DESC" :
-                                    "SELECT * FROM jobs WHERE state = ? ORDER BY created_at DESC";
+    // The database's clock plus seconds; scheduled jobs are loaded up to this bound
+    public Timestamp windowEnd(int seconds) throws SQLException {
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT TIMESTAMPADD(SECOND, ?, NOW(3))")) {
+            stmt.setInt(1, seconds);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return rs.getTimestamp(1);
+            }
+        }
+    }
+
+    // Scheduled jobs due before until, from run_at >= from (all of them when from is null), in due order.
+    // dueInMicros is measured against the database clock, so the caller never compares wall clocks.
+    List<DueJob> loadScheduled(Timestamp from, Timestamp until, int limit) throws SQLException {
+        List<DueJob> due = new ArrayList<>();
+        String sql = "SELECT id, run_at, TIMESTAMPDIFF(MICROSECOND, NOW(3), run_at) AS due_in_us " +
+                    "FROM jobs FORCE INDEX (idx_due) WHERE state = 'scheduled' AND run_at < ?" +
+                    (from != null ? " AND run_at >= ?" : "") + " ORDER BY run_at LIMIT ?";
         
         try (Connection conn = dbManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
-            if (state != null) {
-                stmt.setString(1, state);
+            int index = 1;
+            stmt.setTimestamp(index++, until);
+            if (from != null) {
+                stmt.setTimestamp(index++, from);
             }
-            
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                jobs.add(mapResultSetToJob(rs));
+            stmt.setInt(index, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    due.add(new DueJob(rs.getString("id"), rs.getTimestamp("run_at"), rs.getLong("due_in_us")));
+                }
             }
-            rs.close();
         }
+        return due;
+    }
+
+    static class DueJob {
+        final String id;
+        final Timestamp runAt;
+        final long dueInMicros;
+
+        DueJob(String id, Timestamp runAt, long dueInMicros) {
+            this.id = id;
+            this.runAt = runAt;
+            this.dueInMicros = dueInMicros;
+        }
+    }
+
+    // Moves due scheduled jobs to pending and wakes workers. Jobs the database clock says
+    // aren't due yet are left alone, so an early timer can't run anything ahead of time.
+    public int promoteScheduled(List<String> ids) throws SQLException {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        String sql = "UPDATE jobs SET state = 'pending', updated_at = NOW() " +
+                    "WHERE state = 'scheduled' AND run_at <= NOW(3) AND id IN (" + placeholders(ids.size()) + ")";
         
-        return jobs;
+        int promoted = inTransaction(SQL_PROMOTE, conn -> {
+            int n;
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                for (int i = 0; i < ids.size(); i++) {
+                    stmt.setString(i + 1, ids.get(i));
+                }
+                n = stmt.executeUpdate();
+            }
+            if (n > 0) {
+                QueueStats.move(conn, "scheduled", "pending", n);
+                bumpSignal(conn, n);
+            }
+            return n;
+        });
+        if (promoted > 0) {
+            notifier.signal(promoted);
+        }
+        return promoted;
     }
 
-    public int[] getJobStats() throws SQLException {
-        int[] stats = new int[5]; // pending, processing, completed, failed, dead
-        String sql = "SELECT state, COUNT(*) as count FROM jobs GROUP BY state";
+    public long readScheduleSignal() throws SQLException {
+        String sql = "SELECT COALESCE(SUM(seq), 0) AS seq FROM queue_signal WHERE id = " + SCHEDULE_SIGNAL;
+        
+        try (Connection conn = dbManager.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? rs.getLong("seq") : 0;
+        }
+    }
+
+    // Queue names in the hot table; a loose index scan over the leading column of idx_queue_ready
+    @Override
+    public List<String> listQueues() throws SQLException {
+        List<String> queues = new ArrayList<>();
+        String sql = "SELECT DISTINCT queue FROM jobs ORDER BY queue";
         
         try (Connection conn = dbManager.getConnection();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
-            
             while (rs.next()) {
-                String state = rs.getString("state");
-                int count = rs.getInt("count");
-                
-                switch (state) {
-                    case "pending": stats[0] = count; break;
-                    case "processing": stats[1] = count; break;
-                    case "completed": stats[2] = count; break;
-                    case "failed": stats[3] = count; break;
-                    case "dead": stats[4] = count; break;
+                queues.add(rs.getString("queue"));
+            }
+        }
+        return queues;
+    }
+
+    // A covering range of idx_queue_ready per queue, stopped at cap so a deep backlog stays cheap
+    @Override
+    public long countPending(Collection<String> queues, long cap) throws SQLException {
+        String sql = "SELECT COUNT(*) AS n FROM (SELECT 1 FROM jobs FORCE INDEX (idx_queue_ready) " +
+                    "WHERE queue = ? AND state = 'pending' LIMIT ?) capped";
+        long total = 0;
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (String queue : queues) {
+                if (total >= cap) {
+                    break;
+                }
+                stmt.setString(1, queue);
+                stmt.setLong(2, cap - total);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        total += rs.getLong("n");
+                    }
                 }
             }
         }
-        
-        return stats;
+        return total;
     }
 
-    public void retryDeadJob(String jobId) throws SQLException {
-        String sql = "UPDATE jobs SET state = 'pending', attempts = 0, error_message = NULL, " +
-                    "next_retry_at = NULL, updated_at = NOW() WHERE id = ? AND state = 'dead'";
+    private String dependencyPolicy() {
+        return DependencyGraph.failurePolicy(configManager.getConfigString("dependency-failure-policy", DependencyGraph.POLICY_CANCEL));
+    }
+
+    private int leaseSeconds() {
+        return Math.max(5, configManager.getConfigInt("lease-seconds", 60));
+    }
+
+    @Override
+    public long readSignalSequence() throws SQLException {
+        // Each stripe only grows, so the sum changes whenever any of them does
+        String sql = "SELECT COALESCE(SUM(seq), 0) AS seq FROM queue_signal WHERE id = " + READY_SIGNAL;
         
+        long start = System.nanoTime();
         try (Connection conn = dbManager.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, jobId);
-            int updated = stmt.executeUpdate();
-            if (updated == 0) {
-                throw new SQLException("Job not found in DLQ or not in dead state");
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? rs.getLong("seq") : 0;
+        } finally {
+            SQL_SIGNAL.recordSince(start);
+        }
+    }
+
+    // Lets workers in other processes know new jobs are claimable
+    private void bumpSignal(Connection conn, int jobCount) throws SQLException {
+        bump(conn, READY_SIGNAL, jobCount);
+    }
+
+    // Adds to a random stripe of the signal, as QueueStats does, so concurrent producers rarely
+    // wait on each other's row lock. Runs in the caller's transaction and fails with it.
+    private static void bump(Connection conn, int signal, int amount) throws SQLException {
+        String sql = "INSERT INTO queue_signal (id, stripe, seq) VALUES (?, ?, ?) ON DUPLICATE KEY UPDATE seq = seq + VALUES(seq)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, signal);
+            stmt.setInt(2, ThreadLocalRandom.current().nextInt(SIGNAL_STRIPES));
+            stmt.setLong(3, amount);
+            stmt.executeUpdate();
+        }
+    }
+
+    private interface Work<T> {
+        T run(Connection conn) throws SQLException;
+    }
+
+    private interface Binder {
+        void bind(PreparedStatement stmt) throws SQLException;
+    }
+
+    private <T> T inTransaction(Histogram timer, Work<T> work) throws SQLException {
+        long start = System.nanoTime();
+        Connection conn = null;
+        try {
+            conn = dbManager.getConnection();
+            conn.setAutoCommit(false);
+            T result = work.run(conn);
+            conn.commit();
+            return result;
+        } catch (SQLException e) {
+            if (conn != null) {
+                try {
+                    conn.rollback();
+                } catch (SQLException ex) {
+                    // Ignore
+                }
+            }
+            throw e;
+        } finally {
+            if (conn != null) {
+                try {
+                    conn.setAutoCommit(true);
+                    conn.close();
+                } catch (SQLException e) {
+                    // Ignore
+                }
+            }
+            timer.recordSince(start);
+        }
+    }
+
+    // Locks the job row to learn its current state, runs the update and moves the job between
+    // counters, all in one transaction. cells are the spilled blobs the update stores. A job
+    // that completes or dies settles the jobs depending on it in the same transaction.
+    private int transition(String jobId, String toState, String sql, boolean wakeWorkers,
+                           List<BlobStore.Cell> cells, Binder binder) throws SQLException {
+        int[] released = new int[1];
+        int result = inTransaction(SQL_TRANSITION, conn -> {
+            String fromState = null;
+            int dependents = 0;
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT state, dependents FROM jobs WHERE id = ? FOR UPDATE")) {
+                stmt.setString(1, jobId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        fromState = rs.getString("state");
+                        dependents = rs.getInt("dependents");
+                    }
+                }
+            }
+            if (fromState == null) {
+                return 0;
+            }
+
+            int updated;
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                binder.bind(stmt);
+                updated = stmt.executeUpdate();
             }
+            if (updated > 0) {
+                BlobRefs.retain(conn, blobs, cells);
+                QueueStats.move(conn, fromState, toState, updated);
+                if (wakeWorkers) {
+                    bumpSignal(conn, updated);
+                }
+                if (dependents > 0 && (toState.equals("completed") || toState.equals("dead"))) {
+                    List<String> parent = Collections.singletonList(jobId);
+                    released[0] = JobDependencies.settle(conn, toState.equals("completed") ? parent : List.of(),
+                            toState.equals("dead") ? parent : List.of(), dependencyPolicy());
+                    if (released[0] > 0) {
+                        bumpSignal(conn, released[0]);
+                    }
+                }
+            }
+            return updated;
+        });
+        if (released[0] > 0) {
+            notifier.signal(released[0]);
         }
+        return result;
     }
 
-    private Job mapResultSetToJob(ResultSet rs) throws SQLException {
+    // Lets dispatchers know scheduled jobs were added, possibly inside their loaded window
+    void bumpScheduleSignal(Connection conn) throws SQLException {
+        bump(conn, SCHEDULE_SIGNAL, 1);
+    }
+
+    // Maps whichever job columns the query projected; absent ones keep their defaults.
+    // Package-private, like columnsOf, for the JMH benchmarks in bench/
+    Job mapResultSetToJob(ResultSet rs, Set<String> columns) throws SQLException {
         Job job = new Job();
         job.setId(rs.getString("id"));
         job.setCommand(rs.getString("command"));
@@ -208,9 +1191,109 @@ public class JobQueue {
         job.setAttempts(rs.getInt("attempts"));
         job.setMaxRetries(rs.getInt("max_retries"));
         job.setCreatedAt(rs.getTimestamp("created_at"));
-        job.setUpdatedAt(rs.getTimestamp("updated_at"));
-        job.setNextRetryAt(rs.getTimestamp("next_retry_at"));
-        job.setErrorMessage(rs.getString("error_message"));
+        if (columns.contains("updated_at")) {
+            job.setUpdatedAt(rs.getTimestamp("updated_at"));
+        }
+        if (columns.contains("next_retry_at")) {
+            job.setNextRetryAt(rs.getTimestamp("next_retry_at"));
+        }
+        if (columns.contains("run_at")) {
+            job.setRunAt(rs.getTimestamp("run_at"));
+        }
+        if (columns.contains("error_message")) {
+            job.setErrorMessage(rs.getString("error_message"));
+        }
+        if (columns.contains("worker_id")) {
+            job.setWorkerId(rs.getString("worker_id"));
+        }
+        if (columns.contains("result_blob")) {
+            byte[] result = decode(rs.getBytes("result_blob"));
+            // Rows finished before results became blobs kept them in the text column
+            job.setResult(result != null ? new String(result, StandardCharsets.UTF_8) : rs.getString("result"));
+        }
+        if (columns.contains("payload")) {
+            job.setPayload(decode(rs.getBytes("payload")));
+        }
+        if (columns.contains("payload_bytes")) {
+            job.setPayloadBytes(intOrNone(rs, "payload_bytes"));
+        }
+        if (columns.contains("result_bytes")) {
+            job.setResultBytes(intOrNone(rs, "result_bytes"));
+        }
+        if (columns.contains("timeout_seconds")) {
+            job.setTimeoutSeconds(rs.getInt("timeout_seconds"));
+        }
+        if (columns.contains("failure_reason")) {
+            job.setFailureReason(rs.getString("failure_reason"));
+        }
+        if (columns.contains("queue")) {
+            job.setQueue(rs.getString("queue"));
+        }
+        if (columns.contains("priority")) {
+            job.setPriority(rs.getInt("priority"));
+        }
+        if (columns.contains("deps_remaining")) {
+            job.setDepsRemaining(rs.getInt("deps_remaining"));
+        }
         return job;
     }
+
+    private byte[] decode(byte[] cell) throws SQLException {
+        try {
+            return blobs.decode(cell);
+        } catch (IOException e) {
+            throw new SQLException("Blob store read failed: " + e.getMessage(), e);
+        }
+    }
+
+    private static int intOrNone(ResultSet rs, String column) throws SQLException {
+        int value = rs.getInt(column);
+        return rs.wasNull() ? -1 : value;
+    }
+
+    // Binds a cell and its original size to two consecutive parameters
+    private static void setCell(PreparedStatement stmt, int index, BlobStore.Cell cell) throws SQLException {
+        if (cell == null) {
+            stmt.setNull(index, Types.BLOB);
+            stmt.setNull(index + 1, Types.INTEGER);
+        } else {
+            stmt.setBytes(index, cell.getBytes());
+            stmt.setInt(index + 1, cell.getSize());
+        }
+    }
+
+    private static byte[] utf8(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    static Set<String> columnsOf(ResultSet rs) throws SQLException {
+        ResultSetMetaData meta = rs.getMetaData();
+        Set<String> columns = new HashSet<>();
+        for (int i = 1; i <= meta.getColumnCount(); i++) {
+            columns.add(meta.getColumnLabel(i).toLowerCase());
+        }
+        return columns;
+    }
+
+    // Binds the two parameters of RUN_AT_VALUE: an absolute time, or a delay from the database's now
+    private static void setRunAt(PreparedStatement stmt, int index, Job job) throws SQLException {
+        stmt.setTimestamp(index, job.getRunAt());
+        stmt.setLong(index + 1, job.getDelayMillis() * 1000);
+    }
+
+    private static void setTimeout(PreparedStatement stmt, int index, Job job) throws SQLException {
+        if (job.getTimeoutSeconds() > 0) {
+            stmt.setInt(index, job.getTimeoutSeconds());
+        } else {
+            stmt.setNull(index, Types.INTEGER);
+        }
+    }
+
+    static String placeholders(int count) {
+        StringBuilder sb = new StringBuilder(count * 3);
+        for (int i = 0; i < count; i++) {
+            sb.append(i == 0 ? "?" : ", ?");
+        }
+        return sb.toString();
+    }
 }
@@ -0,0 +1,105 @@
+package com.queuectl.core;
+
+import com.queuectl.models.Job;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+// Everything workers and the CLI need from job storage. JobQueue is the MySQL implementation;
+// EmbeddedJobStore keeps jobs in a local append-only log for single-node deployments.
+// Methods throw SQLException on both so callers handle storage errors one way.
+public interface JobStore {
+    void enqueue(Job job) throws SQLException;
+
+    // Returns the ids that already existed and were skipped
+    List<String> enqueueBatch(List<Job> jobs) throws SQLException;
+
+    default Job dequeueJob(String workerId) throws SQLException {
+        List<Job> jobs = dequeueBatch(workerId, Job.DEFAULT_QUEUE, 1);
+        return jobs.isEmpty() ? null : jobs.get(0);
+    }
+
+    default List<Job> dequeueBatch(String workerId, int limit) throws SQLException {
+        return dequeueBatch(workerId, Job.DEFAULT_QUEUE, limit);
+    }
+
+    List<Job> dequeueBatch(String workerId, String queue, int limit) throws SQLException;
+
+    int releaseJobs(String workerId, List<Job> jobs) throws SQLException;
+
+    // The mark methods change a job only while it is processing under workerId, so a worker whose
+    // lease was reaped can't overwrite the outcome of someone else's claim on the same job
+    void markJobCompleted(String jobId, String workerId, String result) throws SQLException;
+
+    void markJobFailed(String jobId, String workerId, String errorMessage, String failureReason, long nextRetryDelay) throws SQLException;
+
+    void markJobDead(String jobId, String workerId, String errorMessage, String failureReason) throws SQLException;
+
+    void retryDeadJob(String jobId) throws SQLException;
+
+    // Writes a batch of run outcomes. Only jobs still processing under the acking worker are
+    // changed, so writing the same batch twice is harmless.
+    default void acknowledge(List<JobAck> acks) throws SQLException {
+        for (JobAck ack : acks) {
+            switch (ack.getState()) {
+                case "completed":
+                    markJobCompleted(ack.getJobId(), ack.getWorkerId(), ack.getResult());
+                    break;
+                case "failed":
+                    markJobFailed(ack.getJobId(), ack.getWorkerId(), ack.getErrorMessage(), ack.getFailureReason(),
+                            ack.getRetryDelaySeconds());
+                    break;
+                default:
+                    markJobDead(ack.getJobId(), ack.getWorkerId(), ack.getErrorMessage(), ack.getFailureReason());
+            }
+        }
+    }
+
+    // Without the payload and result, which can be large; their sizes are always filled in
+    default Job getJob(String jobId) throws SQLException {
+        return getJob(jobId, false);
+    }
+
+    Job getJob(String jobId, boolean withBlobs) throws SQLException;
+
+    // Payloads of the given jobs by id, for workers about to run them
+    Map<String, byte[]> readPayloads(Collection<String> jobIds) throws SQLException;
+
+    // The jobs this one was enqueued to wait for; empty if none, or once it has been archived
+    List<String> getDependencies(String jobId) throws SQLException;
+
+    default JobCursor listJobs(String state, Timestamp since, String after, int limit) {
+        return new JobCursor(this, state, since, after, limit);
+    }
+
+    // One page in (created_at, id) descending order, for JobCursor
+    List<Job> fetchPage(String state, Timestamp since, Timestamp afterCreatedAt, String afterId, int size) throws SQLException;
+
+    // pending, processing, completed, failed, dead, scheduled, blocked
+    int[] getJobStats() throws SQLException;
+
+    // Returns the corrected drift, or null if another process is already reconciling
+    Map<String, Integer> reconcileJobStats() throws SQLException;
+
+    List<String> listQueues() throws SQLException;
+
+    // Pending jobs in the given queues, counting no further than cap
+    long countPending(Collection<String> queues, long cap) throws SQLException;
+
+    long readSignalSequence() throws SQLException;
+
+    void heartbeatWorkers(List<String> workerIds) throws SQLException;
+
+    void markWorkersStopped(List<String> workerIds) throws SQLException;
+
+    int renewLeases(List<String> workerIds) throws SQLException;
+
+    int reapExpiredLeases(int batchSize) throws SQLException;
+
+    int markSilentWorkersLost() throws SQLException;
+
+    List<String> listActiveWorkers() throws SQLException;
+}
@@ -0,0 +1,48 @@
+package com.queuectl.core;
+
+import com.queuectl.db.DatabaseManager;
+import com.queuectl.store.EmbeddedJobStore;
+
+// Picks the storage backend from db.properties:
+//   store.type  = mysql (default) | embedded
+//   store.path  = log file for the embedded store (default queuectl.log)
+//   store.fsync = always | interval (default) | never
+//   store.fsync-interval-ms     = how often interval/never write the log (default 1000)
+//   store.group-commit-ms       = extra time an always-group stays open for more writers (default 0)
+//   store.group-commit-records  = close the group early at this many records (default 1000)
+public class JobStores {
+    private static EmbeddedJobStore embedded;
+
+    private JobStores() {
+    }
+
+    public static synchronized JobStore get() {
+        if (!isEmbedded()) {
+            return new JobQueue();
+        }
+        if (embedded == null) {
+            DatabaseManager db = DatabaseManager.getInstance();
+            embedded = new EmbeddedJobStore(db.getProperty("store.path", "queuectl.log"),
+                    db.getProperty("store.fsync", "interval"),
+                    Integer.parseInt(db.getProperty("store.fsync-interval-ms", "1000")),
+                    Integer.parseInt(db.getProperty("store.group-commit-ms", "0")),
+                    Integer.parseInt(db.getProperty("store.group-commit-records", "1000")));
+        }
+        return embedded;
+    }
+
+    public static boolean isEmbedded() {
+        return DatabaseManager.getInstance().getProperty("store.type", "mysql").trim().equalsIgnoreCase("embedded");
+    }
+
+    // The embedded store, or null when jobs live in MySQL
+    public static EmbeddedJobStore embedded() {
+        return isEmbedded() ? (EmbeddedJobStore) get() : null;
+    }
+
+    public static synchronized void shutdown() {
+        if (embedded != null) {
+            embedded.close();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.queuectl.core;
+
+import java.util.Arrays;
+
+// Keeps the most recent samples in a fixed ring and reports percentiles over them
+public class LatencyStats {
+    private final String name;
+    private final long[] samples;
+    private long count;
+
+    public LatencyStats(String name, int capacity) {
+        this.name = name;
+        this.samples = new long[capacity];
+    }
+
+    public synchronized void record(long micros) {
+        samples[(int) (count % samples.length)] = micros;
+        count++;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long percentile(double p) {
+        int size = (int) Math.min(count, samples.length);
+        if (size == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(p / 100.0 * size) - 1;
+        return sorted[Math.max(0, Math.min(index, size - 1))];
+    }
+
+    public String summary() {
+        return String.format("%s: n=%d p50=%.1fms p99=%.1fms max=%.1fms", name, getCount(),
+                percentile(50) / 1000.0, percentile(99) / 1000.0, percentile(100) / 1000.0);
+    }
+}
@@ -0,0 +1,65 @@
+package com.queuectl.core;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Heartbeats this process's workers, renews their job leases and reaps leases that
+// crashed workers left behind. Each round is a handful of statements, not one per job.
+public class LeaseKeeper {
+    private static final int REAP_BATCH_SIZE = 500;
+
+    private final JobStore jobQueue;
+    private final Supplier<List<String>> workerIds;
+    private ScheduledExecutorService scheduler;
+
+    public LeaseKeeper(JobStore jobQueue, Supplier<List<String>> workerIds) {
+        this.jobQueue = jobQueue;
+        this.workerIds = workerIds;
+    }
+
+    public synchronized void start(int leaseSeconds) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "lease-keeper");
+            t.setDaemon(true);
+            return t;
+        });
+        // Renew three times per lease so one slow round doesn't cost a lease
+        long intervalMillis = Math.max(1000, leaseSeconds * 1000L / 3);
+        scheduler.scheduleWithFixedDelay(this::tick, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop(List<String> stoppedWorkerIds) {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdownNow();
+        scheduler = null;
+        try {
+            jobQueue.markWorkersStopped(stoppedWorkerIds);
+        } catch (Exception e) {
+            System.err.println("Error recording stopped workers: " + e.getMessage());
+        }
+    }
+
+    private void tick() {
+        try {
+            List<String> ids = workerIds.get();
+            jobQueue.heartbeatWorkers(ids);
+            jobQueue.renewLeases(ids);
+
+            int reaped = jobQueue.reapExpiredLeases(REAP_BATCH_SIZE);
+            if (reaped > 0) {
+                System.out.println("Returned " + reaped + " job(s) with expired leases to the queue");
+            }
+            jobQueue.markSilentWorkersLost();
+        } catch (Exception e) {
+            System.err.println("Lease keeper error: " + e.getMessage());
+        }
+    }
+}
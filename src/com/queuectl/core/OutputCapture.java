@@ -0,0 +1,191 @@
+package com.queuectl.core;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Drains a child process's output on a shared pool thread. Keeps only the last capBytes
+// in memory, optionally spills everything to a log file and echoes a rate-limited
+// number of lines to the console.
+public class OutputCapture {
+    private static final int MAX_ECHO_LINE = 1000;
+    private static final AtomicInteger drainThreads = new AtomicInteger();
+    private static final ExecutorService drainers = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "output-drain-" + drainThreads.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+    private static final EchoLimiter echoLimiter = new EchoLimiter();
+
+    private final String workerId;
+    private final byte[] ring;
+    private final Path logFile;
+    private final boolean echo;
+    private long totalBytes;
+    private Future<?> drain;
+
+    public OutputCapture(String workerId, int capBytes, Path logFile, boolean echo, int echoLinesPerSec) {
+        this.workerId = workerId;
+        this.ring = new byte[Math.max(1024, capBytes)];
+        this.logFile = logFile;
+        this.echo = echo;
+        echoLimiter.setRate(echoLinesPerSec);
+    }
+
+    public void start(InputStream in) {
+        drain = drainers.submit(() -> drain(in));
+    }
+
+    // Writes a job's payload to the child's stdin from the same pool and closes it, so a child
+    // that reads its input to EOF finishes and one that never reads it can't block the worker
+    public static void feed(OutputStream stdin, byte[] input) {
+        drainers.submit(() -> {
+            try (OutputStream out = stdin) {
+                out.write(input);
+            } catch (IOException e) {
+                // The child exited or closed stdin without reading everything
+            }
+        });
+    }
+
+    private void drain(InputStream in) {
+        byte[] chunk = new byte[8192];
+        StringBuilder line = echo ? new StringBuilder() : null;
+
+        try (InputStream input = in;
+             OutputStream log = openLog()) {
+            int n;
+            while ((n = input.read(chunk)) != -1) {
+                append(chunk, n);
+                if (log != null) {
+                    log.write(chunk, 0, n);
+                }
+                if (line != null) {
+                    echoLines(chunk, n, line);
+                }
+            }
+            if (line != null && line.length() > 0) {
+                echoLine(line);
+            }
+        } catch (IOException e) {
+            // The process went away or the log could not be written; keep what we have
+        }
+    }
+
+    private OutputStream openLog() throws IOException {
+        if (logFile == null) {
+            return null;
+        }
+        Files.createDirectories(logFile.getParent());
+        return new BufferedOutputStream(Files.newOutputStream(logFile));
+    }
+
+    private synchronized void append(byte[] chunk, int length) {
+        int offset = 0;
+        if (length > ring.length) {
+            offset = length - ring.length;
+            totalBytes += offset;
+            length = ring.length;
+        }
+        int pos = (int) (totalBytes % ring.length);
+        int first = Math.min(length, ring.length - pos);
+        System.arraycopy(chunk, offset, ring, pos, first);
+        System.arraycopy(chunk, offset + first, ring, 0, length - first);
+        totalBytes += length;
+    }
+
+    private void echoLines(byte[] chunk, int length, StringBuilder line) {
+        String text = new String(chunk, 0, length, StandardCharsets.UTF_8);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                echoLine(line);
+            } else if (line.length() < MAX_ECHO_LINE) {
+                line.append(c);
+            }
+        }
+    }
+
+    private void echoLine(StringBuilder line) {
+        if (echoLimiter.tryAcquire()) {
+            long suppressed = echoLimiter.takeSuppressed();
+            if (suppressed > 0) {
+                System.out.println("[" + workerId + "] ... " + suppressed + " output line(s) suppressed");
+            }
+            System.out.println("[" + workerId + "] " + line);
+        }
+        line.setLength(0);
+    }
+
+    // Waits for the drain to reach end of stream and returns the captured tail
+    public String awaitTail(long timeoutMillis) {
+        if (drain != null) {
+            try {
+                drain.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // A grandchild may still hold the pipe open; return what we have so far
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                // Drain failures are already swallowed in drain()
+            }
+        }
+        return tail();
+    }
+
+    public synchronized String tail() {
+        int size = (int) Math.min(totalBytes, ring.length);
+        byte[] ordered = new byte[size];
+        int start = (int) ((totalBytes - size) % ring.length);
+        int first = Math.min(size, ring.length - start);
+        System.arraycopy(ring, start, ordered, 0, first);
+        System.arraycopy(ring, 0, ordered, first, size - first);
+        String text = new String(ordered, StandardCharsets.UTF_8);
+        return totalBytes > size ? "...(truncated)\n" + text : text;
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    // Token bucket shared by all captures so chatty jobs can't flood the console
+    private static class EchoLimiter {
+        private long ratePerSec = 50;
+        private double tokens = 50;
+        private long lastRefill = System.nanoTime();
+        private long suppressed;
+
+        synchronized void setRate(int linesPerSec) {
+            this.ratePerSec = Math.max(0, linesPerSec);
+        }
+
+        synchronized boolean tryAcquire() {
+            long now = System.nanoTime();
+            tokens = Math.min(ratePerSec, tokens + (now - lastRefill) / 1e9 * ratePerSec);
+            lastRefill = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return true;
+            }
+            suppressed++;
+            return false;
+        }
+
+        synchronized long takeSuppressed() {
+            long count = suppressed;
+            suppressed = 0;
+            return count;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.queuectl.core;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// Exponential idle-poll delay with jitter so idle workers spread their polls out
+public class PollBackoff {
+    private final long minMillis;
+    private final long maxMillis;
+    private long current;
+
+    public PollBackoff(long minMillis, long maxMillis) {
+        this.minMillis = Math.max(1, minMillis);
+        this.maxMillis = Math.max(this.minMillis, maxMillis);
+        this.current = this.minMillis;
+    }
+
+    public long nextDelay() {
+        long delay = current;
+        current = Math.min(current * 2, maxMillis);
+        // Jitter between half and the full delay
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    public void reset() {
+        current = minMillis;
+    }
+}
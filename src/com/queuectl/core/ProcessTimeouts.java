@@ -0,0 +1,68 @@
+package com.queuectl.core;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// One timer thread enforces job timeouts for every worker in the JVM
+public class ProcessTimeouts {
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "job-timeout-timer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private ProcessTimeouts() {
+    }
+
+    public static Watch watch(Process process, int timeoutSeconds) {
+        Watch watch = new Watch();
+        if (timeoutSeconds > 0) {
+            watch.future = timer.schedule(() -> watch.expire(() -> killTree(process.toHandle())),
+                    timeoutSeconds, TimeUnit.SECONDS);
+        }
+        return watch;
+    }
+
+    // For in-process handlers: interrupts the thread once the timeout passes.
+    // After cancel() returns no interrupt can arrive any more, so the caller can clear a pending one.
+    public static Watch watch(Thread thread, int timeoutSeconds) {
+        Watch watch = new Watch();
+        if (timeoutSeconds > 0) {
+            watch.future = timer.schedule(() -> watch.expire(thread::interrupt), timeoutSeconds, TimeUnit.SECONDS);
+        }
+        return watch;
+    }
+
+    public static void killTree(ProcessHandle root) {
+        // Collect descendants before killing the root; once it dies they get reparented and vanish from the tree
+        root.descendants().forEach(ProcessHandle::destroyForcibly);
+        root.destroyForcibly();
+    }
+
+    public static class Watch {
+        private final AtomicBoolean expired = new AtomicBoolean();
+        private ScheduledFuture<?> future;
+        private boolean cancelled;
+
+        private synchronized void expire(Runnable action) {
+            if (!cancelled) {
+                expired.set(true);
+                action.run();
+            }
+        }
+
+        public boolean isExpired() {
+            return expired.get();
+        }
+
+        public synchronized void cancel() {
+            cancelled = true;
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.queuectl.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Decides which queue a worker claims from next using smooth weighted round-robin, so a
+// queue with weight 5 gets five turns for every turn of a weight-1 queue, interleaved rather
+// than in bursts. Queues without work are skipped, so no capacity sits idle.
+// With no explicit subscription, every queue in the jobs table is served with weight 1.
+public class QueueScheduler {
+    private static final long DISCOVER_INTERVAL_MS = 5000;
+    private static final long IDLE_DISCOVER_INTERVAL_MS = 1000;
+
+    private final JobStore jobQueue;
+    private final boolean discover;
+    private final Map<String, Integer> weights;
+    private final Map<String, Integer> current;
+    private long discoveredAt;
+
+    private QueueScheduler(JobStore jobQueue, Map<String, Integer> weights) {
+        this.jobQueue = jobQueue;
+        this.discover = weights.isEmpty();
+        this.weights = weights;
+        this.current = new HashMap<>();
+    }
+
+    // spec is "name[:weight],..." such as "critical:5,default:1"; blank means all queues
+    public static QueueScheduler parse(String spec) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        if (spec != null) {
+            for (String part : spec.split(",")) {
+                part = part.trim();
+                if (part.isEmpty()) {
+                    continue;
+                }
+                int sep = part.indexOf(':');
+                String name = sep < 0 ? part : part.substring(0, sep).trim();
+                int weight = sep < 0 ? 1 : Integer.parseInt(part.substring(sep + 1).trim());
+                if (name.isEmpty() || weight <= 0) {
+                    throw new IllegalArgumentException("Invalid queue subscription: " + part);
+                }
+                weights.put(name, weight);
+            }
+        }
+        return new QueueScheduler(JobStores.get(), weights);
+    }
+
+    // The queue whose turn it is first, then the others as fallbacks in order of how overdue they are
+    public synchronized List<String> nextOrder() {
+        refresh(DISCOVER_INTERVAL_MS);
+        List<String> order = new ArrayList<>(weights.size());
+        if (weights.isEmpty()) {
+            return order;
+        }
+
+        int total = 0;
+        String pick = null;
+        for (Map.Entry<String, Integer> entry : weights.entrySet()) {
+            int value = current.merge(entry.getKey(), entry.getValue(), Integer::sum);
+            total += entry.getValue();
+            if (pick == null || value > current.get(pick)) {
+                pick = entry.getKey();
+            }
+        }
+        current.merge(pick, -total, Integer::sum);
+
+        order.add(pick);
+        List<String> rest = new ArrayList<>(weights.keySet());
+        rest.remove(pick);
+        rest.sort((a, b) -> Integer.compare(current.get(b), current.get(a)));
+        order.addAll(rest);
+        return order;
+    }
+
+    // Called after a round found nothing anywhere, so new queues are picked up sooner
+    public synchronized void markIdle() {
+        refresh(IDLE_DISCOVER_INTERVAL_MS);
+    }
+
+    private void refresh(long maxAgeMs) {
+        long now = System.currentTimeMillis();
+        if (!discover || now - discoveredAt < maxAgeMs) {
+            return;
+        }
+        discoveredAt = now;
+        try {
+            List<String> queues = jobQueue.listQueues();
+            weights.keySet().retainAll(queues);
+            current.keySet().retainAll(queues);
+            for (String queue : queues) {
+                weights.putIfAbsent(queue, 1);
+            }
+        } catch (Exception e) {
+            System.err.println("Error listing queues: " + e.getMessage());
+        }
+    }
+
+    // The queues named by the subscription; empty when every queue is served
+    public synchronized List<String> subscribed() {
+        return discover ? new ArrayList<>() : new ArrayList<>(weights.keySet());
+    }
+
+    public synchronized String describe() {
+        return discover ? "all queues" : weights.toString();
+    }
+}
@@ -0,0 +1,200 @@
+package com.queuectl.core;
+
+import com.queuectl.db.DatabaseManager;
+
+import java.sql.*;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Striped per-state job counters in queue_stats. Writers add deltas inside their own
+// transactions; readers sum the stripes; a periodic reconciliation fixes any drift.
+public class QueueStats {
+    public static final String[] STATES = {"pending", "processing", "completed", "failed", "dead", "scheduled", "blocked"};
+    private static final int STRIPES = 16;
+    private static final String RECONCILE_LOCK = "queuectl_stats_reconcile";
+
+    private DatabaseManager dbManager;
+    private ConfigManager configManager;
+    private ScheduledExecutorService scheduler;
+
+    public QueueStats() {
+        this.dbManager = DatabaseManager.getInstance();
+        this.configManager = new ConfigManager();
+    }
+
+    // Applies the deltas on the caller's connection so they commit or roll back with its job changes
+    static void apply(Connection conn, Map<String, Integer> deltas) throws SQLException {
+        // Rows are always written in state order so two transactions can't deadlock on each other's stripes
+        Map<String, Integer> sorted = new TreeMap<>();
+        for (Map.Entry<String, Integer> entry : deltas.entrySet()) {
+            if (entry.getValue() != 0) {
+                sorted.put(entry.getKey(), entry.getValue());
+            }
+        }
+        if (sorted.isEmpty()) {
+            return;
+        }
+
+        StringBuilder sql = new StringBuilder("INSERT INTO queue_stats (state, stripe, count) VALUES ");
+        for (int i = 0; i < sorted.size(); i++) {
+            sql.append(i == 0 ? "(?, ?, ?)" : ", (?, ?, ?)");
+        }
+        sql.append(" ON DUPLICATE KEY UPDATE count = count + VALUES(count)");
+
+        int stripe = ThreadLocalRandom.current().nextInt(STRIPES);
+        try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            int index = 1;
+            for (Map.Entry<String, Integer> entry : sorted.entrySet()) {
+                stmt.setString(index++, entry.getKey());
+                stmt.setInt(index++, stripe);
+                stmt.setLong(index++, entry.getValue());
+            }
+            stmt.executeUpdate();
+        }
+    }
+
+    static void move(Connection conn, String fromState, String toState, int count) throws SQLException {
+        if (count == 0 || fromState.equals(toState)) {
+            return;
+        }
+        Map<String, Integer> deltas = new HashMap<>();
+        deltas.put(fromState, -count);
+        deltas.put(toState, count);
+        apply(conn, deltas);
+    }
+
+    static void add(Map<String, Integer> deltas, String state, int delta) {
+        deltas.merge(state, delta, Integer::sum);
+    }
+
+    // Reads at most STATES x STRIPES rows no matter how many jobs there are
+    public Map<String, Long> read() throws SQLException {
+        String sql = "SELECT state, SUM(count) AS count FROM queue_stats GROUP BY state";
+        try (Connection conn = dbManager.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            return toMap(rs);
+        }
+    }
+
+    public synchronized void start() {
+        int intervalSeconds = configManager.getConfigInt("stats-reconcile-seconds", 300);
+        if (scheduler != null || intervalSeconds <= 0) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "stats-reconciler");
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = Math.max(10, intervalSeconds);
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                Map<String, Integer> drift = reconcile();
+                if (drift != null && !drift.isEmpty()) {
+                    System.out.println("Corrected queue counter drift: " + drift);
+                }
+            } catch (Exception e) {
+                System.err.println("Stats reconciler error: " + e.getMessage());
+            }
+        }, interval, interval, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    // Compares the counters with a real count taken in the same snapshot and applies the difference
+    // as a delta, so writers are never blocked. Returns the drift, or null if another process holds
+    // the reconcile lock.
+    public Map<String, Integer> reconcile() throws SQLException {
+        try (Connection conn = dbManager.getConnection()) {
+            if (!acquireLock(conn)) {
+                return null;
+            }
+            try {
+                Map<String, Integer> drift = measureDrift(conn);
+                if (!drift.isEmpty()) {
+                    apply(conn, drift);
+                }
+                return drift;
+            } finally {
+                releaseLock(conn);
+            }
+        }
+    }
+
+    private Map<String, Integer> measureDrift(Connection conn) throws SQLException {
+        int isolation = conn.getTransactionIsolation();
+        Map<String, Long> counted;
+        Map<String, Long> tracked;
+        try {
+            conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            conn.setAutoCommit(false);
+            // Both reads see one snapshot, and counter updates commit atomically with their job changes
+            try (Statement stmt = conn.createStatement()) {
+                try (ResultSet rs = stmt.executeQuery("SELECT state, SUM(count) AS count FROM queue_stats GROUP BY state")) {
+                    tracked = toMap(rs);
+                }
+                try (ResultSet rs = stmt.executeQuery("SELECT state, COUNT(*) AS count FROM jobs GROUP BY state")) {
+                    counted = toMap(rs);
+                }
+            }
+            conn.commit();
+        } finally {
+            conn.setAutoCommit(true);
+            conn.setTransactionIsolation(isolation);
+        }
+
+        Map<String, Integer> drift = new HashMap<>();
+        for (String state : union(counted, tracked)) {
+            long diff = counted.getOrDefault(state, 0L) - tracked.getOrDefault(state, 0L);
+            if (diff != 0) {
+                drift.put(state, (int) diff);
+            }
+        }
+        return drift;
+    }
+
+    private static Set<String> union(Map<String, Long> a, Map<String, Long> b) {
+        Set<String> states = new HashSet<>(a.keySet());
+        states.addAll(b.keySet());
+        return states;
+    }
+
+    private static Map<String, Long> toMap(ResultSet rs) throws SQLException {
+        Map<String, Long> counts = new HashMap<>();
+        while (rs.next()) {
+            counts.put(rs.getString("state"), rs.getLong("count"));
+        }
+        return counts;
+    }
+
+    private static boolean acquireLock(Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT GET_LOCK(?, 0)")) {
+            stmt.setString(1, RECONCILE_LOCK);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() && rs.getInt(1) == 1;
+            }
+        }
+    }
+
+    private static void releaseLock(Connection conn) {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            stmt.setString(1, RECONCILE_LOCK);
+            stmt.executeQuery().close();
+        } catch (SQLException e) {
+            // Ignore
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.queuectl.core;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Promotes scheduled jobs to pending when they come due. Jobs due within the next window are
+// loaded from idx_due into an in-memory timing wheel, and due ones are promoted in batches.
+// Due times are taken relative to the database clock and tracked on System.nanoTime(), so
+// changes to either machine's wall clock can't make a job run early or get lost.
+public class ScheduledJobDispatcher {
+    private final JobQueue jobQueue;
+    private final CronSchedules schedules;
+    private final ConfigManager configManager;
+    private Thread thread;
+    private volatile boolean running;
+
+    // Only touched by the dispatcher thread
+    private TimingWheel<String> wheel;
+    private final Set<String> tracked;
+    private Timestamp watermark;
+    private long seenSignal = -1;
+    private long lastFullLoadNanos;
+
+    public ScheduledJobDispatcher() {
+        this.jobQueue = new JobQueue();
+        this.schedules = new CronSchedules();
+        this.configManager = new ConfigManager();
+        this.tracked = new HashSet<>();
+    }
+
+    public synchronized void start() {
+        if (thread != null || !configManager.getConfigBoolean("scheduler-enabled", true)) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::run, "job-dispatcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public synchronized void stop() {
+        if (thread == null) {
+            return;
+        }
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+    }
+
+    private void run() {
+        int tickMs = Math.max(1, configManager.getConfigInt("scheduler-tick-ms", 10));
+        long loadNanos = Math.max(100, configManager.getConfigInt("scheduler-load-ms", 1000)) * 1_000_000L;
+        wheel = new TimingWheel<>(tickMs, System.nanoTime());
+        int windowSeconds = (int) Math.min(configManager.getConfigInt("scheduler-window-seconds", 60),
+                wheel.spanMillis() / 1000 - 1);
+
+        List<String> due = new ArrayList<>();
+        long nextLoad = System.nanoTime();
+        while (running) {
+            try {
+                if (System.nanoTime() - nextLoad >= 0) {
+                    nextLoad = System.nanoTime() + loadNanos;
+                    schedules.materializeDue(windowSeconds);
+                    load(windowSeconds);
+                }
+
+                wheel.advance(System.nanoTime(), due);
+                if (!due.isEmpty()) {
+                    promote(due);
+                    due.clear();
+                }
+                Thread.sleep(tickMs);
+            } catch (InterruptedException e) {
+                break;
+            } catch (Exception e) {
+                System.err.println("Job dispatcher error: " + e.getMessage());
+                due.clear();
+            }
+        }
+        wheel = null;
+        tracked.clear();
+        watermark = null;
+    }
+
+    // Normally only reads past the previous window's end; rereads the whole window when another
+    // process added scheduled jobs, or once per window to catch anything missed
+    private void load(int windowSeconds) throws Exception {
+        int maxLoaded = configManager.getConfigInt("scheduler-max-loaded", 100000);
+        long signal = jobQueue.readScheduleSignal();
+        long now = System.nanoTime();
+        boolean full = watermark == null || signal != seenSignal || now - lastFullLoadNanos > windowSeconds * 1_000_000_000L;
+        int limit = full ? maxLoaded : maxLoaded - tracked.size();
+        if (limit <= 0) {
+            return;
+        }
+
+        Timestamp until = jobQueue.windowEnd(windowSeconds);
+        List<JobQueue.DueJob> jobs = jobQueue.loadScheduled(full ? null : watermark, until, limit);
+        now = System.nanoTime();
+        for (JobQueue.DueJob job : jobs) {
+            if (tracked.size() >= maxLoaded) {
+                break;
+            }
+            if (tracked.add(job.id)) {
+                wheel.add(job.id, now + job.dueInMicros * 1000);
+            }
+        }
+
+        if (full) {
+            seenSignal = signal;
+            lastFullLoadNanos = now;
+        }
+        // A truncated load resumes from the last row it saw
+        watermark = jobs.size() < limit ? until : jobs.get(jobs.size() - 1).runAt;
+    }
+
+    private void promote(List<String> due) throws Exception {
+        int batchSize = Math.max(1, configManager.getConfigInt("scheduler-batch-size", 500));
+        for (int i = 0; i < due.size(); i += batchSize) {
+            List<String> batch = due.subList(i, Math.min(due.size(), i + batchSize));
+            int promoted = 0;
+            try {
+                promoted = jobQueue.promoteScheduled(batch);
+            } finally {
+                tracked.removeAll(batch);
+                // Some weren't due by the database's clock, were rescheduled or failed to promote;
+                // forget the watermark so the next load picks them up again
+                if (promoted < batch.size()) {
+                    watermark = null;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.queuectl.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Hierarchical timing wheel: four levels of 64 slots over a fixed tick. Adding an entry and
+// advancing one tick are O(1); entries in the outer levels cascade inward as their time nears.
+// Deadlines are System.nanoTime() values, so wall-clock changes don't move anything.
+class TimingWheel<T> {
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+
+    private static class Entry<T> {
+        private final T item;
+        private final long tick;
+
+        Entry(T item, long tick) {
+            this.item = item;
+            this.tick = tick;
+        }
+    }
+
+    private final long tickNanos;
+    private final long origin;
+    private final List<List<Entry<T>>> slots;
+    private long currentTick;
+    private int size;
+
+    TimingWheel(long tickMillis, long nowNanos) {
+        this.tickNanos = Math.max(1, tickMillis) * 1_000_000L;
+        this.origin = nowNanos;
+        this.slots = new ArrayList<>(LEVELS * SLOTS);
+        for (int i = 0; i < LEVELS * SLOTS; i++) {
+            slots.add(new ArrayList<>());
+        }
+    }
+
+    // Longest delay the wheel can hold, in milliseconds
+    long spanMillis() {
+        return (1L << (BITS * LEVELS)) * (tickNanos / 1_000_000L);
+    }
+
+    // Overdue deadlines fire on the next tick
+    void add(T item, long deadlineNanos) {
+        long tick = Math.max(currentTick + 1, ceilDiv(deadlineNanos - origin, tickNanos));
+        if (tick - currentTick >= 1L << (BITS * LEVELS)) {
+            throw new IllegalArgumentException("Deadline is beyond the wheel's span of " + spanMillis() + "ms");
+        }
+        place(new Entry<>(item, tick));
+        size++;
+    }
+
+    // Moves time forward to nowNanos and collects every entry that came due, in deadline order
+    void advance(long nowNanos, List<T> due) {
+        long target = (nowNanos - origin) / tickNanos;
+        while (currentTick < target) {
+            currentTick++;
+            if (size == 0) {
+                // Nothing to cascade or fire; jump straight to the target
+                currentTick = target;
+                break;
+            }
+            cascade();
+            List<Entry<T>> slot = slots.get((int) (currentTick & MASK));
+            for (Entry<T> entry : slot) {
+                due.add(entry.item);
+            }
+            size -= slot.size();
+            slot.clear();
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    // When a level wraps, the matching slot one level up is redistributed into the levels below
+    private void cascade() {
+        for (int level = 1; level < LEVELS; level++) {
+            if ((currentTick & ((1L << (BITS * level)) - 1)) != 0) {
+                return;
+            }
+            List<Entry<T>> slot = slots.get(level * SLOTS + (int) ((currentTick >>> (BITS * level)) & MASK));
+            List<Entry<T>> entries = new ArrayList<>(slot);
+            slot.clear();
+            for (Entry<T> entry : entries) {
+                place(entry);
+            }
+        }
+    }
+
+    private void place(Entry<T> entry) {
+        long delta = entry.tick - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (BITS * (level + 1))) {
+            level++;
+        }
+        slots.get(level * SLOTS + (int) ((entry.tick >>> (BITS * level)) & MASK)).add(entry);
+    }
+
+    private static long ceilDiv(long a, long b) {
+        return a <= 0 ? 0 : (a + b - 1) / b;
+    }
+}
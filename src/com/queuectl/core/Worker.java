@@ -1,22 +1,67 @@
 package com.queuectl.core;
 
+import com.queuectl.handlers.JobHandler;
+import com.queuectl.handlers.JobHandlers;
+import com.queuectl.metrics.Histogram;
+import com.queuectl.metrics.Metrics;
 import com.queuectl.models.Job;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 public class Worker implements Runnable {
+    private static final Histogram QUEUE_WAIT = Metrics.histogram("queuectl_queue_wait_seconds",
+            "Time from a job becoming runnable (run_at) to being claimed");
+    private static final Histogram CLAIM_TO_START = Metrics.histogram("queuectl_claim_to_start_seconds",
+            "Time a claimed job waited in its worker's buffer before starting");
+    private static final Histogram RUN_TIME = Metrics.histogram("queuectl_run_seconds", "Job command run time");
+    private static final LongAdder CLAIMED = Metrics.counter("queuectl_jobs_claimed_total", "Jobs claimed by workers in this process");
+    private static final String FINISHED_HELP = "Job runs finished by workers in this process, by outcome";
+    private static final LongAdder COMPLETED = Metrics.counter("queuectl_jobs_finished_total", FINISHED_HELP, "outcome", "completed");
+    private static final LongAdder FAILED = Metrics.counter("queuectl_jobs_finished_total", FINISHED_HELP, "outcome", "failed");
+    private static final LongAdder DEAD = Metrics.counter("queuectl_jobs_finished_total", FINISHED_HELP, "outcome", "dead");
+
     private String workerId;
-    private JobQueue jobQueue;
+    private JobStore jobQueue;
     private ConfigManager configManager;
+    private JobNotifier notifier;
+    private LatencyStats startLatency;
+    private Map<String, LatencyStats> queueLatency;
+    private QueueScheduler scheduler;
+    private Semaphore concurrencyLimit;
+    // Shared write-behind acks; null writes each outcome synchronously
+    private AckPipeline acks;
     private volatile boolean running;
+    // Jobs claimed in the last batch that have not been started yet
+    private Deque<Job> buffer;
 
-    public Worker() {
+    public Worker(LatencyStats startLatency, Map<String, LatencyStats> queueLatency,
+                  QueueScheduler scheduler, Semaphore concurrencyLimit, AckPipeline acks) {
         this.workerId = "worker-" + UUID.randomUUID().toString().substring(0, 8);
-        this.jobQueue = new JobQueue();
+        this.jobQueue = JobStores.get();
         this.configManager = new ConfigManager();
+        this.notifier = JobNotifier.getInstance();
+        this.startLatency = startLatency;
+        this.queueLatency = queueLatency;
+        this.scheduler = scheduler;
+        this.concurrencyLimit = concurrencyLimit;
+        this.acks = acks;
         this.running = true;
+        this.buffer = new ArrayDeque<>();
+    }
+
+    // Read by the Autoscaler
+    static Histogram getQueueWait() {
+        return QUEUE_WAIT;
     }
 
     public String getWorkerId() {
@@ -30,18 +75,36 @@ public class Worker implements Runnable {
     @Override
     public void run() {
         System.out.println("[" + workerId + "] Worker started");
+        PollBackoff backoff = new PollBackoff(configManager.getConfigInt("poll-min-ms", 50),
+                configManager.getConfigInt("poll-max-ms", 2000));
         
         while (running) {
             try {
-                Job job = jobQueue.dequeueJob(workerId);
-                
-                if (job == null) {
-                    Thread.sleep(2000);
+                // Only workers holding a permit may claim, so idle workers never block busy ones
+                if (concurrencyLimit != null && !concurrencyLimit.tryAcquire(500, TimeUnit.MILLISECONDS)) {
                     continue;
                 }
-                
-                System.out.println("[" + workerId + "] Processing job: " + job.getId());
-                processJob(job);
+
+                // Read the signal sequence before claiming so a concurrent enqueue is never missed
+                long seenSignal = notifier.sequence();
+                Job job;
+                try {
+                    job = nextJob();
+                    if (job != null) {
+                        backoff.reset();
+                        recordStartLatency(job);
+                        System.out.println("[" + workerId + "] Processing job: " + job.getId());
+                        processJob(job);
+                    }
+                } finally {
+                    if (concurrencyLimit != null) {
+                        concurrencyLimit.release();
+                    }
+                }
+
+                if (job == null && notifier.await(seenSignal, backoff.nextDelay())) {
+                    backoff.reset();
+                }
                 
             } catch (InterruptedException e) {
                 System.out.println("[" + workerId + "] Worker interrupted");
@@ -51,73 +114,253 @@ public class Worker implements Runnable {
             }
         }
         
+        releaseBufferedJobs();
         System.out.println("[" + workerId + "] Worker stopped");
     }
 
+    private Job nextJob() throws Exception {
+        if (buffer.isEmpty()) {
+            int batchSize = Math.max(1, configManager.getConfigInt("claim-batch-size", 1));
+            // Try the queue whose turn it is; fall through to the others only if it has nothing ready
+            for (String queue : scheduler.nextOrder()) {
+                List<Job> claimed = jobQueue.dequeueBatch(workerId, queue, batchSize);
+                if (!claimed.isEmpty()) {
+                    CLAIMED.add(claimed.size());
+                    buffer.addAll(claimed);
+                    loadPayloads(claimed);
+                    break;
+                }
+            }
+            if (buffer.isEmpty()) {
+                scheduler.markIdle();
+            }
+        }
+        return buffer.poll();
+    }
+
+    // One read for the whole batch, and only for jobs that have a payload. On failure each job
+    // retries its own read when it starts, so a bad blob fails only that job.
+    private void loadPayloads(List<Job> claimed) {
+        List<String> ids = new ArrayList<>();
+        for (Job job : claimed) {
+            if (job.getPayloadBytes() >= 0) {
+                ids.add(job.getId());
+            }
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+        try {
+            Map<String, byte[]> payloads = jobQueue.readPayloads(ids);
+            for (Job job : claimed) {
+                byte[] payload = payloads.get(job.getId());
+                if (payload != null) {
+                    job.setPayload(payload);
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("[" + workerId + "] Error reading payloads: " + e.getMessage());
+        }
+    }
+
+    private void recordStartLatency(Job job) {
+        long sinceClaim = (System.nanoTime() - job.getClaimedAtNanos()) / 1000;
+        CLAIM_TO_START.record(sinceClaim);
+        if (job.getQueueWaitMicros() >= 0) {
+            QUEUE_WAIT.record(job.getQueueWaitMicros());
+        }
+        // Only first attempts: retries wait out their backoff on purpose
+        if (job.getAttempts() == 0 && job.getQueueWaitMicros() >= 0) {
+            long micros = job.getQueueWaitMicros() + sinceClaim;
+            startLatency.record(micros);
+            queueLatency.computeIfAbsent(job.getQueue(),
+                    q -> new LatencyStats("enqueue-to-start[" + q + "]", 10000)).record(micros);
+        }
+    }
+
+    private void releaseBufferedJobs() {
+        if (buffer.isEmpty()) {
+            return;
+        }
+        try {
+            int released = jobQueue.releaseJobs(workerId, new ArrayList<>(buffer));
+            System.out.println("[" + workerId + "] Released " + released + " unstarted job(s) back to the queue");
+        } catch (Exception e) {
+            System.err.println("[" + workerId + "] Error releasing buffered jobs: " + e.getMessage());
+        }
+        buffer.clear();
+    }
+
     private void processJob(Job job) {
         try {
+            if (job.getPayloadBytes() >= 0 && job.getPayload() == null) {
+                byte[] payload = jobQueue.readPayloads(List.of(job.getId())).get(job.getId());
+                if (payload == null) {
+                    throw new IllegalStateException("Payload of job " + job.getId() + " could not be read");
+                }
+                job.setPayload(payload);
+            }
+
             // Execute the command
-            boolean success = executeCommand(job.getCommand());
+            long started = System.nanoTime();
+            ExecutionResult result = JobHandlers.isHandlerCommand(job.getCommand())
+                    ? executeHandler(job) : executeCommand(job);
+            RUN_TIME.recordSince(started);
             
-            if (success) {
-                jobQueue.markJobCompleted(job.getId());
+            if (result.isSuccess()) {
+                COMPLETED.increment();
+                acknowledge(JobAck.completed(job.getId(), workerId, result.getOutput()));
                 System.out.println("[" + workerId + "] Job " + job.getId() + " completed successfully");
             } else {
-                handleFailure(job, "Command execution failed");
+                String reason;
+                String error;
+                if (result.isTimedOut()) {
+                    reason = Job.FAILURE_TIMEOUT;
+                    error = "Timed out after " + effectiveTimeout(job) + " seconds";
+                } else if (result.getError() != null) {
+                    reason = Job.FAILURE_ERROR;
+                    error = result.getError();
+                } else {
+                    reason = Job.FAILURE_EXIT_CODE;
+                    error = "Command exited with code " + result.getExitCode();
+                }
+                if (result.getOutput() != null && !result.getOutput().isEmpty()) {
+                    error += ": " + result.getOutput();
+                }
+                handleFailure(job, error, reason);
             }
             
         } catch (Exception e) {
             try {
-                handleFailure(job, e.getMessage());
+                handleFailure(job, e.getMessage(), Job.FAILURE_ERROR);
             } catch (Exception ex) {
                 System.err.println("[" + workerId + "] Error handling failure: " + ex.getMessage());
             }
         }
     }
 
-    private boolean executeCommand(String command) {
+    private ExecutionResult executeCommand(Job job) {
         try {
             String os = System.getProperty("os.name").toLowerCase();
             ProcessBuilder processBuilder;
             
             if (os.contains("win")) {
-                processBuilder = new ProcessBuilder("cmd.exe", "/c", command);
+                processBuilder = new ProcessBuilder("cmd.exe", "/c", job.getCommand());
             } else {
-                processBuilder = new ProcessBuilder("sh", "-c", command);
+                processBuilder = new ProcessBuilder("sh", "-c", job.getCommand());
             }
             
             processBuilder.redirectErrorStream(true);
             Process process = processBuilder.start();
-            
-            // Read output
-            BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-            String line;
-            while ((line = reader.readLine()) != null) {
-                System.out.println("[" + workerId + "] " + line);
+            if (job.getPayload() != null) {
+                OutputCapture.feed(process.getOutputStream(), job.getPayload());
             }
             
-            int exitCode = process.waitFor();
-            return exitCode == 0;
+            // Output is drained off this thread so a chatty job can't stall the worker
+            OutputCapture capture = new OutputCapture(workerId,
+                    configManager.getConfigInt("output-buffer-bytes", 16384),
+                    outputLogFile(job),
+                    configManager.getConfigBoolean("output-echo", true),
+                    configManager.getConfigInt("output-echo-lines-per-sec", 50));
+            capture.start(process.getInputStream());
             
+            ProcessTimeouts.Watch watch = ProcessTimeouts.watch(process, effectiveTimeout(job));
+            try {
+                int exitCode = process.waitFor();
+                return new ExecutionResult(exitCode, capture.awaitTail(1000), watch.isExpired());
+            } finally {
+                watch.cancel();
+            }
+            
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new ExecutionResult(-1, "Interrupted while waiting for command");
         } catch (Exception e) {
             System.err.println("[" + workerId + "] Command execution error: " + e.getMessage());
-            return false;
+            return new ExecutionResult(-1, e.getMessage());
+        }
+    }
+
+    // java:<name> jobs run on this thread: no fork, no shell, no reap
+    private ExecutionResult executeHandler(Job job) {
+        String name = JobHandlers.handlerName(job.getCommand());
+        JobHandler handler = JobHandlers.forCommand(job.getCommand());
+        if (handler == null) {
+            // Retried like any failure; another worker may have the handler on its classpath
+            return ExecutionResult.error("Unknown job handler: " + name);
+        }
+
+        ProcessTimeouts.Watch watch = ProcessTimeouts.watch(Thread.currentThread(), effectiveTimeout(job));
+        try {
+            String output = handler.handle(job, JobHandlers.handlerArgs(job.getCommand()));
+            echoOutput(output);
+            return new ExecutionResult(watch.isExpired() ? -1 : 0, output, watch.isExpired());
+        } catch (InterruptedException e) {
+            if (watch.isExpired()) {
+                return new ExecutionResult(-1, null, true);
+            }
+            Thread.currentThread().interrupt();
+            return ExecutionResult.error("Interrupted while running handler " + name);
+        } catch (Exception | LinkageError | AssertionError e) {
+            if (watch.isExpired()) {
+                return new ExecutionResult(-1, e.getMessage(), true);
+            }
+            return ExecutionResult.error("Handler " + name + " failed: " + e);
+        } finally {
+            watch.cancel();
+            // Swallow a timeout interrupt the handler didn't consume so it can't hit the next claim
+            if (watch.isExpired()) {
+                Thread.interrupted();
+            }
+        }
+    }
+
+    private void echoOutput(String output) {
+        if (output == null || output.isEmpty() || !configManager.getConfigBoolean("output-echo", true)) {
+            return;
+        }
+        for (String line : output.split("\\R")) {
+            System.out.println("[" + workerId + "] " + line);
+        }
+    }
+
+    private int effectiveTimeout(Job job) {
+        return job.getTimeoutSeconds() > 0 ? job.getTimeoutSeconds()
+                : configManager.getConfigInt("job-timeout-seconds", 0);
+    }
+
+    private Path outputLogFile(Job job) {
+        String dir = configManager.getConfigString("output-log-dir", "");
+        if (dir.isEmpty()) {
+            return null;
+        }
+        String name = job.getId().replaceAll("[^A-Za-z0-9._-]", "_") + "-" + (job.getAttempts() + 1) + ".log";
+        return Paths.get(dir, name);
+    }
+
+    private void acknowledge(JobAck ack) throws Exception {
+        if (acks == null || !acks.submit(ack)) {
+            List<JobAck> single = List.of(ack);
+            jobQueue.acknowledge(single);
+            AckPipeline.recordWritten(single);
         }
     }
 
-    private void handleFailure(Job job, String errorMessage) throws Exception {
+    private void handleFailure(Job job, String errorMessage, String reason) throws Exception {
         int currentAttempts = job.getAttempts() + 1;
         int maxRetries = configManager.getConfigInt("max-retries", job.getMaxRetries());
         
         if (currentAttempts >= maxRetries) {
             // Move to DLQ
-            jobQueue.markJobDead(job.getId(), errorMessage);
+            DEAD.increment();
+            acknowledge(JobAck.dead(job.getId(), workerId, errorMessage, reason));
             System.out.println("[" + workerId + "] Job " + job.getId() + " moved to DLQ after " + currentAttempts + " attempts");
         } else {
             int backoffBase = configManager.getConfigInt("backoff-base", 2);
             long delay = (long) Math.pow(backoffBase, currentAttempts);
             
-            jobQueue.markJobFailed(job.getId(), errorMessage, delay);
+            FAILED.increment();
+            acknowledge(JobAck.failed(job.getId(), workerId, errorMessage, reason, delay));
             System.out.println("[" + workerId + "] Job " + job.getId() + " failed (attempt " + currentAttempts + "/" + maxRetries + "). Retry in " + delay + " seconds");
         }
     }
@@ -1,16 +1,67 @@
 package com.queuectl.core;
 
+import com.queuectl.db.DatabaseManager;
+import com.queuectl.metrics.Metrics;
+import com.queuectl.metrics.MetricsServer;
+
+import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class WorkerManager {
+    public enum Mode { PLATFORM, VIRTUAL }
+
     private static WorkerManager instance;
+    // Copy-on-write so the lease keeper can read it while stopWorkers holds the lock
     private List<Worker> workers;
-    private List<Thread> workerThreads;
+    // Workers removed by scaleTo or stopWorkers that are still finishing their current job
+    private Set<Worker> retiring;
+    // Workers whose thread hasn't returned yet
+    private Set<Worker> running;
+    private ExecutorService executor;
+    private Mode mode;
+    private Semaphore concurrencyLimit;
+    private JobNotifier notifier;
+    private LatencyStats startLatency;
+    // Per-queue start latency, to check that a busy queue doesn't delay the others
+    private Map<String, LatencyStats> queueLatency;
+    private LeaseKeeper leaseKeeper;
+    private JobArchiver archiver;
+    private QueueStats queueStats;
+    private ScheduledJobDispatcher dispatcher;
+    private volatile AckPipeline acks;
+    private MetricsServer metricsServer;
+    // Subscription of the first start, reused when workers are added later
+    private volatile String queues;
+    private Autoscaler autoscaler;
 
     private WorkerManager() {
-        this.workers = new ArrayList<>();
-        this.workerThreads = new ArrayList<>();
+        this.workers = new CopyOnWriteArrayList<>();
+        this.retiring = ConcurrentHashMap.newKeySet();
+        this.running = ConcurrentHashMap.newKeySet();
+        this.notifier = JobNotifier.getInstance();
+        this.startLatency = new LatencyStats("enqueue-to-start", 10000);
+        this.queueLatency = new ConcurrentHashMap<>();
+        this.leaseKeeper = new LeaseKeeper(JobStores.get(), this::getWorkerIds);
+        this.archiver = new JobArchiver();
+        this.queueStats = new QueueStats();
+        this.dispatcher = new ScheduledJobDispatcher();
+        this.metricsServer = new MetricsServer();
+        Metrics.gauge("queuectl_workers", "Workers running in this process", this::getActiveWorkerCount);
+        Metrics.gauge("queuectl_acks_pending", "Job outcomes waiting to be written", () -> {
+            AckPipeline pipeline = acks;
+            return pipeline != null ? pipeline.getPendingCount() : 0;
+        });
     }
 
     public static synchronized WorkerManager getInstance() {
@@ -21,52 +72,314 @@ public class WorkerManager {
     }
 
     public void startWorkers(int count) {
+        startWorkers(count, Mode.PLATFORM, 0, null);
+    }
+
+    public void startWorkers(int count, Mode mode, int maxConcurrency) {
+        startWorkers(count, mode, maxConcurrency, null);
+    }
+
+    // maxConcurrency caps how many workers may hold a job at once; 0 means one per worker.
+    // queues is a weighted subscription such as "critical:5,default:1"; null falls back to worker-queues.
+    public synchronized void startWorkers(int count, Mode mode, int maxConcurrency, String queues) {
+        ConfigManager configManager = new ConfigManager();
+        if (executor == null) {
+            this.mode = mode;
+            this.executor = mode == Mode.VIRTUAL ? newVirtualThreadExecutor() : newPlatformThreadExecutor();
+            this.concurrencyLimit = maxConcurrency > 0 ? new Semaphore(maxConcurrency) : null;
+            this.acks = newAckPipeline();
+            this.queues = queues;
+            metricsServer.start(configManager.getConfigInt("metrics-port", 9464));
+        } else if (this.mode != mode) {
+            throw new IllegalStateException("Workers are already running in " + this.mode.name().toLowerCase() + " mode");
+        }
+
+        // Workers started together share one scheduler so the weights hold across all of them
+        QueueScheduler scheduler = QueueScheduler.parse(queues != null ? queues : configManager.getConfigString("worker-queues", ""));
+
+        List<String> started = new ArrayList<>();
         for (int i = 0; i < count; i++) {
-            Worker worker = new Worker();
-            Thread thread = new Thread(worker);
-            
+            Worker worker = new Worker(startLatency, queueLatency, scheduler, concurrencyLimit, acks);
             workers.add(worker);
-            workerThreads.add(thread);
-            thread.start();
+            running.add(worker);
+            started.add(worker.getWorkerId());
+            executor.execute(() -> runWorker(worker));
+        }
+        // These coordinate with other processes through MySQL; the embedded store is single-process
+        // and promotes its own scheduled jobs
+        archiver.start();
+        if (!JobStores.isEmbedded()) {
+            notifier.startWatching(JobStores.get(), configManager.getConfigInt("signal-poll-ms", 100));
+            leaseKeeper.start(configManager.getConfigInt("lease-seconds", 60));
+            queueStats.start();
+            dispatcher.start();
+        } else {
+            // No lease keeper to heartbeat them; one registration lasts until they stop
+            try {
+                JobStores.get().heartbeatWorkers(started);
+            } catch (Exception e) {
+                System.err.println("Error recording started workers: " + e.getMessage());
+            }
+        }
+
+        System.out.println("Started " + count + " " + mode.name().toLowerCase() + " worker(s)" +
+                (maxConcurrency > 0 ? " (max " + maxConcurrency + " concurrent jobs)" : "") +
+                " serving " + scheduler.describe());
+    }
+
+    // Sets a fixed worker count, turning autoscaling off
+    public synchronized void scaleTo(int count) {
+        if (autoscaler != null) {
+            autoscaler.stop();
+            autoscaler = null;
+            System.out.println("Autoscaling turned off");
+        }
+        resize(count);
+    }
+
+    // Starts at least min workers and lets an Autoscaler move the count between min and max
+    public synchronized void autoscale(int min, int max, Mode mode, int maxConcurrency, String queues) {
+        Autoscaler scaler = new Autoscaler(this, JobStores.get(), min, max);
+        if (workers.size() < min) {
+            startWorkers(min - workers.size(), mode, maxConcurrency, queues);
+        }
+        if (autoscaler != null) {
+            autoscaler.stop();
+        }
+        autoscaler = scaler;
+        scaler.start();
+        System.out.println("Autoscaling between " + min + " and " + max + " worker(s)");
+    }
+
+    // Called from the autoscaler's thread; a stop or a manual scale may have replaced it meanwhile
+    synchronized void applyAutoscale(Autoscaler scaler, int count) {
+        if (autoscaler == scaler && !workers.isEmpty()) {
+            resize(count);
+        }
+    }
+
+    public synchronized Autoscaler getAutoscaler() {
+        return autoscaler;
+    }
+
+    // Grows or shrinks this process's workers to count, keeping the running mode and queues of
+    // the first start. Removed workers finish their current job and keep its lease until then.
+    private void resize(int count) {
+        int current = workers.size();
+        if (count > current) {
+            startWorkers(count - current, executor != null ? mode : Mode.PLATFORM, 0, queues);
+            return;
+        }
+        if (count == current) {
+            System.out.println("Already running " + current + " worker(s)");
+            return;
+        }
+        if (count <= 0) {
+            stopWorkers(false);
+            return;
+        }
+
+        List<Worker> surplus = new ArrayList<>(workers.subList(count, current));
+        workers.subList(count, current).clear();
+        for (Worker worker : surplus) {
+            retiring.add(worker);
+            worker.stop();
+        }
+        // Wake everyone; idle retiring workers notice the stop, the rest go back to waiting
+        notifier.signal(current);
+        System.out.println("Stopping " + surplus.size() + " worker(s), " + count + " remain");
+    }
+
+    private void runWorker(Worker worker) {
+        try {
+            worker.run();
+        } finally {
+            // Not synchronized: stopWorkers holds the lock while it waits for workers to exit
+            running.remove(worker);
+            if (retiring.remove(worker)) {
+                try {
+                    JobStores.get().markWorkersStopped(List.of(worker.getWorkerId()));
+                } catch (Exception e) {
+                    System.err.println("Error recording stopped worker: " + e.getMessage());
+                }
+            }
         }
-        
-        System.out.println("Started " + count + " worker(s)");
     }
 
     public void stopWorkers() {
+        stopWorkers(true);
+    }
+
+    public synchronized void stopWorkers(boolean closeDatabase) {
+        if (autoscaler != null) {
+            autoscaler.stop();
+            autoscaler = null;
+        }
         if (workers.isEmpty()) {
             System.out.println("No workers are currently running");
+            if (closeDatabase) {
+                DatabaseManager.getInstance().shutdown();
+                JobStores.shutdown();
+            }
             return;
         }
-        
+
         System.out.println("Stopping " + workers.size() + " worker(s)...");
-        
-        for (Worker worker : workers) {
+
+        List<Worker> stopping = new ArrayList<>(workers);
+        for (Worker worker : stopping) {
             worker.stop();
         }
-        
-        for (Thread thread : workerThreads) {
+        notifier.stopWatching();
+        dispatcher.stop();
+        // Wake idle workers so they notice the stop request right away
+        notifier.signal(stopping.size());
+
+        // Running jobs are allowed to finish; new ones are not claimed. A later start gets a new
+        // pool and ack pipeline while these drain.
+        ExecutorService pool = executor;
+        AckPipeline pipeline = acks;
+        pool.shutdown();
+        boolean exited = awaitExit(pool, 5);
+        workers.clear();
+        executor = null;
+        acks = null;
+        concurrencyLimit = null;
+        if (exited) {
+            finishStop(pipeline, stopping, closeDatabase);
+            return;
+        }
+
+        // Workers still running a job retire like those removed by a scale-down: the lease keeper
+        // keeps their leases until they exit, so their jobs aren't reaped and run a second time
+        for (Worker worker : stopping) {
+            if (running.contains(worker)) {
+                retiring.add(worker);
+            }
+        }
+        retiring.removeIf(worker -> !running.contains(worker));
+        System.out.println(retiring.size() + " worker(s) still finishing their current job; keeping their leases until they exit");
+        if (closeDatabase) {
+            // The process is exiting, and the pool must outlive their outcomes
+            awaitExit(pool, Long.MAX_VALUE);
+            finishStop(pipeline, stopping, true);
+            return;
+        }
+        Thread drain = new Thread(() -> {
+            awaitExit(pool, Long.MAX_VALUE);
+            finishStop(pipeline, stopping, false);
+        }, "worker-drain");
+        drain.setDaemon(true);
+        drain.start();
+    }
+
+    // Runs once every stopped worker has exited
+    private synchronized void finishStop(AckPipeline pipeline, List<Worker> stopped, boolean closeDatabase) {
+        // Outcomes still queued are written while the lease keeper keeps their jobs leased
+        if (pipeline != null) {
+            pipeline.stop(5);
+        }
+        List<String> ids = new ArrayList<>();
+        for (Worker worker : stopped) {
+            ids.add(worker.getWorkerId());
+        }
+        boolean idle = workers.isEmpty() && retiring.isEmpty();
+        if (idle) {
+            leaseKeeper.stop(ids);
+            metricsServer.stop();
+            archiver.stop();
+            queueStats.stop();
+        }
+        // The lease keeper records them when it stops; it isn't stopping while workers started since
+        // the stop still need it, and the embedded store never runs one
+        if (!idle || JobStores.isEmbedded()) {
             try {
-                thread.join(5000); 
-            } catch (InterruptedException e) {
-                System.err.println("Error waiting for worker to stop: " + e.getMessage());
+                JobStores.get().markWorkersStopped(ids);
+            } catch (Exception e) {
+                System.err.println("Error recording stopped workers: " + e.getMessage());
             }
         }
-        
-        workers.clear();
-        workerThreads.clear();
         System.out.println("All workers stopped");
+        if (startLatency.getCount() > 0) {
+            System.out.println(startLatency.summary());
+        }
+        for (LatencyStats stats : new TreeMap<>(queueLatency).values()) {
+            System.out.println(stats.summary());
+        }
+
+        // Workers are the pool's main consumers; once they are gone release the connections
+        if (closeDatabase) {
+            DatabaseManager.getInstance().shutdown();
+            JobStores.shutdown();
+        }
+    }
+
+    private static boolean awaitExit(ExecutorService pool, long seconds) {
+        try {
+            return pool.awaitTermination(seconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // ack-batch-size of 1 or less turns write-behind off
+    private static AckPipeline newAckPipeline() {
+        ConfigManager configManager = new ConfigManager();
+        int batchSize = configManager.getConfigInt("ack-batch-size", 100);
+        if (batchSize <= 1) {
+            return null;
+        }
+        AckPipeline pipeline = new AckPipeline(JobStores.get(), batchSize, configManager.getConfigInt("ack-flush-ms", 20));
+        pipeline.start();
+        return pipeline;
+    }
+
+    private static ExecutorService newPlatformThreadExecutor() {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newCachedThreadPool(r -> new Thread(r, "worker-thread-" + counter.incrementAndGet()));
+    }
+
+    // Looked up reflectively so the project still compiles and runs platform mode on Java 17
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            throw new IllegalStateException("Virtual thread workers require Java 21 or newer");
+        }
     }
 
     public int getActiveWorkerCount() {
         return workers.size();
     }
 
+    public JobNotifier getNotifier() {
+        return notifier;
+    }
+
+    public LatencyStats getStartLatency() {
+        return startLatency;
+    }
+
+    public Map<String, LatencyStats> getQueueLatency() {
+        return queueLatency;
+    }
+
+    // Queues this process's workers serve; empty means every queue
+    List<String> getSubscribedQueues() {
+        String spec = queues;
+        return QueueScheduler.parse(spec != null ? spec : new ConfigManager().getConfigString("worker-queues", "")).subscribed();
+    }
+
     public List<String> getWorkerIds() {
         List<String> ids = new ArrayList<>();
         for (Worker worker : workers) {
             ids.add(worker.getWorkerId());
         }
+        for (Worker worker : retiring) {
+            ids.add(worker.getWorkerId());
+        }
         return ids;
     }
 }
@@ -0,0 +1,110 @@
+package com.queuectl.daemon;
+
+import com.queuectl.db.DatabaseManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+// Frames on the daemon's control socket: [type:1][length:4][payload]. A client sends one
+// REQUEST frame holding the command line and gets back STDOUT and STDERR frames with the
+// command's output, then one EXIT frame with its exit code. One command per connection.
+public class ControlProtocol {
+    public static final byte REQUEST = 'R';
+    public static final byte STDOUT = 'O';
+    public static final byte STDERR = 'E';
+    public static final byte EXIT = 'X';
+
+    private static final int MAX_FRAME_BYTES = 16 << 20;
+
+    private ControlProtocol() {
+    }
+
+    // daemon.socket in db.properties; relative paths resolve against the working directory
+    public static Path socketPath() {
+        return Paths.get(DatabaseManager.getInstance().getProperty("daemon.socket", "queuectl.sock")).toAbsolutePath();
+    }
+
+    public static void writeFrame(DataOutputStream out, byte type, byte[] payload, int offset, int length) throws IOException {
+        out.writeByte(type);
+        out.writeInt(length);
+        out.write(payload, offset, length);
+    }
+
+    public static void writeExit(DataOutputStream out, int code) throws IOException {
+        writeFrame(out, EXIT, ByteBuffer.allocate(4).putInt(code).array(), 0, 4);
+    }
+
+    public static Frame readFrame(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        int length = in.readInt();
+        if (length < 0 || length > MAX_FRAME_BYTES) {
+            throw new IOException("Invalid control frame length: " + length);
+        }
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return new Frame(type, payload);
+    }
+
+    // [count:4] then [length:4][utf-8 bytes] per argument
+    public static byte[] encodeArgs(String[] args) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(args.length);
+            for (String arg : args) {
+                byte[] value = arg.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(value.length);
+                out.write(value);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static String[] decodeArgs(byte[] payload) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        try {
+            int count = buffer.getInt();
+            if (count < 0 || count > payload.length) {
+                throw new IOException("Invalid argument count: " + count);
+            }
+            String[] args = new String[count];
+            for (int i = 0; i < count; i++) {
+                byte[] value = new byte[buffer.getInt()];
+                buffer.get(value);
+                args[i] = new String(value, StandardCharsets.UTF_8);
+            }
+            return args;
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed request frame", e);
+        }
+    }
+
+    public static class Frame {
+        private final byte type;
+        private final byte[] payload;
+
+        Frame(byte type, byte[] payload) {
+            this.type = type;
+            this.payload = payload;
+        }
+
+        public byte getType() {
+            return type;
+        }
+
+        public byte[] getPayload() {
+            return payload;
+        }
+
+        public int getExitCode() {
+            return ByteBuffer.wrap(payload).getInt();
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.queuectl.daemon;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Resident queuectl process. It keeps the connection pool, the config cache and the workers
+// alive between commands and runs CLI commands sent over a Unix domain socket, so short
+// commands skip pool setup, config loading and schema checks.
+public class Daemon {
+    public interface CommandRunner {
+        // Runs one command line and returns its exit code
+        int run(String[] args);
+    }
+
+    private final Path socketPath;
+    private final CommandRunner runner;
+    private final long startedAt = System.currentTimeMillis();
+    private final AtomicLong requests = new AtomicLong();
+    private ServerSocketChannel server;
+    private volatile boolean running;
+
+    public Daemon(Path socketPath, CommandRunner runner) {
+        this.socketPath = socketPath;
+        this.runner = runner;
+    }
+
+    // Serves commands on the socket opened by listen() until stop() is called
+    public void serve() throws IOException {
+        RoutedOutputStream stdout = new RoutedOutputStream(System.out);
+        RoutedOutputStream stderr = new RoutedOutputStream(System.err);
+        PrintStream consoleOut = System.out;
+        PrintStream consoleErr = System.err;
+        System.setOut(new PrintStream(stdout, true));
+        System.setErr(new PrintStream(stderr, true));
+
+        AtomicInteger counter = new AtomicInteger();
+        ExecutorService handlers = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "control-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        consoleOut.println("Daemon listening on " + socketPath);
+        try {
+            while (running) {
+                SocketChannel channel;
+                try {
+                    channel = server.accept();
+                } catch (AsynchronousCloseException e) {
+                    break;
+                }
+                handlers.execute(() -> handle(channel, stdout, stderr));
+            }
+        } finally {
+            running = false;
+            handlers.shutdown();
+            try {
+                // Let in-flight commands, such as the `daemon stop` that got us here, reply first
+                handlers.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            Files.deleteIfExists(socketPath);
+            System.setOut(consoleOut);
+            System.setErr(consoleErr);
+        }
+    }
+
+    public synchronized void stop() {
+        running = false;
+        if (server != null) {
+            try {
+                server.close();
+            } catch (IOException e) {
+                System.err.println("Error closing control socket: " + e.getMessage());
+            }
+        }
+    }
+
+    public Path getSocketPath() {
+        return socketPath;
+    }
+
+    public long getUptimeMillis() {
+        return System.currentTimeMillis() - startedAt;
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public synchronized void listen() throws IOException {
+        if (Files.exists(socketPath)) {
+            // A socket file nobody answers on is left over from a daemon that was killed
+            boolean answered;
+            try {
+                SocketChannel.open(UnixDomainSocketAddress.of(socketPath)).close();
+                answered = true;
+            } catch (IOException e) {
+                answered = false;
+            }
+            if (answered) {
+                throw new IllegalStateException("A daemon is already listening on " + socketPath);
+            }
+            Files.delete(socketPath);
+        }
+        server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(socketPath));
+        try {
+            // Anyone who can connect can run commands, so only the owner may
+            Files.setPosixFilePermissions(socketPath, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException e) {
+            // Not a POSIX file system; rely on the directory's permissions
+        }
+        running = true;
+    }
+
+    private void handle(SocketChannel channel, RoutedOutputStream stdout, RoutedOutputStream stderr) {
+        try (SocketChannel ch = channel) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(ch)));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(ch), 1 << 16));
+            ControlProtocol.Frame request = ControlProtocol.readFrame(in);
+            if (request.getType() != ControlProtocol.REQUEST) {
+                throw new IOException("Expected a request frame");
+            }
+            String[] args = ControlProtocol.decodeArgs(request.getPayload());
+            requests.incrementAndGet();
+
+            int code;
+            stdout.bind(new FrameOutputStream(out, ControlProtocol.STDOUT));
+            stderr.bind(new FrameOutputStream(out, ControlProtocol.STDERR));
+            try {
+                code = runner.run(args);
+            } finally {
+                stdout.unbind();
+                stderr.unbind();
+            }
+            synchronized (out) {
+                ControlProtocol.writeExit(out, code);
+                out.flush();
+            }
+        } catch (IOException e) {
+            System.err.println("Control connection error: " + e.getMessage());
+        }
+    }
+
+    // Turns each write into one frame; stdout and stderr share the connection's stream
+    private static class FrameOutputStream extends OutputStream {
+        private final DataOutputStream out;
+        private final byte type;
+
+        FrameOutputStream(DataOutputStream out, byte type) {
+            this.out = out;
+            this.type = type;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            synchronized (out) {
+                ControlProtocol.writeFrame(out, type, b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (out) {
+                out.flush();
+            }
+        }
+    }
+}
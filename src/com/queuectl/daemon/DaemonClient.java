@@ -0,0 +1,111 @@
+package com.queuectl.daemon;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+// Sends a command line to a running daemon and replays its output
+public class DaemonClient {
+    private DaemonClient() {
+    }
+
+    // Returns the command's exit code, or null if no daemon is listening
+    public static Integer tryForward(Path socketPath, String[] args) {
+        if (!Files.exists(socketPath)) {
+            return null;
+        }
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open(UnixDomainSocketAddress.of(socketPath));
+        } catch (IOException e) {
+            // Stale socket file; the command runs in this process instead
+            return null;
+        }
+
+        try (SocketChannel ch = channel) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(ch)));
+            byte[] request = ControlProtocol.encodeArgs(args);
+            ControlProtocol.writeFrame(out, ControlProtocol.REQUEST, request, 0, request.length);
+            out.flush();
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(ch), 1 << 16));
+            while (true) {
+                ControlProtocol.Frame frame = ControlProtocol.readFrame(in);
+                switch (frame.getType()) {
+                    case ControlProtocol.STDOUT:
+                        System.out.write(frame.getPayload());
+                        break;
+                    case ControlProtocol.STDERR:
+                        System.out.flush();
+                        System.err.write(frame.getPayload());
+                        System.err.flush();
+                        break;
+                    case ControlProtocol.EXIT:
+                        System.out.flush();
+                        return frame.getExitCode();
+                    default:
+                        throw new IOException("Unexpected control frame type: " + frame.getType());
+                }
+            }
+        } catch (IOException e) {
+            // The command may have run, so don't run it a second time locally
+            System.out.flush();
+            System.err.println("Lost connection to the daemon: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    // Commands that make sense in the daemon. Local files are resolved here, since the daemon
+    // has its own working directory; input piped on stdin can't be forwarded.
+    public static String[] forwardable(String[] args) {
+        switch (args[0].toLowerCase()) {
+            case "enqueue":
+                if (args.length > 2 && args[1].equals("--file")) {
+                    if (args[2].equals("-")) {
+                        return null;
+                    }
+                    String[] copy = args.clone();
+                    copy[2] = Paths.get(args[2]).toAbsolutePath().toString();
+                    return copy;
+                }
+                for (int i = 2; i < args.length - 1; i++) {
+                    if (args[i].equals("--payload-file")) {
+                        if (args[i + 1].equals("-")) {
+                            return null;
+                        }
+                        String[] copy = args.clone();
+                        copy[i + 1] = Paths.get(args[i + 1]).toAbsolutePath().toString();
+                        return copy;
+                    }
+                }
+                return args;
+            case "workflow":
+                if (args.length > 2 && !args[2].equals("-")) {
+                    String[] copy = args.clone();
+                    copy[2] = Paths.get(args[2]).toAbsolutePath().toString();
+                    return copy;
+                }
+                return args.length > 2 ? null : args;
+            case "worker":
+            case "status":
+            case "list":
+            case "show":
+            case "dlq":
+            case "config":
+            case "archive":
+            case "schedule":
+            case "daemon":
+                return args;
+            default:
+                return null;
+        }
+    }
+}
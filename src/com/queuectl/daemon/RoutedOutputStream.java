@@ -0,0 +1,44 @@
+package com.queuectl.daemon;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+// Installed under System.out/System.err in the daemon. A thread serving a control connection
+// binds its client's stream, so the CLI handlers' prints reach that client; every other thread
+// (workers, lease keeper, ...) keeps writing to the daemon's own console.
+class RoutedOutputStream extends OutputStream {
+    private final OutputStream console;
+    private final ThreadLocal<OutputStream> target = new ThreadLocal<>();
+
+    RoutedOutputStream(OutputStream console) {
+        this.console = console;
+    }
+
+    void bind(OutputStream out) {
+        target.set(out);
+    }
+
+    void unbind() {
+        target.remove();
+    }
+
+    private OutputStream current() {
+        OutputStream out = target.get();
+        return out != null ? out : console;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        current().write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        current().write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        current().flush();
+    }
+}
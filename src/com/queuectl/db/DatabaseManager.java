@@ -3,7 +3,6 @@ package com.queuectl.db;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.Properties;
 
@@ -12,6 +11,8 @@ public class DatabaseManager {
     private String url;
     private String username;
     private String password;
+    private Properties props;
+    private ConnectionPool pool;
 
     private DatabaseManager() {
         loadProperties();
@@ -26,6 +27,7 @@ public class DatabaseManager {
 
     private void loadProperties() {
         Properties props = new Properties();
+        this.props = props;
         try {
             try {
                 props.load(new FileInputStream("db.properties"));
@@ -52,8 +54,33 @@ public class DatabaseManager {
         }
     }
 
+    // Settings from db.properties that are not about the connection itself, such as store.type
+    public String getProperty(String key, String defaultValue) {
+        return props.getProperty(key, defaultValue);
+    }
+
     public Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(url, username, password);
+        return getPool().borrow();
+    }
+
+    private synchronized ConnectionPool getPool() throws SQLException {
+        if (pool == null) {
+            pool = new ConnectionPool(url, username, password, props);
+        } else if (pool.isShutdown()) {
+            throw new SQLException("Database connection pool has been shut down");
+        }
+        return pool;
+    }
+
+    public synchronized String getPoolMetrics() {
+        return pool != null ? pool.getMetricsSummary() : "pool: not started";
+    }
+
+    public synchronized void shutdown() {
+        if (pool != null && !pool.isShutdown()) {
+            System.out.println("Closing database connections (" + pool.getMetricsSummary() + ")");
+            pool.shutdown();
+        }
     }
 
     public void testConnection() {
@@ -0,0 +1,187 @@
+package com.queuectl.db;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Applies migrations/V<version>__<description>.sql files in order and records them in schema_version
+public class SchemaMigrator {
+    private static final Pattern FILE_NAME = Pattern.compile("V(\\d+)__(.+)\\.sql");
+
+    private DatabaseManager dbManager;
+    private Path directory;
+
+    public SchemaMigrator() {
+        this.dbManager = DatabaseManager.getInstance();
+        this.directory = locateDirectory();
+    }
+
+    private static Path locateDirectory() {
+        Path local = Paths.get("migrations");
+        return Files.isDirectory(local) ? local : Paths.get("..", "migrations");
+    }
+
+    public int migrate() throws SQLException, IOException {
+        Map<Integer, Path> available = findMigrations();
+        int applied = 0;
+
+        try (Connection conn = dbManager.getConnection()) {
+            ensureVersionTable(conn);
+            int current = currentVersion(conn);
+
+            for (Map.Entry<Integer, Path> entry : available.entrySet()) {
+                int version = entry.getKey();
+                if (version <= current) {
+                    continue;
+                }
+                System.out.println("Applying migration " + entry.getValue().getFileName() + "...");
+                // MySQL DDL commits implicitly, so each statement is applied on its own
+                try (Statement stmt = conn.createStatement()) {
+                    for (String sql : splitStatements(Files.readString(entry.getValue(), StandardCharsets.UTF_8))) {
+                        stmt.execute(sql);
+                    }
+                }
+                recordVersion(conn, version, describe(entry.getValue()));
+                applied++;
+            }
+        }
+        return applied;
+    }
+
+    public void printStatus() throws SQLException, IOException {
+        Map<Integer, Path> available = findMigrations();
+        try (Connection conn = dbManager.getConnection()) {
+            ensureVersionTable(conn);
+            int current = currentVersion(conn);
+
+            System.out.println("\n=== Schema Migrations ===");
+            for (Map.Entry<Integer, Path> entry : available.entrySet()) {
+                System.out.printf("%-6s %-45s %s\n", "V" + entry.getKey(), describe(entry.getValue()),
+                        entry.getKey() <= current ? "applied" : "pending");
+            }
+            System.out.println("\nCurrent version: " + current);
+            System.out.println();
+        }
+    }
+
+    public int pendingCount() throws SQLException, IOException {
+        Map<Integer, Path> available = findMigrations();
+        try (Connection conn = dbManager.getConnection()) {
+            ensureVersionTable(conn);
+            int current = currentVersion(conn);
+            return (int) available.keySet().stream().filter(v -> v > current).count();
+        }
+    }
+
+    private Map<Integer, Path> findMigrations() throws IOException {
+        Map<Integer, Path> migrations = new TreeMap<>();
+        if (!Files.isDirectory(directory)) {
+            throw new IOException("Migrations directory not found: " + directory.toAbsolutePath());
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "V*__*.sql")) {
+            for (Path file : files) {
+                Matcher m = FILE_NAME.matcher(file.getFileName().toString());
+                if (m.matches()) {
+                    migrations.put(Integer.parseInt(m.group(1)), file);
+                }
+            }
+        }
+        return migrations;
+    }
+
+    private void ensureVersionTable(Connection conn) throws SQLException {
+        boolean existed = tableExists(conn, "schema_version");
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS schema_version (" +
+                    "version INT PRIMARY KEY, " +
+                    "description VARCHAR(255) NOT NULL, " +
+                    "applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+        }
+
+        // Databases created from the old schema.sql already have the tables; baseline them
+        if (!existed && tableExists(conn, "jobs")) {
+            recordVersion(conn, 1, "baseline (existing schema)");
+            if (columnExists(conn, "jobs", "lease_expires_at")) {
+                recordVersion(conn, 2, "claims leases and signals (existing schema)");
+            }
+        }
+    }
+
+    private int currentVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private void recordVersion(Connection conn, int version, String description) throws SQLException {
+        String sql = "INSERT INTO schema_version (version, description) VALUES (?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, version);
+            stmt.setString(2, description);
+            stmt.executeUpdate();
+        }
+    }
+
+    private boolean tableExists(Connection conn, String table) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM information_schema.tables WHERE table_schema = DATABASE() AND table_name = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, table);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return rs.getInt(1) > 0;
+            }
+        }
+    }
+
+    private boolean columnExists(Connection conn, String table, String column) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM information_schema.columns " +
+                    "WHERE table_schema = DATABASE() AND table_name = ? AND column_name = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, table);
+            stmt.setString(2, column);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return rs.getInt(1) > 0;
+            }
+        }
+    }
+
+    private static String describe(Path file) {
+        Matcher m = FILE_NAME.matcher(file.getFileName().toString());
+        return m.matches() ? m.group(2).replace('_', ' ') : file.getFileName().toString();
+    }
+
+    // Statements end with ';' at the end of a line; '--' comment lines are dropped
+    static List<String> splitStatements(String script) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (String line : script.split("\n")) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("--")) {
+                continue;
+            }
+            current.append(line).append('\n');
+            if (trimmed.endsWith(";")) {
+                String sql = current.toString().trim();
+                statements.add(sql.substring(0, sql.length() - 1));
+                current.setLength(0);
+            }
+        }
+        if (current.toString().trim().length() > 0) {
+            statements.add(current.toString().trim());
+        }
+        return statements;
+    }
+}
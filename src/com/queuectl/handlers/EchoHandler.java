@@ -0,0 +1,16 @@
+package com.queuectl.handlers;
+
+import com.queuectl.models.Job;
+
+// java:echo <text> — succeeds with its arguments as output
+public class EchoHandler implements JobHandler {
+    @Override
+    public String name() {
+        return "echo";
+    }
+
+    @Override
+    public String handle(Job job, String args) {
+        return args;
+    }
+}
@@ -0,0 +1,19 @@
+package com.queuectl.handlers;
+
+import com.queuectl.models.Job;
+
+// In-process job code. A job whose command is "java:<name> <args>" runs the handler registered
+// under <name> on the worker thread instead of forking a shell.
+// Plugins are found with ServiceLoader: put the jar on the classpath with a
+// META-INF/services/com.queuectl.handlers.JobHandler file listing the implementations.
+// Implementations need a public no-arg constructor and must be thread-safe; one instance serves every worker.
+public interface JobHandler {
+    // The name jobs use after "java:"
+    String name();
+
+    // The job's payload, if it has one, is already loaded: job.getPayload().
+    // Returning completes the job with the returned output (may be null), stored as its result.
+    // Throwing fails it, and it is retried or moved to the DLQ like a non-zero exit.
+    // A job timeout interrupts the worker thread, so long-running handlers should respond to interrupts.
+    String handle(Job job, String args) throws Exception;
+}
@@ -0,0 +1,95 @@
+package com.queuectl.handlers;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.TreeMap;
+
+// Handlers available to this JVM: the built-ins plus everything ServiceLoader finds, loaded once
+public class JobHandlers {
+    public static final String PREFIX = "java:";
+
+    private static volatile Map<String, JobHandler> handlers;
+
+    private JobHandlers() {
+    }
+
+    public static boolean isHandlerCommand(String command) {
+        return command != null && command.startsWith(PREFIX);
+    }
+
+    // The handler for a "java:<name> <args>" command, or null when none is registered under that name
+    public static JobHandler forCommand(String command) {
+        return all().get(handlerName(command));
+    }
+
+    public static String handlerName(String command) {
+        String rest = command.substring(PREFIX.length()).trim();
+        int space = rest.indexOf(' ');
+        return space < 0 ? rest : rest.substring(0, space);
+    }
+
+    public static String handlerArgs(String command) {
+        String rest = command.substring(PREFIX.length()).trim();
+        int space = rest.indexOf(' ');
+        return space < 0 ? "" : rest.substring(space + 1).trim();
+    }
+
+    public static Map<String, JobHandler> all() {
+        Map<String, JobHandler> loaded = handlers;
+        if (loaded == null) {
+            synchronized (JobHandlers.class) {
+                if (handlers == null) {
+                    handlers = load();
+                }
+                loaded = handlers;
+            }
+        }
+        return loaded;
+    }
+
+    private static Map<String, JobHandler> load() {
+        Map<String, JobHandler> loaded = new TreeMap<>();
+        register(loaded, new NoopHandler());
+        register(loaded, new EchoHandler());
+
+        // A broken plugin is skipped rather than taking every worker, or the plugins listed after
+        // it, down with it. The iterator moves past a provider that fails to load.
+        Iterator<JobHandler> it = ServiceLoader.load(JobHandler.class).iterator();
+        while (true) {
+            JobHandler handler;
+            try {
+                if (!it.hasNext()) {
+                    break;
+                }
+                handler = it.next();
+            } catch (ServiceConfigurationError e) {
+                System.err.println("Skipping job handler: " + e.getMessage());
+                continue;
+            }
+            register(loaded, handler);
+        }
+        return Collections.unmodifiableMap(loaded);
+    }
+
+    private static void register(Map<String, JobHandler> loaded, JobHandler handler) {
+        String name;
+        try {
+            name = handler.name();
+        } catch (RuntimeException | LinkageError e) {
+            System.err.println("Ignoring job handler " + handler.getClass().getName() + ": name() failed: " + e);
+            return;
+        }
+        if (name == null || name.isEmpty() || name.contains(" ")) {
+            System.err.println("Ignoring job handler " + handler.getClass().getName() + ": invalid name '" + name + "'");
+            return;
+        }
+        JobHandler existing = loaded.putIfAbsent(name, handler);
+        if (existing != null && existing != handler) {
+            System.err.println("Ignoring job handler " + handler.getClass().getName() + ": '" + name +
+                    "' is already registered by " + existing.getClass().getName());
+        }
+    }
+}
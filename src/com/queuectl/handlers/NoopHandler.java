@@ -0,0 +1,16 @@
+package com.queuectl.handlers;
+
+import com.queuectl.models.Job;
+
+// java:noop — succeeds immediately; the in-process counterpart of `true`
+public class NoopHandler implements JobHandler {
+    @Override
+    public String name() {
+        return "noop";
+    }
+
+    @Override
+    public String handle(Job job, String args) {
+        return null;
+    }
+}
@@ -0,0 +1,132 @@
+package com.queuectl.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Lock-free latency histogram in microseconds. Buckets are log-linear like HdrHistogram: exact
+// below 16us, then 16 sub-buckets per power of two, so any recorded value is reported within about
+// 6%. Covers up to about 2^40us (12 days); larger values land in the last bucket.
+// Buckets are kept per window of WINDOW_MILLIS and percentiles read the previous window plus the
+// current one, so they follow the latency of the last minute or two rather than the process's
+// lifetime. Count and sum are cumulative, as Prometheus expects of a summary's _count and _sum.
+public class Histogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB_BUCKETS;
+    private static final long WINDOW_MILLIS = 60_000;
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private volatile Window current = new Window(System.currentTimeMillis());
+    private volatile Window previous = new Window(0);
+
+    private static class Window {
+        private final long startMillis;
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final AtomicLong max = new AtomicLong();
+
+        Window(long startMillis) {
+            this.startMillis = startMillis;
+        }
+    }
+
+    public void record(long micros) {
+        long value = Math.max(0, micros);
+        Window window = window(System.currentTimeMillis());
+        window.counts.incrementAndGet(bucketOf(value));
+        count.increment();
+        sum.add(value);
+        long current = window.max.get();
+        while (value > current && !window.max.compareAndSet(current, value)) {
+            current = window.max.get();
+        }
+    }
+
+    public void recordSince(long startNanos) {
+        record((System.nanoTime() - startNanos) / 1000);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    // Largest value of the previous and current windows
+    public long getMax() {
+        window(System.currentTimeMillis());
+        return Math.max(previous.max.get(), current.max.get());
+    }
+
+    // Midpoint of the bucket holding the p-th percentile (0-100) of the previous and current
+    // windows, capped at their max
+    public long percentile(double p) {
+        Window latest = window(System.currentTimeMillis());
+        Window earlier = previous;
+        long total = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = latest.counts.get(i) + earlier.counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long max = Math.max(latest.max.get(), earlier.max.get());
+        long rank = Math.max(1, (long) Math.ceil(p / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                long lower = lowerBound(i);
+                long width = i < SUB_BUCKETS ? 1 : lowerBound(i + 1) - lower;
+                return Math.min(lower + width / 2, max);
+            }
+        }
+        return max;
+    }
+
+    // The window now falls in, rotating first if the current one has ended. A record racing a
+    // rotation may land in the window just retired, which is still read as the previous one.
+    private Window window(long now) {
+        Window window = current;
+        if (now - window.startMillis < WINDOW_MILLIS) {
+            return window;
+        }
+        synchronized (this) {
+            window = current;
+            if (now - window.startMillis >= WINDOW_MILLIS) {
+                // After an idle stretch longer than a window, nothing recent is left to keep
+                previous = now - window.startMillis < 2 * WINDOW_MILLIS ? window : new Window(0);
+                current = new Window(now - (now - window.startMillis) % WINDOW_MILLIS);
+                window = current;
+            }
+            return window;
+        }
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) ((value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1));
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long lowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        return (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+    }
+}
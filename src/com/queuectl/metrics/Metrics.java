@@ -0,0 +1,106 @@
+package com.queuectl.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+// Process-wide metric registry. Callers look a metric up once, keep it in a field and then only
+// touch lock-free counters on the hot path. render() writes the Prometheus text format;
+// histograms are exported as summaries in seconds: quantiles over the last minute or two, plus
+// cumulative _sum and _count for server-side rates.
+public class Metrics {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final Map<String, Family> families = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    public static LongAdder counter(String name, String help) {
+        return counter(name, help, null, null);
+    }
+
+    public static LongAdder counter(String name, String help, String label, String value) {
+        return (LongAdder) family(name, help, "counter").metrics.computeIfAbsent(labels(label, value), k -> new LongAdder());
+    }
+
+    public static Histogram histogram(String name, String help) {
+        return histogram(name, help, null, null);
+    }
+
+    public static Histogram histogram(String name, String help, String label, String value) {
+        return (Histogram) family(name, help, "summary").metrics.computeIfAbsent(labels(label, value), k -> new Histogram());
+    }
+
+    // Replaces any earlier supplier, so a restarted component can register itself again
+    public static void gauge(String name, String help, LongSupplier supplier) {
+        family(name, help, "gauge").metrics.put("", supplier);
+    }
+
+    public static String render() {
+        StringBuilder out = new StringBuilder(4096);
+        for (Family family : new TreeMap<>(families).values()) {
+            out.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(family.name).append(' ').append(family.type).append('\n');
+            for (Map.Entry<String, Object> entry : new TreeMap<>(family.metrics).entrySet()) {
+                String labels = entry.getKey();
+                Object metric = entry.getValue();
+                if (metric instanceof LongAdder) {
+                    sample(out, family.name, labels, ((LongAdder) metric).sum());
+                } else if (metric instanceof LongSupplier) {
+                    sample(out, family.name, labels, ((LongSupplier) metric).getAsLong());
+                } else {
+                    Histogram histogram = (Histogram) metric;
+                    for (double q : QUANTILES) {
+                        String quantile = "quantile=\"" + q + "\"";
+                        sample(out, family.name, labels.isEmpty() ? quantile : labels + "," + quantile,
+                                histogram.percentile(q * 100) / 1e6);
+                    }
+                    sample(out, family.name + "_sum", labels, histogram.getSum() / 1e6);
+                    sample(out, family.name + "_count", labels, histogram.getCount());
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+
+    private static Family family(String name, String help, String type) {
+        Family family = families.computeIfAbsent(name, n -> new Family(n, help, type));
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as a " + family.type);
+        }
+        return family;
+    }
+
+    private static String labels(String label, String value) {
+        return label == null ? "" : label + "=\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private static class Family {
+        private final String name;
+        private final String help;
+        private final String type;
+        private final Map<String, Object> metrics = new ConcurrentHashMap<>();
+
+        Family(String name, String help, String type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+    }
+}
@@ -1,22 +1,49 @@
 package com.queuectl.models;
 
 import java.sql.Timestamp;
+import java.util.List;
 
 public class Job {
+    public static final String FAILURE_EXIT_CODE = "exit_code";
+    public static final String FAILURE_TIMEOUT = "timeout";
+    public static final String FAILURE_ERROR = "error";
+    public static final String FAILURE_DEPENDENCY = "dependency";
+    public static final String DEFAULT_QUEUE = "default";
+
     private String id;
     private String command;
+    // Loaded only when asked for; payloadBytes and resultBytes are always there (-1 = none)
+    private byte[] payload;
+    private int payloadBytes = -1;
     private String state;
     private int attempts;
     private int maxRetries;
     private Timestamp createdAt;
     private Timestamp updatedAt;
     private Timestamp nextRetryAt;
+    private Timestamp runAt;
     private String errorMessage;
+    private String workerId;
+    private String result;
+    private int resultBytes = -1;
+    private int timeoutSeconds;
+    private String failureReason;
+    private String queue;
+    private int priority;
+    // Jobs that must complete before this one runs; a job waiting on them is 'blocked'
+    private List<String> dependsOn = List.of();
+    private int depsRemaining;
+    // Set by enqueue --delay; run_at is then computed from the database clock
+    private long delayMillis;
+    // Set when the job is claimed; not persisted
+    private long queueWaitMicros = -1;
+    private long claimedAtNanos;
 
     public Job() {
         this.state = "pending";
         this.attempts = 0;
         this.maxRetries = 3;
+        this.queue = DEFAULT_QUEUE;
     }
 
     public Job(String id, String command) {
@@ -32,6 +59,15 @@ public class Job {
     public String getCommand() { return command; }
     public void setCommand(String command) { this.command = command; }
 
+    public byte[] getPayload() { return payload; }
+    public void setPayload(byte[] payload) {
+        this.payload = payload;
+        this.payloadBytes = payload != null ? payload.length : -1;
+    }
+
+    public int getPayloadBytes() { return payloadBytes; }
+    public void setPayloadBytes(int payloadBytes) { this.payloadBytes = payloadBytes; }
+
     public String getState() { return state; }
     public void setState(String state) { this.state = state; }
 
@@ -50,9 +86,48 @@ public class Job {
     public Timestamp getNextRetryAt() { return nextRetryAt; }
     public void setNextRetryAt(Timestamp nextRetryAt) { this.nextRetryAt = nextRetryAt; }
 
+    public Timestamp getRunAt() { return runAt; }
+    public void setRunAt(Timestamp runAt) { this.runAt = runAt; }
+
     public String getErrorMessage() { return errorMessage; }
     public void setErrorMessage(String errorMessage) { this.errorMessage = errorMessage; }
 
+    public String getWorkerId() { return workerId; }
+    public void setWorkerId(String workerId) { this.workerId = workerId; }
+
+    public String getResult() { return result; }
+    public void setResult(String result) { this.result = result; }
+
+    public int getResultBytes() { return resultBytes; }
+    public void setResultBytes(int resultBytes) { this.resultBytes = resultBytes; }
+
+    public int getTimeoutSeconds() { return timeoutSeconds; }
+    public void setTimeoutSeconds(int timeoutSeconds) { this.timeoutSeconds = timeoutSeconds; }
+
+    public String getFailureReason() { return failureReason; }
+    public void setFailureReason(String failureReason) { this.failureReason = failureReason; }
+
+    public String getQueue() { return queue; }
+    public void setQueue(String queue) { this.queue = queue; }
+
+    public int getPriority() { return priority; }
+    public void setPriority(int priority) { this.priority = priority; }
+
+    public List<String> getDependsOn() { return dependsOn; }
+    public void setDependsOn(List<String> dependsOn) { this.dependsOn = dependsOn != null ? List.copyOf(dependsOn) : List.of(); }
+
+    public int getDepsRemaining() { return depsRemaining; }
+    public void setDepsRemaining(int depsRemaining) { this.depsRemaining = depsRemaining; }
+
+    public long getDelayMillis() { return delayMillis; }
+    public void setDelayMillis(long delayMillis) { this.delayMillis = delayMillis; }
+
+    public long getQueueWaitMicros() { return queueWaitMicros; }
+    public void setQueueWaitMicros(long queueWaitMicros) { this.queueWaitMicros = queueWaitMicros; }
+
+    public long getClaimedAtNanos() { return claimedAtNanos; }
+    public void setClaimedAtNanos(long claimedAtNanos) { this.claimedAtNanos = claimedAtNanos; }
+
     @Override
     public String toString() {
         return String.format("Job{id='%s', command='%s', state='%s', attempts=%d, maxRetries=%d}",
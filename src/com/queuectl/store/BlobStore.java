@@ -0,0 +1,236 @@
+package com.queuectl.store;
+
+import com.queuectl.core.ConfigManager;
+import com.queuectl.db.DatabaseManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Turns job payloads and results into the single value ("cell") a row stores, by size:
+//   up to blob-inline-bytes   the bytes as they are
+//   up to blob-spill-bytes    Deflate-compressed, when that saves space
+//   larger                    a content-addressed file under blob.dir; the cell holds its SHA-256
+// The first byte of a cell says which. Spilled files use the raw/deflate encoding themselves,
+// and identical values share one file. Reference counting is up to the store holding the cells.
+public class BlobStore {
+    private static final byte RAW = 0;
+    private static final byte DEFLATE = 1;
+    private static final byte REF = 2;
+    private static final int HASH_BYTES = 32;
+
+    private static BlobStore instance;
+
+    private final Path dir;
+    private final ConfigManager configManager;
+
+    public BlobStore(Path dir) {
+        this.dir = dir;
+        this.configManager = new ConfigManager();
+    }
+
+    // Files live under blob.dir from db.properties (default blobs), a per-host path like store.path.
+    // Workers on other hosts need it on shared storage to read spilled payloads.
+    public static synchronized BlobStore get() {
+        if (instance == null) {
+            instance = new BlobStore(Paths.get(DatabaseManager.getInstance().getProperty("blob.dir", "blobs")));
+        }
+        return instance;
+    }
+
+    // A value ready to be stored. Spilled values carry their file content until write() is called.
+    public static class Cell {
+        private final byte[] bytes;
+        private final String ref;
+        private final byte[] spill;
+        private final int size;
+
+        private Cell(byte[] bytes, String ref, byte[] spill, int size) {
+            this.bytes = bytes;
+            this.ref = ref;
+            this.spill = spill;
+            this.size = size;
+        }
+
+        public byte[] getBytes() { return bytes; }
+        public String getRef() { return ref; }
+        public int getSize() { return size; }
+    }
+
+    // Null in, null out. Compression happens here, so call it outside any lock or transaction.
+    public Cell encode(byte[] value) {
+        if (value == null) {
+            return null;
+        }
+        int inlineBytes = configManager.getConfigInt("blob-inline-bytes", 1024);
+        int spillBytes = configManager.getConfigInt("blob-spill-bytes", 65536);
+        if (value.length <= inlineBytes) {
+            return new Cell(tagged(RAW, value), null, null, value.length);
+        }
+        byte[] packed = pack(value);
+        if (value.length <= spillBytes) {
+            return new Cell(packed, null, null, value.length);
+        }
+
+        byte[] hash = sha256(value);
+        ByteBuffer ref = ByteBuffer.allocate(1 + 4 + HASH_BYTES);
+        ref.put(REF).putInt(value.length).put(hash);
+        return new Cell(ref.array(), hex(hash), packed, value.length);
+    }
+
+    // Writes a spilled cell's file unless an identical value is already there. Atomic, so a
+    // reader never sees a partial file.
+    public void write(Cell cell) throws IOException {
+        if (cell == null || cell.spill == null) {
+            return;
+        }
+        Path file = pathOf(cell.ref);
+        if (Files.exists(file)) {
+            return;
+        }
+        Files.createDirectories(file.getParent());
+        Path temp = Files.createTempFile(file.getParent(), cell.ref, ".tmp");
+        try {
+            Files.write(temp, cell.spill);
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public byte[] decode(byte[] cell) throws IOException {
+        if (cell == null || cell.length == 0) {
+            return null;
+        }
+        ByteBuffer in = ByteBuffer.wrap(cell);
+        byte tag = in.get();
+        switch (tag) {
+            case RAW:
+                return Arrays.copyOfRange(cell, 1, cell.length);
+            case DEFLATE:
+                return inflate(in);
+            case REF:
+                in.getInt();
+                byte[] hash = new byte[HASH_BYTES];
+                in.get(hash);
+                byte[] file;
+                try {
+                    file = Files.readAllBytes(pathOf(hex(hash)));
+                } catch (NoSuchFileException e) {
+                    throw new IOException("Blob " + hex(hash) + " is missing from " + dir);
+                }
+                if (file.length > 0 && file[0] == REF) {
+                    throw new IOException("Blob " + hex(hash) + " is corrupt");
+                }
+                return decode(file);
+            default:
+                throw new IOException("Unknown blob encoding " + tag);
+        }
+    }
+
+    // The hash a cell refers to, or null when its value is stored inline
+    public static String refOf(byte[] cell) {
+        if (cell == null || cell.length != 1 + 4 + HASH_BYTES || cell[0] != REF) {
+            return null;
+        }
+        byte[] hash = new byte[HASH_BYTES];
+        System.arraycopy(cell, 5, hash, 0, HASH_BYTES);
+        return hex(hash);
+    }
+
+    public boolean delete(String ref) throws IOException {
+        return Files.deleteIfExists(pathOf(ref));
+    }
+
+    // Two-level fan-out keeps directories small: blobs/ab/abcdef...
+    private Path pathOf(String ref) {
+        return dir.resolve(ref.substring(0, 2)).resolve(ref);
+    }
+
+    // Deflate at BEST_SPEED: a compression ratio close to zlib's default for a fraction of the CPU.
+    // Falls back to the raw bytes when compression doesn't help.
+    private static byte[] pack(byte[] value) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(value);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(value.length / 2 + 16);
+            out.write(DEFLATE);
+            out.write(value.length >>> 24);
+            out.write(value.length >>> 16);
+            out.write(value.length >>> 8);
+            out.write(value.length);
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(chunk);
+                out.write(chunk, 0, n);
+                if (out.size() > value.length) {
+                    return tagged(RAW, value);
+                }
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(ByteBuffer in) throws IOException {
+        byte[] value = new byte[in.getInt()];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(in.array(), in.position(), in.remaining());
+            int filled = 0;
+            while (filled < value.length) {
+                int n = inflater.inflate(value, filled, value.length - filled);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new IOException("Truncated compressed blob");
+                }
+                filled += n;
+            }
+            return value;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt compressed blob: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static byte[] tagged(byte tag, byte[] value) {
+        byte[] cell = new byte[value.length + 1];
+        cell[0] = tag;
+        System.arraycopy(value, 0, cell, 1, value.length);
+        return cell;
+    }
+
+    private static byte[] sha256(byte[] value) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(value);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+}
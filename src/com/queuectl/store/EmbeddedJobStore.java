@@ -0,0 +1,1274 @@
+package com.queuectl.store;
+
+import com.queuectl.core.DependencyGraph;
+import com.queuectl.core.JobAck;
+import com.queuectl.core.JobNotifier;
+import com.queuectl.core.JobStore;
+import com.queuectl.core.QueueStats;
+import com.queuectl.models.Job;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+// Single-node JobStore: every job lives in memory, indexed by queue in claim order, and every
+// change is appended to a JobLog before it is applied. Opening the store replays the log.
+// Writers wait for their record to reach disk only after releasing the store lock, so under
+// store.fsync=always concurrent workers share one group commit instead of an fsync each.
+// Stored Job objects are never mutated; a change writes a modified copy and swaps it in, so the
+// sorted indexes stay valid. Only one process may hold the store open at a time.
+// Payloads and results are kept encoded by BlobStore next to the jobs, and a job record carries
+// them only when they change. There is no archive: dropFinishedJobs() removes completed and dead
+// jobs past the archiver's limits with a drop record, and compaction leaves them out. Spilled files
+// are counted in memory, rebuilt on open, and deleted once the drop records naming them are synced.
+// Job dependencies are tracked by an in-memory DependencyGraph that isn't logged: opening the
+// store rebuilds it from the blocked jobs and the states of their parents.
+public class EmbeddedJobStore implements JobStore {
+    private static final byte RECORD_JOB = 1;
+    private static final byte RECORD_CONFIG = 2;
+    private static final byte RECORD_DROP = 3;
+    private static final long NO_TIME = Long.MIN_VALUE;
+    private static final byte CELL_UNCHANGED = 0;
+    private static final byte CELL_SET = 1;
+    // The log is rewritten as a snapshot once it holds this many records and twice the live jobs
+    private static final long COMPACT_MIN_RECORDS = 1_000_000;
+
+    // Same order as idx_queue_ready: priority first, then oldest run_at
+    private static final Comparator<Job> READY_ORDER = Comparator.comparingInt((Job j) -> -j.getPriority())
+            .thenComparing(Job::getRunAt).thenComparing(Job::getCreatedAt).thenComparing(Job::getId);
+    private static final Comparator<Job> DUE_ORDER = Comparator.comparing(Job::getRunAt).thenComparing(Job::getId);
+    // Same order as idx_terminal: oldest finished first
+    private static final Comparator<Job> FINISHED_ORDER = Comparator.comparing(Job::getUpdatedAt).thenComparing(Job::getId);
+    // Same order as list pages: newest first
+    private static final Comparator<Job> LIST_ORDER = Comparator.comparing(Job::getCreatedAt).reversed()
+            .thenComparing(Comparator.comparing(Job::getId).reversed());
+
+    private final String path;
+    private final String fsync;
+    private final long fsyncIntervalMillis;
+    private final long groupCommitMillis;
+    private final int groupCommitRecords;
+    private final JobNotifier notifier;
+    private final BlobStore blobs;
+
+    private JobLog log;
+    private final Map<String, Job> jobs = new HashMap<>();
+    private final Map<String, byte[]> payloadCells = new HashMap<>();
+    private final Map<String, byte[]> resultCells = new HashMap<>();
+    private final Map<String, TreeSet<Job>> ready = new HashMap<>();
+    // Jobs whose run_at is still in the future: scheduled jobs and failed jobs waiting to retry
+    private final TreeSet<Job> delayed = new TreeSet<>(DUE_ORDER);
+    private final TreeSet<Job> byCreated = new TreeSet<>(LIST_ORDER);
+    // Completed and dead jobs by state, for dropFinishedJobs
+    private final Map<String, TreeSet<Job>> finished = new HashMap<>();
+    // Jobs referring to each spilled file
+    private final Map<String, Integer> blobRefs = new HashMap<>();
+    // Files nothing referred to any more, deleted after the next sync
+    private final Set<String> unreferenced = new HashSet<>();
+    private final Map<String, Integer> counts = new HashMap<>();
+    private final DependencyGraph graph = new DependencyGraph();
+    private final Map<String, String> config = new HashMap<>();
+    private final Set<String> activeWorkers = new LinkedHashSet<>();
+    private long configVersion;
+    private long signalSequence;
+    private long lastSeq;
+    private long compactAfter = COMPACT_MIN_RECORDS;
+
+    public EmbeddedJobStore(String path, String fsync, long fsyncIntervalMillis, long groupCommitMillis, int groupCommitRecords) {
+        this.path = path;
+        this.fsync = fsync;
+        this.fsyncIntervalMillis = fsyncIntervalMillis;
+        this.groupCommitMillis = groupCommitMillis;
+        this.groupCommitRecords = groupCommitRecords;
+        this.notifier = JobNotifier.getInstance();
+        this.blobs = BlobStore.get();
+    }
+
+    @Override
+    public void enqueue(Job job) throws SQLException {
+        BlobStore.Cell payload = store(job.getPayload());
+        boolean blocked;
+        Durable durable;
+        synchronized (this) {
+            ensureOpen();
+            if (jobs.containsKey(job.getId())) {
+                throw new SQLIntegrityConstraintViolationException("Duplicate entry '" + job.getId() + "' for key 'PRIMARY'");
+            }
+            List<String> waitingOn = unresolvedParents(job, Set.of());
+            Job stored = block(newJob(job, payload, System.currentTimeMillis()), waitingOn);
+            commit(null, stored, payload, null);
+            blocked = stored.getState().equals("blocked");
+            durable = durable();
+        }
+        durable.await();
+        if (!blocked) {
+            signalNew(job);
+        }
+    }
+
+    @Override
+    public List<String> enqueueBatch(List<Job> batch) throws SQLException {
+        List<String> duplicates = new ArrayList<>();
+        Map<String, BlobStore.Cell> payloads = new HashMap<>();
+        for (Job job : batch) {
+            if (job.getPayload() != null) {
+                payloads.put(job.getId(), store(job.getPayload()));
+            }
+        }
+        int readyCount = 0;
+        Durable durable;
+        synchronized (this) {
+            ensureOpen();
+            long now = System.currentTimeMillis();
+            // Parents go in before the jobs depending on them; the whole batch is checked first
+            Map<String, Job> unique = new LinkedHashMap<>();
+            Map<String, List<String>> parentsById = new LinkedHashMap<>();
+            for (Job job : batch) {
+                if (jobs.containsKey(job.getId()) || unique.containsKey(job.getId())) {
+                    duplicates.add(job.getId());
+                    continue;
+                }
+                unique.put(job.getId(), job);
+                parentsById.put(job.getId(), job.getDependsOn());
+            }
+            List<String> order;
+            try {
+                order = DependencyGraph.order(parentsById);
+            } catch (IllegalArgumentException e) {
+                throw new SQLException(e.getMessage());
+            }
+            Map<String, List<String>> waitingOn = new HashMap<>();
+            for (Job job : unique.values()) {
+                waitingOn.put(job.getId(), unresolvedParents(job, unique.keySet()));
+            }
+
+            for (String id : order) {
+                Job job = unique.get(id);
+                BlobStore.Cell payload = payloads.get(job.getId());
+                Job stored = block(newJob(job, payload, now), waitingOn.get(id));
+                commit(null, stored, payload, null);
+                if (stored.getState().equals("blocked")) {
+                    continue;
+                }
+                if (stored.getRunAt().getTime() <= now) {
+                    readyCount++;
+                } else {
+                    notifier.signalAfter(stored.getRunAt().getTime() - now);
+                }
+            }
+            signalSequence += readyCount;
+            durable = durable();
+        }
+        durable.await();
+        if (readyCount > 0) {
+            notifier.signal(readyCount);
+        }
+        return duplicates;
+    }
+
+    // Claims and releases don't wait for the disk: recovery puts processing jobs back to pending
+    // anyway, so losing one of these records changes nothing
+    @Override
+    public synchronized List<Job> dequeueBatch(String workerId, String queue, int limit) throws SQLException {
+        List<Job> claimed = new ArrayList<>();
+        if (limit <= 0) {
+            return claimed;
+        }
+        ensureOpen();
+        long now = System.currentTimeMillis();
+        promoteDue(now);
+
+        TreeSet<Job> queued = ready.get(queue);
+        long claimedAt = System.nanoTime();
+        while (queued != null && !queued.isEmpty() && claimed.size() < limit) {
+            Job job = queued.first();
+            Job after = copy(job);
+            after.setState("processing");
+            after.setWorkerId(workerId);
+            after.setUpdatedAt(new Timestamp(now));
+            commit(job, after);
+
+            Job result = copy(after);
+            // Waiting time counts from run_at, as in JobQueue
+            result.setQueueWaitMicros(Math.max(0, now - job.getRunAt().getTime()) * 1000);
+            result.setClaimedAtNanos(claimedAt);
+            claimed.add(result);
+        }
+        return claimed;
+    }
+
+    @Override
+    public int releaseJobs(String workerId, List<Job> released) throws SQLException {
+        int count = 0;
+        synchronized (this) {
+            ensureOpen();
+            for (Job job : released) {
+                Job current = jobs.get(job.getId());
+                if (current == null || !current.getState().equals("processing") || !workerId.equals(current.getWorkerId())) {
+                    continue;
+                }
+                Job after = copy(current);
+                after.setState("pending");
+                after.setWorkerId(null);
+                after.setUpdatedAt(new Timestamp(System.currentTimeMillis()));
+                commit(current, after);
+                count++;
+            }
+            signalSequence += count;
+        }
+        if (count > 0) {
+            notifier.signal(count);
+        }
+        return count;
+    }
+
+    @Override
+    public void markJobCompleted(String jobId, String workerId, String result) throws SQLException {
+        BlobStore.Cell cell = store(utf8(result));
+        int released;
+        Durable durable;
+        synchronized (this) {
+            Job after = owned(jobId, workerId);
+            if (after == null) {
+                return;
+            }
+            after.setState("completed");
+            setResult(after, cell);
+            commit(jobs.get(jobId), after, null, cell);
+            released = settle(jobId, "completed", after.getUpdatedAt().getTime());
+            durable = durable();
+        }
+        durable.await();
+        signalReleased(released);
+    }
+
+    @Override
+    public void markJobFailed(String jobId, String workerId, String errorMessage, String failureReason, long nextRetryDelay) throws SQLException {
+        Durable durable;
+        synchronized (this) {
+            Job after = owned(jobId, workerId);
+            if (after == null) {
+                return;
+            }
+            Timestamp retryAt = new Timestamp(after.getUpdatedAt().getTime() + nextRetryDelay * 1000);
+            after.setState("failed");
+            after.setErrorMessage(errorMessage);
+            after.setFailureReason(failureReason);
+            after.setAttempts(after.getAttempts() + 1);
+            after.setNextRetryAt(retryAt);
+            after.setRunAt(retryAt);
+            commit(jobs.get(jobId), after);
+            durable = durable();
+        }
+        durable.await();
+        notifier.signalAfter(nextRetryDelay * 1000);
+    }
+
+    @Override
+    public void markJobDead(String jobId, String workerId, String errorMessage, String failureReason) throws SQLException {
+        int released;
+        Durable durable;
+        synchronized (this) {
+            Job after = owned(jobId, workerId);
+            if (after == null) {
+                return;
+            }
+            after.setState("dead");
+            after.setErrorMessage(errorMessage);
+            after.setFailureReason(failureReason);
+            after.setAttempts(after.getAttempts() + 1);
+            commit(jobs.get(jobId), after);
+            released = settle(jobId, "dead", after.getUpdatedAt().getTime());
+            durable = durable();
+        }
+        durable.await();
+        signalReleased(released);
+    }
+
+    @Override
+    public void retryDeadJob(String jobId) throws SQLException {
+        boolean blocked;
+        Durable durable;
+        synchronized (this) {
+            Job after = modify(jobId);
+            if (after == null || !after.getState().equals("dead")) {
+                throw new SQLException("Job not found in DLQ or not in dead state");
+            }
+            after.setState("pending");
+            after.setAttempts(0);
+            after.setErrorMessage(null);
+            after.setFailureReason(null);
+            after.setNextRetryAt(null);
+            after.setRunAt(after.getUpdatedAt());
+            // A job still waiting on parents goes back to waiting
+            List<String> waitingOn = unresolvedParents(after);
+            after.setState(waitingOn.isEmpty() ? "pending" : "blocked");
+            commit(jobs.get(jobId), after);
+            blocked = !waitingOn.isEmpty();
+            if (blocked) {
+                graph.block(jobId, waitingOn);
+            } else {
+                signalSequence++;
+            }
+            durable = durable();
+        }
+        durable.await();
+        if (!blocked) {
+            notifier.signal(1);
+        }
+    }
+
+    // The whole batch shares one lock hold and one durable wait
+    @Override
+    public void acknowledge(List<JobAck> acks) throws SQLException {
+        List<Long> retryDelays = new ArrayList<>();
+        Map<String, BlobStore.Cell> results = new HashMap<>();
+        for (JobAck ack : acks) {
+            if (ack.getState().equals("completed") && ack.getResult() != null) {
+                results.put(ack.getJobId(), store(utf8(ack.getResult())));
+            }
+        }
+        int released = 0;
+        Durable durable;
+        synchronized (this) {
+            ensureOpen();
+            long now = System.currentTimeMillis();
+            for (JobAck ack : acks) {
+                Job current = jobs.get(ack.getJobId());
+                if (current == null || !current.getState().equals("processing") || !ack.getWorkerId().equals(current.getWorkerId())) {
+                    continue;
+                }
+                Job after = copy(current);
+                after.setState(ack.getState());
+                after.setUpdatedAt(new Timestamp(now));
+                BlobStore.Cell result = null;
+                if (ack.getState().equals("completed")) {
+                    result = results.get(ack.getJobId());
+                    setResult(after, result);
+                    if (ack.getErrorMessage() != null) {
+                        after.setErrorMessage(ack.getErrorMessage());
+                    }
+                } else {
+                    after.setErrorMessage(ack.getErrorMessage());
+                    after.setFailureReason(ack.getFailureReason());
+                    after.setAttempts(after.getAttempts() + 1);
+                    if (ack.getState().equals("failed")) {
+                        Timestamp retryAt = new Timestamp(now + ack.getRetryDelaySeconds() * 1000);
+                        after.setNextRetryAt(retryAt);
+                        after.setRunAt(retryAt);
+                        retryDelays.add(ack.getRetryDelaySeconds() * 1000);
+                    }
+                }
+                commit(current, after, null, result);
+                if (!ack.getState().equals("failed")) {
+                    released += settle(ack.getJobId(), ack.getState(), now);
+                }
+            }
+            durable = durable();
+        }
+        durable.await();
+        signalReleased(released);
+        for (long delay : retryDelays) {
+            notifier.signalAfter(delay);
+        }
+    }
+
+    // Blobs are decoded after leaving the lock, since spilled ones are read from disk
+    @Override
+    public Job getJob(String jobId, boolean withBlobs) throws SQLException {
+        Job job;
+        byte[] payload;
+        byte[] result;
+        synchronized (this) {
+            ensureOpen();
+            Job stored = jobs.get(jobId);
+            if (stored == null) {
+                return null;
+            }
+            job = copy(stored);
+            job.setDepsRemaining(graph.remaining(jobId));
+            payload = payloadCells.get(jobId);
+            result = resultCells.get(jobId);
+        }
+        if (withBlobs) {
+            int payloadBytes = job.getPayloadBytes();
+            job.setPayload(decode(payload));
+            job.setPayloadBytes(payloadBytes);
+            if (result != null) {
+                job.setResult(new String(decode(result), StandardCharsets.UTF_8));
+            }
+        }
+        return job;
+    }
+
+    @Override
+    public Map<String, byte[]> readPayloads(Collection<String> jobIds) throws SQLException {
+        Map<String, byte[]> cells = new HashMap<>();
+        synchronized (this) {
+            ensureOpen();
+            for (String id : jobIds) {
+                byte[] cell = payloadCells.get(id);
+                if (cell != null) {
+                    cells.put(id, cell);
+                }
+            }
+        }
+        Map<String, byte[]> payloads = new HashMap<>();
+        for (Map.Entry<String, byte[]> entry : cells.entrySet()) {
+            payloads.put(entry.getKey(), decode(entry.getValue()));
+        }
+        return payloads;
+    }
+
+    @Override
+    public synchronized List<String> getDependencies(String jobId) throws SQLException {
+        ensureOpen();
+        Job job = jobs.get(jobId);
+        return job != null ? job.getDependsOn() : List.of();
+    }
+
+    @Override
+    public synchronized List<Job> fetchPage(String state, Timestamp since, Timestamp afterCreatedAt, String afterId, int size) throws SQLException {
+        ensureOpen();
+        List<Job> page = new ArrayList<>();
+        Set<Job> candidates = byCreated;
+        if (afterId != null) {
+            Job probe = new Job(afterId, null);
+            probe.setCreatedAt(afterCreatedAt);
+            candidates = byCreated.tailSet(probe, false);
+        }
+        for (Job job : candidates) {
+            if (since != null && job.getCreatedAt().before(since)) {
+                break;
+            }
+            if (state == null || state.equals(job.getState())) {
+                page.add(copy(job));
+                if (page.size() >= size) {
+                    break;
+                }
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public synchronized int[] getJobStats() throws SQLException {
+        ensureOpen();
+        int[] stats = new int[QueueStats.STATES.length]; // pending, processing, completed, failed, dead, scheduled, blocked
+        for (int i = 0; i < stats.length; i++) {
+            stats[i] = counts.getOrDefault(QueueStats.STATES[i], 0);
+        }
+        return stats;
+    }
+
+    // Counters are kept under the same lock as the jobs, so this only finds drift after a bug
+    @Override
+    public synchronized Map<String, Integer> reconcileJobStats() throws SQLException {
+        ensureOpen();
+        Map<String, Integer> actual = new HashMap<>();
+        for (Job job : jobs.values()) {
+            actual.merge(job.getState(), 1, Integer::sum);
+        }
+        Map<String, Integer> drift = new TreeMap<>();
+        for (String state : QueueStats.STATES) {
+            int delta = actual.getOrDefault(state, 0) - counts.getOrDefault(state, 0);
+            if (delta != 0) {
+                drift.put(state, delta);
+            }
+        }
+        counts.clear();
+        counts.putAll(actual);
+        return drift;
+    }
+
+    @Override
+    public synchronized List<String> listQueues() throws SQLException {
+        ensureOpen();
+        return new ArrayList<>(new TreeMap<>(ready).keySet());
+    }
+
+    // Retries that came due sit in the same sets; only pending jobs are counted, as in JobQueue
+    @Override
+    public synchronized long countPending(Collection<String> queues, long cap) throws SQLException {
+        ensureOpen();
+        promoteDue(System.currentTimeMillis());
+        long total = 0;
+        for (String queue : queues) {
+            TreeSet<Job> queued = ready.get(queue);
+            if (queued == null) {
+                continue;
+            }
+            for (Job job : queued) {
+                if (total >= cap) {
+                    return total;
+                }
+                if (job.getState().equals("pending")) {
+                    total++;
+                }
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public synchronized long readSignalSequence() throws SQLException {
+        ensureOpen();
+        return signalSequence;
+    }
+
+    @Override
+    public synchronized void heartbeatWorkers(List<String> workerIds) {
+        activeWorkers.addAll(workerIds);
+    }
+
+    @Override
+    public synchronized void markWorkersStopped(List<String> workerIds) {
+        activeWorkers.removeAll(workerIds);
+    }
+
+    // Leases guard against workers in other processes dying; this store has no other processes,
+    // and jobs still processing when it was last closed are requeued on open
+    @Override
+    public int renewLeases(List<String> workerIds) {
+        return 0;
+    }
+
+    @Override
+    public int reapExpiredLeases(int batchSize) {
+        return 0;
+    }
+
+    @Override
+    public int markSilentWorkersLost() {
+        return 0;
+    }
+
+    @Override
+    public synchronized List<String> listActiveWorkers() {
+        return new ArrayList<>(activeWorkers);
+    }
+
+    public synchronized Map<String, String> configValues() throws SQLException {
+        ensureOpen();
+        return new HashMap<>(config);
+    }
+
+    public synchronized long configVersion() throws SQLException {
+        ensureOpen();
+        return configVersion;
+    }
+
+    public void setConfig(String key, String value) throws SQLException {
+        Durable durable;
+        synchronized (this) {
+            ensureOpen();
+            try {
+                lastSeq = log.append(encodeConfig(key, value));
+            } catch (IOException e) {
+                throw new SQLException("Job store write failed: " + e.getMessage(), e);
+            }
+            config.put(key, value);
+            configVersion++;
+            durable = durable();
+        }
+        durable.await();
+    }
+
+    public synchronized void close() {
+        if (log == null) {
+            return;
+        }
+        log.close();
+        log = null;
+        jobs.clear();
+        payloadCells.clear();
+        resultCells.clear();
+        ready.clear();
+        delayed.clear();
+        byCreated.clear();
+        finished.clear();
+        blobRefs.clear();
+        unreferenced.clear();
+        counts.clear();
+        config.clear();
+        graph.clear();
+    }
+
+    private void ensureOpen() throws SQLException {
+        if (log != null) {
+            return;
+        }
+        try {
+            log = new JobLog(Paths.get(path), JobLog.parseFsync(fsync), fsyncIntervalMillis, groupCommitMillis, groupCommitRecords);
+            log.replay(this::applyRecord);
+        } catch (IOException | RuntimeException e) {
+            if (log != null) {
+                log.close();
+                log = null;
+            }
+            jobs.clear();
+            payloadCells.clear();
+            resultCells.clear();
+            config.clear();
+            throw new SQLException("Cannot open job store " + path + ": " + e.getMessage(), e);
+        }
+
+        // Whoever was running these jobs is gone with the previous process
+        long now = System.currentTimeMillis();
+        int requeued = 0;
+        for (Map.Entry<String, Job> entry : jobs.entrySet()) {
+            Job job = entry.getValue();
+            if (job.getState().equals("processing")) {
+                job.setState("pending");
+                job.setWorkerId(null);
+                requeued++;
+            }
+            index(job);
+            counts.merge(job.getState(), 1, Integer::sum);
+        }
+        for (byte[] cell : payloadCells.values()) {
+            countRef(cell);
+        }
+        for (byte[] cell : resultCells.values()) {
+            countRef(cell);
+        }
+        promoteDue(now);
+        if (requeued > 0) {
+            System.out.println("Requeued " + requeued + " job(s) left processing by the previous run");
+        }
+        rebuildGraph(now);
+        compactIfNeeded();
+    }
+
+    // Tracks every blocked job again. A crash after a parent's completion record but before its
+    // children's release leaves them with nothing to wait for; they are released here. Blocked
+    // jobs with a dead parent keep waiting, as after a DLQ retry, until the parent completes.
+    private void rebuildGraph(long now) throws SQLException {
+        List<Job> blocked = new ArrayList<>();
+        for (Job job : jobs.values()) {
+            if (job.getState().equals("blocked")) {
+                blocked.add(job);
+            }
+        }
+        int released = 0;
+        for (Job job : blocked) {
+            List<String> waitingOn = unresolvedParents(job);
+            if (waitingOn.isEmpty()) {
+                released += release(job.getId(), now);
+            } else {
+                graph.block(job.getId(), waitingOn);
+            }
+        }
+        signalSequence += released;
+    }
+
+    // Parents of a new job that haven't completed. Parents must exist, here or in the same batch;
+    // a dead one is refused under the cancel policy, as the job would be cancelled at once. With no
+    // archive to look in, a parent already dropped by dropFinishedJobs counts as unknown.
+    private List<String> unresolvedParents(Job job, Set<String> batch) throws SQLException {
+        String policy = dependencyPolicy();
+        for (String parent : job.getDependsOn()) {
+            Job state = jobs.get(parent);
+            if (state == null && !batch.contains(parent)) {
+                throw new SQLException("Job '" + job.getId() + "' depends on unknown job '" + parent + "'");
+            }
+            if (state != null && state.getState().equals("dead") && policy.equals(DependencyGraph.POLICY_CANCEL)) {
+                throw new SQLException("Job '" + job.getId() + "' depends on dead job '" + parent + "'");
+            }
+        }
+        return waitingOn(job, batch);
+    }
+
+    private List<String> unresolvedParents(Job job) {
+        return waitingOn(job, Set.of());
+    }
+
+    // Parents in the batch haven't been stored yet, and wait like pending ones
+    private List<String> waitingOn(Job job, Set<String> batch) {
+        boolean ignoreDead = dependencyPolicy().equals(DependencyGraph.POLICY_IGNORE);
+        List<String> waitingOn = new ArrayList<>();
+        for (String parent : new LinkedHashSet<>(job.getDependsOn())) {
+            Job state = jobs.get(parent);
+            if (state == null && !batch.contains(parent)) {
+                // Dropped: parents are only dropped once they no longer hold anyone back
+                continue;
+            }
+            String parentState = state != null ? state.getState() : "pending";
+            if (!parentState.equals("completed") && !(ignoreDead && parentState.equals("dead"))) {
+                waitingOn.add(parent);
+            }
+        }
+        return waitingOn;
+    }
+
+    // A new job waits as blocked while it has unresolved parents; the caller commits it.
+    // Jobs with dependencies are never scheduled.
+    private Job block(Job job, List<String> waitingOn) {
+        if (job.getDependsOn().isEmpty()) {
+            return job;
+        }
+        job.setState(waitingOn.isEmpty() ? "pending" : "blocked");
+        job.setRunAt(job.getCreatedAt());
+        if (!waitingOn.isEmpty()) {
+            graph.block(job.getId(), waitingOn);
+        }
+        return job;
+    }
+
+    // Runs right after a job completes or dies, under the same lock hold. Returns how many
+    // waiting jobs became pending.
+    private int settle(String jobId, String state, long now) throws SQLException {
+        String policy = dependencyPolicy();
+        int released = 0;
+        if (state.equals("completed") || policy.equals(DependencyGraph.POLICY_IGNORE)) {
+            for (String child : graph.resolve(jobId)) {
+                released += release(child, now);
+            }
+        } else if (policy.equals(DependencyGraph.POLICY_CANCEL)) {
+            for (Map.Entry<String, String> entry : graph.cancel(jobId).entrySet()) {
+                Job job = jobs.get(entry.getKey());
+                if (job == null || !job.getState().equals("blocked")) {
+                    continue;
+                }
+                Job after = copy(job);
+                after.setState("dead");
+                after.setErrorMessage("Dependency '" + entry.getValue() + "' failed");
+                after.setFailureReason(Job.FAILURE_DEPENDENCY);
+                after.setUpdatedAt(new Timestamp(now));
+                commit(job, after);
+            }
+        }
+        return released;
+    }
+
+    private int release(String jobId, long now) throws SQLException {
+        Job job = jobs.get(jobId);
+        if (job == null || !job.getState().equals("blocked")) {
+            return 0;
+        }
+        Job after = copy(job);
+        after.setState("pending");
+        // Waiting time counts from the release, not from the enqueue
+        after.setRunAt(new Timestamp(now));
+        after.setUpdatedAt(new Timestamp(now));
+        commit(job, after);
+        return 1;
+    }
+
+    private void signalReleased(int released) {
+        if (released > 0) {
+            synchronized (this) {
+                signalSequence += released;
+            }
+            notifier.signal(released);
+        }
+    }
+
+    private String dependencyPolicy() {
+        return DependencyGraph.failurePolicy(config.get("dependency-failure-policy"));
+    }
+
+    // Makes scheduled and retrying jobs whose run_at has passed claimable
+    private void promoteDue(long now) throws SQLException {
+        while (!delayed.isEmpty() && delayed.first().getRunAt().getTime() <= now) {
+            Job job = delayed.first();
+            if (job.getState().equals("scheduled")) {
+                Job after = copy(job);
+                after.setState("pending");
+                after.setUpdatedAt(new Timestamp(now));
+                commit(job, after);
+            } else {
+                delayed.remove(job);
+                ready.computeIfAbsent(job.getQueue(), q -> new TreeSet<>(READY_ORDER)).add(job);
+            }
+        }
+    }
+
+    // Copy of a live job stamped with the current time, or null if the job doesn't exist
+    private Job modify(String jobId) throws SQLException {
+        ensureOpen();
+        Job job = jobs.get(jobId);
+        if (job == null) {
+            return null;
+        }
+        Job after = copy(job);
+        after.setUpdatedAt(new Timestamp(System.currentTimeMillis()));
+        return after;
+    }
+
+    // Like modify, but null unless the job is still processing under workerId
+    private Job owned(String jobId, String workerId) throws SQLException {
+        Job after = modify(jobId);
+        if (after == null || !after.getState().equals("processing") || !workerId.equals(after.getWorkerId())) {
+            return null;
+        }
+        return after;
+    }
+
+    private void commit(Job before, Job after) throws SQLException {
+        commit(before, after, null, null);
+    }
+
+    // Logs the new version of a job, then swaps it into memory and the indexes.
+    // Null cells leave the job's stored payload or result as it was.
+    private void commit(Job before, Job after, BlobStore.Cell payload, BlobStore.Cell result) throws SQLException {
+        retain(payload);
+        retain(result);
+        try {
+            lastSeq = log.append(encode(after, cellOf(payload), cellOf(result)));
+        } catch (IOException e) {
+            throw new SQLException("Job store write failed: " + e.getMessage(), e);
+        }
+        if (payload != null) {
+            release(payloadCells.put(after.getId(), payload.getBytes()));
+        }
+        if (result != null) {
+            release(resultCells.put(after.getId(), result.getBytes()));
+        }
+        if (before != null) {
+            unindex(before);
+            counts.merge(before.getState(), -1, Integer::sum);
+        }
+        jobs.put(after.getId(), after);
+        index(after);
+        counts.merge(after.getState(), 1, Integer::sum);
+        compactIfNeeded();
+    }
+
+    // Drops completed jobs older than afterHours or beyond the newest maxCompleted (0 for no limit),
+    // and dead jobs older than dlqDays (0 keeps them), the oldest first and batchSize per lock hold.
+    // A dead job that blocked jobs still wait on stays. Returns how many were dropped.
+    public int dropFinishedJobs(int afterHours, int maxCompleted, int dlqDays, int batchSize) throws SQLException {
+        int total = 0;
+        int dropped;
+        do {
+            dropped = dropBatch(afterHours, maxCompleted, dlqDays, Math.max(1, batchSize));
+            total += dropped;
+        } while (dropped >= batchSize);
+        return total;
+    }
+
+    // The drop records are synced before any file goes, so a crash can't bring back a job whose
+    // payload was already deleted
+    private synchronized int dropBatch(int afterHours, int maxCompleted, int dlqDays, int batchSize) throws SQLException {
+        ensureOpen();
+        long now = System.currentTimeMillis();
+        List<Job> dropped = new ArrayList<>();
+        TreeSet<Job> completed = finished.getOrDefault("completed", new TreeSet<>(FINISHED_ORDER));
+        long completedBefore = now - afterHours * 3_600_000L;
+        long excess = maxCompleted > 0 ? completed.size() - maxCompleted : 0;
+        for (Job job : completed) {
+            if (dropped.size() >= batchSize || (excess <= 0 && job.getUpdatedAt().getTime() >= completedBefore)) {
+                break;
+            }
+            dropped.add(job);
+            excess--;
+        }
+        if (dlqDays > 0) {
+            long deadBefore = now - dlqDays * 86_400_000L;
+            for (Job job : finished.getOrDefault("dead", new TreeSet<>(FINISHED_ORDER))) {
+                if (dropped.size() >= batchSize || job.getUpdatedAt().getTime() >= deadBefore) {
+                    break;
+                }
+                // Under the wait policy its dependents may still need it retried
+                if (!graph.isWaitedOn(job.getId())) {
+                    dropped.add(job);
+                }
+            }
+        }
+        if (dropped.isEmpty()) {
+            return 0;
+        }
+
+        for (Job job : dropped) {
+            try {
+                lastSeq = log.append(encodeDrop(job.getId()));
+            } catch (IOException e) {
+                throw new SQLException("Job store write failed: " + e.getMessage(), e);
+            }
+            unindex(job);
+            jobs.remove(job.getId());
+            counts.merge(job.getState(), -1, Integer::sum);
+            release(payloadCells.remove(job.getId()));
+            release(resultCells.remove(job.getId()));
+        }
+        try {
+            log.sync();
+        } catch (IOException e) {
+            throw new SQLException("Job store write failed: " + e.getMessage(), e);
+        }
+        for (String ref : unreferenced) {
+            if (!blobRefs.containsKey(ref)) {
+                try {
+                    blobs.delete(ref);
+                } catch (IOException e) {
+                    System.err.println("Error deleting blob " + ref + ": " + e.getMessage());
+                }
+            }
+        }
+        unreferenced.clear();
+        compactIfNeeded();
+        return dropped.size();
+    }
+
+    // Counts a cell about to be stored. A file nothing referred to may have been deleted since
+    // store() found it on disk, so the first reference writes it again if needed.
+    private void retain(BlobStore.Cell cell) throws SQLException {
+        if (cell == null || cell.getRef() == null) {
+            return;
+        }
+        if (blobRefs.merge(cell.getRef(), 1, Integer::sum) == 1) {
+            try {
+                blobs.write(cell);
+            } catch (IOException e) {
+                throw new SQLException("Blob store write failed: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private void countRef(byte[] cell) {
+        String ref = BlobStore.refOf(cell);
+        if (ref != null) {
+            blobRefs.merge(ref, 1, Integer::sum);
+        }
+    }
+
+    // Uncounts a cell no job holds any more; its file goes with the next drop batch
+    private void release(byte[] cell) {
+        String ref = BlobStore.refOf(cell);
+        if (ref != null && blobRefs.merge(ref, -1, Integer::sum) <= 0) {
+            blobRefs.remove(ref);
+            unreferenced.add(ref);
+        }
+    }
+
+    // Rewrites the log as one record per live job and config key. Runs under the store lock,
+    // so it pauses other writers for as long as it takes to write the snapshot.
+    private void compactIfNeeded() throws SQLException {
+        if (log.records() < compactAfter) {
+            return;
+        }
+        List<byte[]> snapshot = new ArrayList<>(jobs.size() + config.size());
+        try {
+            for (Map.Entry<String, String> entry : config.entrySet()) {
+                snapshot.add(encodeConfig(entry.getKey(), entry.getValue()));
+            }
+            for (Job job : jobs.values()) {
+                snapshot.add(encode(job, payloadCells.get(job.getId()), resultCells.get(job.getId())));
+            }
+            log.rewrite(snapshot);
+        } catch (IOException e) {
+            throw new SQLException("Job store compaction failed: " + e.getMessage(), e);
+        }
+        compactAfter = Math.max(COMPACT_MIN_RECORDS, snapshot.size() * 2L);
+    }
+
+    private Durable durable() {
+        return new Durable(log, lastSeq);
+    }
+
+    // A point in the log a writer waits on after leaving the store lock
+    private static class Durable {
+        private final JobLog log;
+        private final long seq;
+
+        Durable(JobLog log, long seq) {
+            this.log = log;
+            this.seq = seq;
+        }
+
+        void await() throws SQLException {
+            try {
+                log.awaitDurable(seq);
+            } catch (IOException e) {
+                throw new SQLException("Job store write failed: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private void index(Job job) {
+        byCreated.add(job);
+        String state = job.getState();
+        if (state.equals("completed") || state.equals("dead")) {
+            finished.computeIfAbsent(state, s -> new TreeSet<>(FINISHED_ORDER)).add(job);
+        }
+        if (state.equals("pending") || state.equals("failed") || state.equals("scheduled")) {
+            TreeSet<Job> queued = ready.computeIfAbsent(job.getQueue(), q -> new TreeSet<>(READY_ORDER));
+            if (job.getRunAt().getTime() > System.currentTimeMillis()) {
+                delayed.add(job);
+            } else {
+                queued.add(job);
+            }
+        }
+    }
+
+    private void unindex(Job job) {
+        byCreated.remove(job);
+        delayed.remove(job);
+        TreeSet<Job> done = finished.get(job.getState());
+        if (done != null) {
+            done.remove(job);
+        }
+        TreeSet<Job> queued = ready.get(job.getQueue());
+        if (queued != null) {
+            queued.remove(job);
+        }
+    }
+
+    private Job newJob(Job job, BlobStore.Cell payload, long now) {
+        Job stored = copy(job);
+        stored.setPayloadBytes(payload != null ? payload.getSize() : -1);
+        stored.setAttempts(0);
+        stored.setCreatedAt(new Timestamp(now));
+        stored.setUpdatedAt(stored.getCreatedAt());
+        if (stored.getRunAt() == null) {
+            stored.setRunAt(new Timestamp(now + Math.max(0, job.getDelayMillis())));
+        }
+        stored.setDelayMillis(0);
+        return stored;
+    }
+
+    private void signalNew(Job job) {
+        long wait = job.getRunAt() != null ? job.getRunAt().getTime() - System.currentTimeMillis() : job.getDelayMillis();
+        if (wait > 0) {
+            notifier.signalAfter(wait);
+        } else {
+            synchronized (this) {
+                signalSequence++;
+            }
+            notifier.signal(1);
+        }
+    }
+
+    private void applyRecord(ByteBuffer record) {
+        byte type = record.get();
+        if (type == RECORD_JOB) {
+            Job job = decode(record);
+            jobs.put(job.getId(), job);
+            // Records written before blobs existed end here
+            if (record.hasRemaining()) {
+                byte[] payloadCell = readCell(record);
+                byte[] resultCell = readCell(record);
+                if (payloadCell != null) {
+                    payloadCells.put(job.getId(), payloadCell);
+                }
+                if (resultCell != null) {
+                    resultCells.put(job.getId(), resultCell);
+                }
+            }
+            // Records written before dependencies existed end here
+            if (record.hasRemaining()) {
+                List<String> parents = new ArrayList<>();
+                for (int i = record.getInt(); i > 0; i--) {
+                    parents.add(readString(record));
+                }
+                job.setDependsOn(parents);
+            }
+        } else if (type == RECORD_CONFIG) {
+            config.put(readString(record), readString(record));
+            configVersion++;
+        } else if (type == RECORD_DROP) {
+            String id = readString(record);
+            jobs.remove(id);
+            payloadCells.remove(id);
+            resultCells.remove(id);
+        } else {
+            throw new IllegalStateException("Unknown record type " + type);
+        }
+    }
+
+    private static byte[] encodeConfig(String key, String value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(RECORD_CONFIG);
+        writeString(out, key);
+        writeString(out, value);
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encodeDrop(String jobId) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(RECORD_DROP);
+        writeString(out, jobId);
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encode(Job job, byte[] payloadCell, byte[] resultCell) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(RECORD_JOB);
+        writeString(out, job.getId());
+        writeString(out, job.getCommand());
+        writeString(out, job.getState());
+        out.writeInt(job.getAttempts());
+        out.writeInt(job.getMaxRetries());
+        writeTime(out, job.getCreatedAt());
+        writeTime(out, job.getUpdatedAt());
+        writeTime(out, job.getNextRetryAt());
+        writeTime(out, job.getRunAt());
+        writeString(out, job.getErrorMessage());
+        writeString(out, job.getWorkerId());
+        writeString(out, job.getResult());
+        out.writeInt(job.getTimeoutSeconds());
+        writeString(out, job.getFailureReason());
+        writeString(out, job.getQueue());
+        out.writeInt(job.getPriority());
+        out.writeInt(job.getPayloadBytes());
+        out.writeInt(job.getResultBytes());
+        writeCell(out, payloadCell);
+        writeCell(out, resultCell);
+        out.writeInt(job.getDependsOn().size());
+        for (String parent : job.getDependsOn()) {
+            writeString(out, parent);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Job decode(ByteBuffer in) {
+        Job job = new Job();
+        job.setId(readString(in));
+        job.setCommand(readString(in));
+        job.setState(readString(in));
+        job.setAttempts(in.getInt());
+        job.setMaxRetries(in.getInt());
+        job.setCreatedAt(readTime(in));
+        job.setUpdatedAt(readTime(in));
+        job.setNextRetryAt(readTime(in));
+        job.setRunAt(readTime(in));
+        job.setErrorMessage(readString(in));
+        job.setWorkerId(readString(in));
+        job.setResult(readString(in));
+        job.setTimeoutSeconds(in.getInt());
+        job.setFailureReason(readString(in));
+        job.setQueue(readString(in));
+        job.setPriority(in.getInt());
+        if (in.hasRemaining()) {
+            job.setPayloadBytes(in.getInt());
+            job.setResultBytes(in.getInt());
+        }
+        return job;
+    }
+
+    private static Job copy(Job job) {
+        Job copy = new Job(job.getId(), job.getCommand());
+        copy.setState(job.getState());
+        copy.setAttempts(job.getAttempts());
+        copy.setMaxRetries(job.getMaxRetries());
+        copy.setCreatedAt(job.getCreatedAt());
+        copy.setUpdatedAt(job.getUpdatedAt());
+        copy.setNextRetryAt(job.getNextRetryAt());
+        copy.setRunAt(job.getRunAt());
+        copy.setErrorMessage(job.getErrorMessage());
+        copy.setWorkerId(job.getWorkerId());
+        copy.setResult(job.getResult());
+        copy.setTimeoutSeconds(job.getTimeoutSeconds());
+        copy.setFailureReason(job.getFailureReason());
+        copy.setQueue(job.getQueue());
+        copy.setPriority(job.getPriority());
+        copy.setDelayMillis(job.getDelayMillis());
+        copy.setPayloadBytes(job.getPayloadBytes());
+        copy.setResultBytes(job.getResultBytes());
+        copy.setDependsOn(job.getDependsOn());
+        return copy;
+    }
+
+    // Encodes a value and writes its file if it spills; done before taking the store lock
+    private BlobStore.Cell store(byte[] value) throws SQLException {
+        BlobStore.Cell cell = blobs.encode(value);
+        try {
+            blobs.write(cell);
+        } catch (IOException e) {
+            throw new SQLException("Blob store write failed: " + e.getMessage(), e);
+        }
+        return cell;
+    }
+
+    private byte[] decode(byte[] cell) throws SQLException {
+        try {
+            return blobs.decode(cell);
+        } catch (IOException e) {
+            throw new SQLException("Blob store read failed: " + e.getMessage(), e);
+        }
+    }
+
+    private static void setResult(Job job, BlobStore.Cell cell) {
+        job.setResult(null);
+        job.setResultBytes(cell != null ? cell.getSize() : -1);
+    }
+
+    private static byte[] cellOf(BlobStore.Cell cell) {
+        return cell != null ? cell.getBytes() : null;
+    }
+
+    private static byte[] utf8(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static void writeCell(DataOutputStream out, byte[] cell) throws IOException {
+        if (cell == null) {
+            out.writeByte(CELL_UNCHANGED);
+            return;
+        }
+        out.writeByte(CELL_SET);
+        out.writeInt(cell.length);
+        out.write(cell);
+    }
+
+    private static byte[] readCell(ByteBuffer in) {
+        if (in.get() == CELL_UNCHANGED) {
+            return null;
+        }
+        byte[] cell = new byte[in.getInt()];
+        in.get(cell);
+        return cell;
+    }
+
+    // Strings are an int byte length (-1 for null) followed by UTF-8; writeUTF stops at 64 KB
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    private static void writeTime(DataOutputStream out, Timestamp value) throws IOException {
+        out.writeLong(value != null ? value.getTime() : NO_TIME);
+    }
+
+    private static Timestamp readTime(ByteBuffer in) {
+        long value = in.getLong();
+        return value != NO_TIME ? new Timestamp(value) : null;
+    }
+}
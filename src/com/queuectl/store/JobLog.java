@@ -0,0 +1,390 @@
+package com.queuectl.store;
+
+import com.queuectl.metrics.Histogram;
+import com.queuectl.metrics.Metrics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+// Append-only write-ahead log. Each record is [int length][int crc32][payload]; a record cut short
+// by a crash fails its length or checksum on replay and is truncated away with everything after it.
+//
+// Appends only copy into a memory buffer and return a sequence number. A committer thread writes
+// the buffer out in groups, so concurrent writers share one write and one fsync:
+//   always   - every append is durable before awaitDurable returns; a group is flushed as soon as
+//              the previous one finishes, or after groupCommitMillis / groupCommitRecords if set
+//   interval - written and fsynced every intervalMillis; a crash loses at most that window
+//   never    - written every intervalMillis and left to the OS to sync
+public class JobLog {
+    public enum Fsync { ALWAYS, INTERVAL, NEVER }
+
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_RECORD_SIZE = 64 * 1024 * 1024;
+    // Relaxed modes write early once this much is buffered
+    private static final int MAX_BUFFERED_BYTES = 1 << 20;
+    private static final Histogram WRITE_TIME = Metrics.histogram("queuectl_wal_write_seconds",
+            "Time to write and fsync one group of job log records");
+    // records / groups is the average group commit size
+    private static final LongAdder RECORDS = Metrics.counter("queuectl_wal_records_total", "Records appended to the job log");
+    private static final LongAdder GROUPS = Metrics.counter("queuectl_wal_groups_total", "Groups written to the job log");
+
+    private final Path path;
+    private final Fsync fsync;
+    private final long intervalMillis;
+    private final long groupCommitNanos;
+    private final int groupCommitRecords;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private final Thread committer;
+
+    // Held while writing to the channel or replacing it; always taken before the monitor on this
+    private final Object ioLock = new Object();
+    private FileChannel channel;
+
+    // Guarded by this
+    private ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 * 1024);
+    private final CRC32 crc = new CRC32();
+    private long appendedSeq;
+    private long writtenSeq;
+    private long durableSeq;
+    private long records;
+    private IOException failure;
+    private boolean closing;
+
+    public JobLog(Path path, Fsync fsync, long intervalMillis, long groupCommitMillis, int groupCommitRecords) throws IOException {
+        this.path = path;
+        this.fsync = fsync;
+        this.intervalMillis = Math.max(1, intervalMillis);
+        this.groupCommitNanos = Math.max(0, groupCommitMillis) * 1_000_000L;
+        this.groupCommitRecords = Math.max(1, groupCommitRecords);
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        // Locked through a side file so compaction can replace the log itself
+        this.lockChannel = FileChannel.open(lockPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock acquired = lockChannel.tryLock();
+        if (acquired == null) {
+            lockChannel.close();
+            throw new IOException("Job store " + path + " is in use by another process");
+        }
+        this.lock = acquired;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        this.committer = new Thread(this::commitLoop, "job-log-committer");
+        committer.setDaemon(true);
+    }
+
+    // Feeds every intact record to the consumer, truncates a torn tail and returns the record count.
+    // Must be called once, before the first append.
+    public int replay(Consumer<ByteBuffer> consumer) throws IOException {
+        synchronized (ioLock) {
+            long size = channel.size();
+            long position = 0;
+            int count = 0;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            CRC32 check = new CRC32();
+
+            while (position + HEADER_SIZE <= size) {
+                header.clear();
+                readFully(header, position);
+                header.flip();
+                int length = header.getInt();
+                int checksum = header.getInt();
+                if (length < 0 || length > MAX_RECORD_SIZE || position + HEADER_SIZE + length > size) {
+                    break;
+                }
+                ByteBuffer payload = ByteBuffer.allocate(length);
+                readFully(payload, position + HEADER_SIZE);
+                payload.flip();
+                check.reset();
+                check.update(payload.duplicate());
+                if ((int) check.getValue() != checksum) {
+                    break;
+                }
+                consumer.accept(payload);
+                position += HEADER_SIZE + length;
+                count++;
+            }
+
+            if (position < size) {
+                System.err.println("Job store " + path + ": discarding " + (size - position) + " byte(s) of incomplete log tail");
+                channel.truncate(position);
+                channel.force(true);
+            }
+            channel.position(position);
+            synchronized (this) {
+                records = count;
+            }
+            if (!committer.isAlive()) {
+                committer.start();
+            }
+            return count;
+        }
+    }
+
+    // Buffers one record and returns its sequence number for awaitDurable
+    public synchronized long append(byte[] payload) throws IOException {
+        if (failure != null) {
+            throw new IOException("Job log is unusable after an earlier write failure", failure);
+        }
+        if (closing) {
+            throw new IOException("Job log " + path + " is closed");
+        }
+        crc.reset();
+        crc.update(payload);
+        writeInt(payload.length);
+        writeInt((int) crc.getValue());
+        buffer.write(payload, 0, payload.length);
+        appendedSeq++;
+        records++;
+        if (fsync == Fsync.ALWAYS || buffer.size() >= MAX_BUFFERED_BYTES) {
+            notifyAll();
+        }
+        return appendedSeq;
+    }
+
+    // Blocks until the record is on disk under the always policy; returns at once otherwise
+    public void awaitDurable(long seq) throws IOException {
+        if (fsync != Fsync.ALWAYS) {
+            return;
+        }
+        synchronized (this) {
+            while (durableSeq < seq && failure == null) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted waiting for the job log to sync");
+                }
+            }
+            if (durableSeq < seq) {
+                throw new IOException("Job log write failed: " + failure.getMessage(), failure);
+            }
+        }
+    }
+
+    // Writes and fsyncs everything appended so far, whatever the policy
+    public void sync() throws IOException {
+        try {
+            flushGroup();
+            synchronized (ioLock) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            synchronized (this) {
+                failure = e;
+                notifyAll();
+            }
+            throw e;
+        }
+    }
+
+    // Records written since the log was last opened or compacted, counting replayed ones
+    public synchronized long records() {
+        return records;
+    }
+
+    // Replaces the whole log with the given records, which must describe everything appended so far.
+    // The caller blocks appends while this runs.
+    public void rewrite(List<byte[]> snapshot) throws IOException {
+        synchronized (ioLock) {
+            Path tmp = path.resolveSibling(path.getFileName() + ".compact");
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                CRC32 check = new CRC32();
+                ByteBuffer chunk = ByteBuffer.allocate(MAX_BUFFERED_BYTES);
+                for (byte[] payload : snapshot) {
+                    if (chunk.remaining() < HEADER_SIZE + payload.length) {
+                        chunk.flip();
+                        writeFully(out, chunk);
+                        chunk = ByteBuffer.allocate(Math.max(MAX_BUFFERED_BYTES, HEADER_SIZE + payload.length));
+                    }
+                    check.reset();
+                    check.update(payload);
+                    chunk.putInt(payload.length).putInt((int) check.getValue()).put(payload);
+                }
+                chunk.flip();
+                writeFully(out, chunk);
+                out.force(true);
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            syncDirectory();
+
+            FileChannel old = channel;
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            channel.position(channel.size());
+            old.close();
+
+            synchronized (this) {
+                // Everything still buffered is already part of the snapshot
+                buffer = new ByteArrayOutputStream(64 * 1024);
+                writtenSeq = appendedSeq;
+                durableSeq = appendedSeq;
+                records = snapshot.size();
+                notifyAll();
+            }
+        }
+    }
+
+    public void close() {
+        synchronized (this) {
+            if (closing) {
+                return;
+            }
+            closing = true;
+            notifyAll();
+        }
+        try {
+            committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            synchronized (ioLock) {
+                // A clean shutdown loses nothing, whatever the policy
+                channel.force(false);
+                channel.close();
+            }
+            lock.release();
+            lockChannel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing job store " + path + ": " + e.getMessage());
+        }
+    }
+
+    private void commitLoop() {
+        while (true) {
+            synchronized (this) {
+                if (!awaitWork()) {
+                    return;
+                }
+            }
+            try {
+                flushGroup();
+            } catch (IOException e) {
+                synchronized (this) {
+                    failure = e;
+                    notifyAll();
+                }
+                System.err.println("Job store " + path + " write failed: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    // Waits until there is a group to write; returns false once closed and drained
+    private boolean awaitWork() {
+        try {
+            if (fsync == Fsync.ALWAYS) {
+                while (!closing && appendedSeq == writtenSeq) {
+                    wait();
+                }
+                // Optionally hold the group open a little longer so more writers can join it
+                long deadline = System.nanoTime() + groupCommitNanos;
+                long remaining;
+                while (!closing && appendedSeq - writtenSeq < groupCommitRecords
+                        && (remaining = deadline - System.nanoTime()) > 0) {
+                    wait(remaining / 1_000_000, (int) (remaining % 1_000_000));
+                }
+            } else {
+                long deadline = System.nanoTime() + intervalMillis * 1_000_000L;
+                long remaining;
+                while (!closing && buffer.size() < MAX_BUFFERED_BYTES
+                        && (remaining = deadline - System.nanoTime()) > 0) {
+                    wait(remaining / 1_000_000, (int) (remaining % 1_000_000));
+                }
+            }
+        } catch (InterruptedException e) {
+            closing = true;
+        }
+        return !closing || appendedSeq > writtenSeq;
+    }
+
+    private void flushGroup() throws IOException {
+        long target;
+        synchronized (ioLock) {
+            byte[] group;
+            synchronized (this) {
+                if (appendedSeq == writtenSeq) {
+                    return;
+                }
+                group = buffer.toByteArray();
+                buffer.reset();
+                RECORDS.add(appendedSeq - writtenSeq);
+                target = appendedSeq;
+                writtenSeq = target;
+            }
+            long start = System.nanoTime();
+            writeFully(channel, ByteBuffer.wrap(group));
+            if (fsync != Fsync.NEVER) {
+                channel.force(false);
+            }
+            WRITE_TIME.recordSince(start);
+            GROUPS.increment();
+        }
+        synchronized (this) {
+            if (target > durableSeq) {
+                durableSeq = target;
+            }
+            notifyAll();
+        }
+    }
+
+    private void writeInt(int value) {
+        buffer.write(value >>> 24);
+        buffer.write(value >>> 16);
+        buffer.write(value >>> 8);
+        buffer.write(value);
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            out.write(data);
+        }
+    }
+
+    private void readFully(ByteBuffer target, long position) throws IOException {
+        while (target.hasRemaining()) {
+            int read = channel.read(target, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of job store " + path);
+            }
+            position += read;
+        }
+    }
+
+    // Makes the rename itself durable; not every platform allows opening a directory
+    private void syncDirectory() {
+        Path dir = path.toAbsolutePath().getParent();
+        try (FileChannel dirChannel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            dirChannel.force(true);
+        } catch (IOException e) {
+            // Best effort
+        }
+    }
+
+    private Path lockPath() {
+        return path.resolveSibling(path.getFileName() + ".lock");
+    }
+
+    public static Fsync parseFsync(String value) {
+        try {
+            return Fsync.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("store.fsync must be always, interval or never, got: " + value);
+        }
+    }
+}
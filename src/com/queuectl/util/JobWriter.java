@@ -0,0 +1,107 @@
+package com.queuectl.util;
+
+import com.queuectl.models.Job;
+
+import java.io.IOException;
+import java.io.Writer;
+
+// Formats jobs one at a time as a table, JSON lines or CSV
+public class JobWriter {
+    public static final String TABLE = "table";
+    public static final String JSONL = "jsonl";
+    public static final String CSV = "csv";
+
+    private static final String[] CSV_COLUMNS = {"id", "state", "command", "attempts", "max_retries",
+            "created_at", "updated_at", "error_message", "failure_reason", "payload_bytes", "result_bytes"};
+
+    private final Writer out;
+    private final String format;
+    private final boolean showErrors;
+
+    public JobWriter(Writer out, String format, boolean showErrors) {
+        if (!format.equals(TABLE) && !format.equals(JSONL) && !format.equals(CSV)) {
+            throw new IllegalArgumentException("Unknown format: " + format + " (expected table, jsonl or csv)");
+        }
+        this.out = out;
+        this.format = format;
+        this.showErrors = showErrors;
+    }
+
+    public void writeHeader() throws IOException {
+        if (format.equals(TABLE)) {
+            if (showErrors) {
+                out.write(String.format("%-20s %-40s %-10s %-30s\n", "ID", "Command", "Attempts", "Error"));
+                out.write("─".repeat(105) + "\n");
+            } else {
+                out.write(String.format("%-20s %-15s %-40s %-10s %-10s\n", "ID", "State", "Command", "Attempts", "Max Retries"));
+                out.write("─".repeat(100) + "\n");
+            }
+        } else if (format.equals(CSV)) {
+            out.write(String.join(",", CSV_COLUMNS) + "\n");
+        }
+    }
+
+    public void write(Job job) throws IOException {
+        switch (format) {
+            case TABLE:
+                String cmd = truncate(job.getCommand(), 37);
+                if (showErrors) {
+                    out.write(String.format("%-20s %-40s %-10d %-30s\n",
+                            job.getId(), cmd, job.getAttempts(), truncate(job.getErrorMessage(), 27)));
+                } else {
+                    out.write(String.format("%-20s %-15s %-40s %-10d %-10d\n",
+                            job.getId(), job.getState(), cmd, job.getAttempts(), job.getMaxRetries()));
+                }
+                break;
+
+            case JSONL:
+                out.write("{\"id\":" + Json.quote(job.getId()) +
+                        ",\"state\":" + Json.quote(job.getState()) +
+                        ",\"command\":" + Json.quote(job.getCommand()) +
+                        ",\"attempts\":" + job.getAttempts() +
+                        ",\"max_retries\":" + job.getMaxRetries() +
+                        ",\"created_at\":" + Json.quote(text(job.getCreatedAt())) +
+                        ",\"updated_at\":" + Json.quote(text(job.getUpdatedAt())) +
+                        ",\"error_message\":" + Json.quote(job.getErrorMessage()) +
+                        ",\"failure_reason\":" + Json.quote(job.getFailureReason()) +
+                        ",\"payload_bytes\":" + size(job.getPayloadBytes()) +
+                        ",\"result_bytes\":" + size(job.getResultBytes()) + "}\n");
+                break;
+
+            case CSV:
+                out.write(csv(job.getId()) + "," + csv(job.getState()) + "," + csv(job.getCommand()) + "," +
+                        job.getAttempts() + "," + job.getMaxRetries() + "," +
+                        csv(text(job.getCreatedAt())) + "," + csv(text(job.getUpdatedAt())) + "," +
+                        csv(job.getErrorMessage()) + "," + csv(job.getFailureReason()) + "," +
+                        (job.getPayloadBytes() >= 0 ? job.getPayloadBytes() : "") + "," +
+                        (job.getResultBytes() >= 0 ? job.getResultBytes() : "") + "\n");
+                break;
+        }
+    }
+
+    private static String truncate(String value, int max) {
+        if (value != null && value.length() > max) {
+            return value.substring(0, max) + "...";
+        }
+        return value;
+    }
+
+    // Blob sizes are -1 when the job has none
+    private static String size(int bytes) {
+        return bytes >= 0 ? String.valueOf(bytes) : "null";
+    }
+
+    private static String text(Object value) {
+        return value == null ? null : value.toString();
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}